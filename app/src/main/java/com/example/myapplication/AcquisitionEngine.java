@@ -0,0 +1,1535 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.myapplication.acquisition.AcquisitionProfiler;
+import com.example.myapplication.acquisition.AcquisitionProfiler.Stage;
+import com.example.myapplication.acquisition.AcquisitionSnapshot;
+import com.example.myapplication.acquisition.Backoff;
+import com.example.myapplication.acquisition.BurstPolling;
+import com.example.myapplication.acquisition.Calibration;
+import com.example.myapplication.acquisition.CalibrationTable;
+import com.example.myapplication.acquisition.CommandWriter;
+import com.example.myapplication.acquisition.ConnectionManager;
+import com.example.myapplication.acquisition.Despiker;
+import com.example.myapplication.acquisition.DoubleColumn;
+import com.example.myapplication.acquisition.FilterChain;
+import com.example.myapplication.acquisition.GapLog;
+import com.example.myapplication.acquisition.MovingAverage;
+import com.example.myapplication.acquisition.PacketFramer;
+import com.example.myapplication.acquisition.PeakTracker;
+import com.example.myapplication.acquisition.QualityMonitor;
+import com.example.myapplication.acquisition.ReplaySource;
+import com.example.myapplication.acquisition.RollingCortisol;
+import com.example.myapplication.acquisition.SampleFilter;
+import com.example.myapplication.acquisition.SampleJournal;
+import com.example.myapplication.acquisition.SampleSource;
+import com.example.myapplication.acquisition.SampleStore;
+import com.example.myapplication.acquisition.SnapshotMailbox;
+import com.example.myapplication.acquisition.StreamCapture;
+import com.example.myapplication.acquisition.StreamReader;
+import com.example.myapplication.acquisition.TimingStats;
+import com.example.myapplication.acquisition.TraceEvent;
+import com.example.myapplication.acquisition.TraceRing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The acquisition side of a measurement: sensor link, polling, framing,
+ * conversion, filters, journal and write-behind persistence.
+ *
+ * One engine lives in {@link AcquisitionService}, so a session keeps running
+ * across configuration changes, with the activity in the background and with
+ * the screen off. The UI attaches as an {@link Observer} and reads the newest
+ * {@link AcquisitionSnapshot} from {@link #snapshots()} once per display
+ * frame; while nothing is attached the engine does no UI work at all.
+ *
+ * Threads: the "Acquisition" pipeline thread (drain, convert, filter, journal),
+ * the connection thread with the link's reader and writer, and the poll
+ * scheduler. Control methods are called on the main thread.
+ */
+public class AcquisitionEngine {
+    private static final String TAG = "AcquisitionEngine";
+
+    /** What the UI hears about, always on the main thread. */
+    public interface Observer {
+        void onConnected(boolean reconnected, long downMs);
+
+        void onConnectionFailed(int attempts);
+
+        /** A short notice for the user: batches, recovered sessions, trace dumps. */
+        void onMessage(String message);
+
+        /** A signal quality fault started or ended; {@code port} is -1 for all ports. */
+        void onQualityChanged(QualityMonitor.Fault fault, int port, boolean active, double value);
+    }
+
+    /** Outcome of {@link #finishSession}, on the main thread. */
+    public interface SaveCallback {
+        /** @param peakAverages the saved session's {@link #peakAverage}s, indexed by channel */
+        void onSessionSaved(long experimentId, double[] peakAverages);
+
+        void onSessionSaveFailed(Exception cause);
+    }
+
+    /** The owning service: collecting sessions run in the foreground. */
+    public interface Host {
+        void onCollectingChanged(boolean collecting);
+    }
+
+    // Connection state machine: connect, reconnect with jittered backoff, give up
+    private static final int CONNECT_ATTEMPTS = 3;
+    private static final int RECONNECT_ATTEMPTS = 8;
+    private static final long BACKOFF_BASE_MS = 1000;
+    private static final long BACKOFF_MAX_MS = 30000;
+    private final ConnectionManager connection;
+
+    private final Context context;
+    private final Host host;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Observer observer;
+
+    private String userEmail;
+    private long sampleTimestamp = -1;
+
+    private static final int BATCH_SIZE = 1000;
+    private volatile int currentBatch = 1;
+
+    // Sample columns: filtered ports and average, then their unfiltered inputs
+    public static final int CH_PORT0 = 0;
+    public static final int CH_PORT1 = 1;
+    public static final int CH_PORT2 = 2;
+    public static final int CH_AVG = 3;
+    public static final int CH_RAW0 = 4;
+    public static final int CH_RAW1 = 5;
+    public static final int CH_RAW2 = 6;
+    public static final int CH_RAW_AVG = 7;
+    private final SampleStore samples = new SampleStore(8);
+
+    private final DoubleColumn dataPoints0 = samples.channel(CH_PORT0);
+    private final DoubleColumn dataPoints1 = samples.channel(CH_PORT1);
+    private final DoubleColumn dataPoints2 = samples.channel(CH_PORT2);
+    private final DoubleColumn dataPointsavgd = samples.channel(CH_AVG);
+    private final DoubleColumn xaxis = samples.time();
+    private final DoubleColumn dataPoints0Unclean = samples.channel(CH_RAW0);
+    private final DoubleColumn dataPoints1Unclean = samples.channel(CH_RAW1);
+    private final DoubleColumn dataPoints2Unclean = samples.channel(CH_RAW2);
+    private final DoubleColumn dataPointsavgdUnclean = samples.channel(CH_RAW_AVG);
+
+    // Streaming filters: filter chain per port (index 3 = average), live cortisol on port 1
+    private final SampleFilter[] portFilters = new SampleFilter[4];
+    private final RollingCortisol rollingCortisol = new RollingCortisol();
+    private final Despiker avgDespiker = new Despiker(dataPointsavgd);
+
+    // Peak plateau per filtered channel; the average is fed only once the despiker is done with it
+    private final PeakTracker[] peaks = {new PeakTracker(), new PeakTracker(), new PeakTracker(), new PeakTracker()};
+
+    // Raw-signal fault checks; replaced on the pipeline thread when the rate changes
+    private volatile QualityMonitor quality;
+
+    // Selected sensor transport (Bluetooth SPP or USB serial); opened by the connection
+    private volatile SampleSource source;
+
+    // Device commands. Streaming requires firmware that answers CMD_STREAM_START
+    // with a continuous run of #a:b:cp frames until CMD_STREAM_STOP.
+    private static final String CMD_RESET = "R\r";
+    private static final String CMD_STREAM_START = "S\r";
+    private static final String CMD_STREAM_STOP = "X\r";
+    private static final long STREAM_WATCHDOG_MS = 1000;
+
+    // One blocking reader and one writer per connection, each the sole owner of its stream;
+    // frames are counted for miss detection
+    private static final int WRITER_QUEUE = 8;
+    private volatile StreamReader streamReader;
+    private volatile CommandWriter commandWriter;
+    private final AtomicInteger framesSinceCheck = new AtomicInteger();
+    private volatile boolean pollOutstanding = false;
+    private volatile BurstPolling pollPlan = new BurstPolling(5);
+    private volatile boolean streamActive = false;
+
+    // Experiment parameters
+    private final double analogRef = 5.0;
+    private volatile double durationOfExp = 600.0;
+    private volatile int samplesPerSecond = 5;
+    private volatile int movingAvgValue = 4;
+    private final int ADCbits = 15;
+    private final double voltsPerCount = analogRef / ((1 << ADCbits) - 1);
+    private volatile boolean[] analogPort = {true, true, true, true};
+    private volatile boolean streamingMode = false;
+    private volatile String filterChain = ""; // extra stages ahead of the moving average, see FilterChain
+
+    // Written by the acquisition thread, read by the UI
+    private volatile int dataSize = 0;
+    private volatile double time = 0.0;
+    private volatile boolean started = false;
+
+    // Byte ring shared by the reader thread (producer) and the acquisition thread (consumer)
+    private final PacketFramer framer = new PacketFramer(16384); // ~1 s at the top burst rate
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private static final int MSG_FRAMES = 1;
+
+    // Acquisition pipeline: frame -> convert -> filter -> estimate runs on its own
+    // thread and hands the newest snapshot to the UI once per display frame
+    private final HandlerThread pipelineThread;
+    private final Handler pipelineHandler;
+    private final SnapshotMailbox<AcquisitionSnapshot> snapshots = new SnapshotMailbox<>();
+    private volatile AcquisitionSnapshot lastSnapshot;     // for observers that attach later
+    private final double[] lastVolts = new double[3];     // acquisition thread only
+    private double lastCortisol = 0.0;                     // acquisition thread only
+
+    // Crash-safe journal of the current session (acquisition thread only)
+    private static final long JOURNAL_CHECKPOINT_MS = 5000;
+    private SampleJournal journal;
+    private int journalRows = 0;
+    // Names of the journals this engine opened; recovery leaves them alone (any thread)
+    private final Set<String> ownJournals = ConcurrentHashMap.newKeySet();
+    private long lastCheckpoint = 0;
+
+    // Link dropouts of the current session (acquisition thread only)
+    private final GapLog gaps = new GapLog();
+    private long lastSampleAt = 0; // wall clock of the newest sample
+
+    // Sample times are receive stamps on the elapsedRealtime clock (acquisition thread only)
+    private long timeOriginNanos = -1; // stamp at which the session's x axis is 0
+    private final TimingStats timing = new TimingStats(TimeUnit.SECONDS.toNanos(1) / 5);
+
+    // Per-stage latency of the acquisition path; the writer stamps commands on the receive clock
+    // and they are cleared by the first byte / first frame that follows them
+    private final AcquisitionProfiler profiler = new AcquisitionProfiler();
+    private final AtomicLong pollAwaitingByte = new AtomicLong();
+    private final AtomicLong pollAwaitingFrame = new AtomicLong();
+
+    // Binary trace of the hot path instead of per-sample logcat lines; on in debug builds
+    // or while the UI asks for it
+    private static final int TRACE_EVENTS = 16384;
+    private static final String TRACE_DIR = "traces";
+    private final TraceRing trace = new TraceRing(TRACE_EVENTS);
+    private final boolean traceByDefault;
+
+    // Raw bytes of the current link, for replaying field sessions in debug builds (connection
+    // thread). Each capture stops at MAX_CAPTURE_BYTES and older ones are pruned so that all
+    // of them together stay within CAPTURE_BUDGET_BYTES.
+    private static final String CAPTURE_DIR = "captures";
+    private static final int MAX_CAPTURES = 20;
+    private static final long MAX_CAPTURE_BYTES = 16L * 1024 * 1024;
+    private static final long CAPTURE_BUDGET_BYTES = 64L * 1024 * 1024;
+    private final boolean captureLinks;
+    private StreamCapture capture;
+
+    // Executor for scheduled polling (guarded by this)
+    private ScheduledExecutorService scheduler;
+    private int errorCount = 0;
+    private static final int MAX_ERRORS = 5;
+
+    // Database helper
+    private final DatabaseHelper dbHelper;
+    private volatile long currentExperimentId = -1;
+    private final SamplePersister persister;
+
+    public AcquisitionEngine(Context context, Host host) {
+        this.context = context;
+        this.host = host;
+
+        pipelineThread = new HandlerThread("Acquisition", Process.THREAD_PRIORITY_DISPLAY);
+        pipelineThread.start();
+        pipelineHandler = new Handler(pipelineThread.getLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                if (msg.what == MSG_FRAMES) {
+                    drainPending.set(false);
+                    drainFrames();
+                }
+            }
+        };
+        connection = new ConnectionManager(new SourceLink(), new Backoff(BACKOFF_BASE_MS, BACKOFF_MAX_MS),
+                CONNECT_ATTEMPTS, RECONNECT_ATTEMPTS, connectionListener);
+        traceByDefault = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        trace.setEnabled(traceByDefault);
+        captureLinks = traceByDefault; // captures are only offered for replay in debug builds
+
+        loadSettings();
+        rebuildFilters();
+        quality = createQualityMonitor();
+
+        dbHelper = DatabaseHelper.getInstance(context);
+        persister = new SamplePersister(dbHelper, xaxis, dataPoints0, dataPoints1, dataPoints2, dataPointsavgd);
+        SamplePersister.enqueue(this::recoverJournals);
+    }
+
+    /**
+     * Stops the link and the pipeline for good. With {@code discard} the
+     * unsaved session is dropped, otherwise its journal is kept for recovery.
+     */
+    public void shutdown(boolean discard) {
+        observer = null;
+        shutdownScheduler();
+        if (started) sendTimer(false);
+        connection.shutdown(); // closes the socket and its reader
+        pipelineThread.quitSafely();
+
+        // Once the last drain is done. Running this on the writer thread orders it
+        // before the next engine's recovery.
+        SamplePersister.enqueue(() -> {
+            try {
+                pipelineThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (discard) {
+                discardJournal();
+                persister.discard();
+            } else {
+                closeJournal();
+            }
+        });
+    }
+
+    //————————————————————————————
+    // Observers
+    //————————————————————————————
+
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+
+    private void notifyObserver(java.util.function.Consumer<Observer> event) {
+        mainHandler.post(() -> {
+            Observer o = observer;
+            if (o != null) {
+                event.accept(o);
+            }
+        });
+    }
+
+    private void postMessage(String message) {
+        notifyObserver(o -> o.onMessage(message));
+    }
+
+    /** Newest state for the UI; take it at most once per display frame. */
+    public SnapshotMailbox<AcquisitionSnapshot> snapshots() {
+        return snapshots;
+    }
+
+    /** The most recent snapshot, already taken or not; null for an empty session. */
+    public AcquisitionSnapshot lastSnapshot() {
+        return lastSnapshot;
+    }
+
+    //————————————————————————————
+    // Session control (main thread)
+    //————————————————————————————
+
+    /** Who the next session belongs to. Ignored while a session is collecting. */
+    public void setSessionOwner(String userEmail, long sampleTimestamp) {
+        if (started) {
+            return;
+        }
+        this.userEmail = userEmail;
+        this.sampleTimestamp = sampleTimestamp;
+    }
+
+    public String getSessionOwner() {
+        return userEmail;
+    }
+
+    public boolean isCollecting() {
+        return started;
+    }
+
+    public void startCollection() {
+        started = true;
+        pipelineHandler.post(this::beginSession);
+        sendTimer(true);
+        host.onCollectingChanged(true);
+    }
+
+    // Stops polling and closes the session's open gap; the link stays up
+    public void stopCollection() {
+        sendTimer(false);
+        started = false;
+        long stoppedAt = System.currentTimeMillis();
+        pipelineHandler.post(() -> endGap(stoppedAt)); // a dropout ends with the session
+        pipelineHandler.post(timing::pause);
+        pipelineHandler.post(this::checkpointJournal);
+        host.onCollectingChanged(false);
+    }
+
+    public boolean hasExistingData() {
+        return dataSize > 0 && (!dataPointsavgd.isEmpty() || !xaxis.isEmpty());
+    }
+
+    /**
+     * Drops the session's samples and state. Runs on the pipeline thread behind
+     * any drain already queued, so a stop followed by a clear never mixes two
+     * sessions; {@code onCleared} then runs on the main thread. The UI must not
+     * read the columns in between. The persister's queued writes hold their own
+     * copies of the rows, so the columns can be reused right away.
+     */
+    public void clearData(Runnable onCleared) {
+        pipelineHandler.post(() -> {
+            // Closed first: nothing of this session is queued after this point
+            persister.discard();
+            samples.clear();
+            rollingCortisol.reset();
+            for (PeakTracker p : peaks) {
+                p.reset();
+            }
+            rebuildFilters();
+            time = 0.0;
+            dataSize = 0;
+            currentBatch = 1;
+            lastSnapshot = null;
+            snapshots.take(); // drop a snapshot of the cleared session
+            discardJournal();
+            gaps.clear();
+            resetTiming();
+            quality.reset();
+            currentExperimentId = -1;
+            mainHandler.post(onCleared);
+        });
+    }
+
+    // Writes the remaining rows and the session summary, with port 1's peak average as its
+    // max value, after the last drain. Never waits: the callback hears about it once the
+    // writer thread is done.
+    public void finishSession(SaveCallback callback) {
+        pipelineHandler.post(() -> {
+            if (persister.getExperimentId() == -1) {
+                persister.begin(userEmail, samplesPerSecond, movingAvgValue, durationOfExp, sessionTimestamp(),
+                        sessionCalibration());
+            }
+            double[] peakAverages = peakAverages();
+            Future<?> saved = persister.finish(avgDespiker.finalCount(), samples.size(),
+                    peakAverages[CH_PORT1], dataSize);
+            // The writer runs tasks in order, so the summary is written by the time this runs
+            SamplePersister.enqueue(() -> {
+                try {
+                    saved.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    Log.e(TAG, "Session save failed: " + e.getMessage(), e);
+                    mainHandler.post(() -> callback.onSessionSaveFailed(e));
+                    return;
+                }
+                long id = persister.getExperimentId();
+                currentExperimentId = id;
+                pipelineHandler.post(this::logTiming);
+                pipelineHandler.post(this::discardJournal);
+                mainHandler.post(() -> callback.onSessionSaved(id, peakAverages));
+            });
+        });
+    }
+
+    public long getExperimentId() {
+        return currentExperimentId;
+    }
+
+    //————————————————————————————
+    // Link control (main thread)
+    //————————————————————————————
+
+    public SampleSource getSource() {
+        return source;
+    }
+
+    /** Replaces the current link, if any, and connects to the new source. */
+    public void selectSource(SampleSource s) {
+        if (source != null) {
+            pipelineHandler.post(this::openGap);
+            connection.disconnect();
+        }
+        source = s;
+        // Start connection (restarts attempts if one is pending)
+        connection.connect();
+    }
+
+    public void connect() {
+        connection.connect();
+    }
+
+    // Manual reconnect: drop the current link (or pending retries)
+    public void disconnect() {
+        shutdownScheduler();
+        pipelineHandler.post(this::openGap);
+        connection.disconnect();
+    }
+
+    public ConnectionManager.State connectionState() {
+        return connection.state();
+    }
+
+    public boolean hasValidConnection() {
+        SampleSource s = source;
+        return connection.isConnected() && s != null && s.isOpen();
+    }
+
+    /** Picks up a curve just stored for the current device; sessions already begun keep theirs. */
+    public void reloadCalibration() {
+        SampleSource s = source;
+        if (s != null) {
+            applyCalibration(s);
+        }
+    }
+
+    // Any thread: both take the table atomically
+    private void applyCalibration(SampleSource s) {
+        CalibrationTable calibration = CalibrationEngine.getInstance(context).select(s.name());
+        rollingCortisol.setCalibration(calibration);
+        quality.setRange(calibration);
+    }
+
+    //————————————————————————————
+    // Data and settings
+    //————————————————————————————
+
+    public SampleStore samples() {
+        return samples;
+    }
+
+    public DoubleColumn column(int channel) {
+        return samples.channel(channel);
+    }
+
+    public int getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Hands the {@link #peakAverage}s of the filtered channels, indexed by
+     * channel, to {@code onReady} on the main thread once every drain queued
+     * so far is done.
+     */
+    public void requestPeakAverages(Consumer<double[]> onReady) {
+        pipelineHandler.post(() -> {
+            double[] peakAverages = peakAverages();
+            mainHandler.post(() -> onReady.accept(peakAverages));
+        });
+    }
+
+    // Pipeline thread
+    private double[] peakAverages() {
+        double[] out = new double[peaks.length];
+        for (int channel = CH_PORT0; channel <= CH_AVG; channel++) {
+            out[channel] = peakAverage(channel);
+        }
+        return out;
+    }
+
+    /**
+     * Same value as {@link #findMaxbyAvg} over a filtered channel
+     * ({@link #CH_PORT0} to {@link #CH_AVG}), without scanning it. Pipeline
+     * thread only, like the trackers it reads.
+     */
+    private double peakAverage(int channel) {
+        if (channel != CH_AVG) {
+            return peaks[channel].plateauMean();
+        }
+        // The despiker may still rewrite the tail, so it is looked at but not committed
+        PeakTracker t = peaks[CH_AVG].copy();
+        for (int i = t.size(); i < dataPointsavgd.size(); i++) {
+            t.add(dataPointsavgd.get(i));
+        }
+        return t.plateauMean();
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public int getSamplesPerSecond() {
+        return samplesPerSecond;
+    }
+
+    public int getMovingAvgValue() {
+        return movingAvgValue;
+    }
+
+    public double getDurationOfExp() {
+        return durationOfExp;
+    }
+
+    public boolean[] getAnalogPort() {
+        return analogPort.clone();
+    }
+
+    public boolean isStreamingMode() {
+        return streamingMode;
+    }
+
+    public String getFilterChain() {
+        return filterChain;
+    }
+
+    public void applySettings(int newSps, int newAvg, double newDuration, boolean[] newPorts,
+                              boolean newStreaming, String newFilterChain) {
+        samplesPerSecond = newSps;
+        movingAvgValue = newAvg;
+        durationOfExp = newDuration;
+        analogPort = newPorts.clone();
+        streamingMode = newStreaming;
+        filterChain = newFilterChain.trim();
+        saveSettings();
+        // Filters, quality checks and timing are pipeline state: swapped between samples
+        pipelineHandler.post(() -> {
+            rebuildFilters();
+            quality = createQualityMonitor();
+            timing.reset(nominalPeriodNanos());
+        });
+
+        Log.i(TAG, "Settings updated - SPS: " + samplesPerSecond +
+                ", MovingAvg: " + movingAvgValue + ", Duration: " + durationOfExp +
+                ", Streaming: " + streamingMode + ", Filters: " + filterChain);
+    }
+
+    private void loadSettings() {
+        File settingFile = new File(context.getFilesDir(), "settings");
+        if (settingFile.isFile()) {
+            try (FileInputStream inputStream = context.openFileInput("settings")) {
+                byte[] buf = new byte[inputStream.available()];
+                inputStream.read(buf);
+                StringTokenizer st = new StringTokenizer(new String(buf), "/");
+                if (st.countTokens() >= 8) {
+                    samplesPerSecond = Integer.parseInt(st.nextToken());
+                    movingAvgValue = Integer.parseInt(st.nextToken());
+                    durationOfExp = Double.parseDouble(st.nextToken());
+                    boolean[] ports = new boolean[4];
+                    ports[0] = st.nextToken().equals("T");
+                    ports[1] = st.nextToken().equals("T");
+                    ports[2] = st.nextToken().equals("T");
+                    ports[3] = st.nextToken().equals("T");
+                    analogPort = ports;
+                    // last token is movingAvgValue again if you like
+                    st.nextToken();
+                    if (st.hasMoreTokens()) {
+                        streamingMode = st.nextToken().equals("T");
+                    }
+                    if (st.hasMoreTokens()) {
+                        String chain = st.nextToken();
+                        filterChain = chain.equals("-") ? "" : chain;
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading settings, using defaults: " + e.getMessage(), e);
+            }
+        } else {
+            saveSettings();
+        }
+    }
+
+    private void saveSettings() {
+        boolean[] ports = analogPort;
+        try (FileOutputStream outputStream = context.openFileOutput("settings", Context.MODE_PRIVATE)) {
+            String data = samplesPerSecond + "/" +
+                    movingAvgValue + "/" +
+                    durationOfExp + "/" +
+                    (ports[0] ? "T" : "F") + "/" +
+                    (ports[1] ? "T" : "F") + "/" +
+                    (ports[2] ? "T" : "F") + "/" +
+                    (ports[3] ? "T" : "F") + "/" +
+                    movingAvgValue + "/" +
+                    (streamingMode ? "T" : "F") + "/" +
+                    (filterChain.isEmpty() ? "-" : filterChain);
+            outputStream.write(data.getBytes());
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving settings: " + e.getMessage(), e);
+            postMessage("Failed to save settings");
+        }
+    }
+
+    //————————————————————————————
+    // Diagnostics
+    //————————————————————————————
+
+    public AcquisitionProfiler profiler() {
+        return profiler;
+    }
+
+    public long getFramesDropped() {
+        return framer.getFramesDropped();
+    }
+
+    public long getBytesOverrun() {
+        return framer.getBytesOverrun();
+    }
+
+    public TraceRing trace() {
+        return trace;
+    }
+
+    /** Tracing stays on in debug builds whatever the UI asks for. */
+    public void setTracing(boolean on) {
+        trace.setEnabled(on || traceByDefault);
+    }
+
+    // Writes the trace ring as Chrome trace JSON (open in Perfetto) off the main thread
+    public void dumpTrace() {
+        File base = context.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : context.getFilesDir(), TRACE_DIR);
+        File file = new File(dir, "trace_" + System.currentTimeMillis() + ".json");
+        new Thread(() -> {
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir.getPath());
+                }
+                int events;
+                try (java.io.Writer out = new java.io.BufferedWriter(new java.io.FileWriter(file))) {
+                    events = trace.writeChromeJson(out);
+                }
+                Log.i(TAG, "Trace dumped: " + events + " events to " + file.getPath());
+                postMessage("Trace saved: " + events + " events\n" + file.getPath());
+            } catch (IOException e) {
+                Log.e(TAG, "Trace dump failed", e);
+                postMessage("Trace dump failed: " + e.getMessage());
+            }
+        }, "TraceDump").start();
+    }
+
+    //————————————————————————————
+    // Scheduled send/read loop
+    //————————————————————————————
+
+    private synchronized void sendTimer(boolean start) {
+        shutdownScheduler();  // always call first
+
+        if (streamActive) {
+            // Tell the device to stop pushing frames; queued, so the caller never waits on the socket
+            streamActive = false;
+            sendCommand(CMD_STREAM_STOP);
+        }
+
+        if (start) {
+            // Only start if we have a valid connection
+            if (!hasValidConnection()) {
+                Log.w(TAG, "Cannot start timer - connection not established");
+                return;
+            }
+
+            framesSinceCheck.set(0);
+            pollOutstanding = false;
+            errorCount = 0;
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+
+            if (streamingMode) {
+                Log.i(TAG, "Starting continuous stream");
+                streamActive = true;
+                scheduler.schedule(() -> {
+                    if (!sendCommand(CMD_STREAM_START)) {
+                        linkLost("stream start failed");
+                    }
+                }, 500, TimeUnit.MILLISECONDS); // Initial delay to ensure connection is stable
+                scheduler.scheduleWithFixedDelay(
+                        this::streamWatchdog,
+                        500 + STREAM_WATCHDOG_MS,
+                        STREAM_WATCHDOG_MS,
+                        TimeUnit.MILLISECONDS
+                );
+            } else {
+                BurstPolling plan = new BurstPolling(
+                        Math.min(samplesPerSecond, BurstPolling.MAX_SAMPLES_PER_SECOND));
+                pollPlan = plan;
+                Log.i(TAG, "Starting data collection timer: " + plan.samplesPerRequest
+                        + " sample(s) every " + plan.intervalMicros + "us");
+                // Fixed rate: a slow tick must not push every later poll back
+                scheduler.scheduleAtFixedRate(
+                        this::pollOnce,
+                        TimeUnit.MILLISECONDS.toMicros(500), // Initial delay to ensure connection is stable
+                        plan.intervalMicros,
+                        TimeUnit.MICROSECONDS
+                );
+            }
+        }
+    }
+
+    // Poll mode: request one sample per tick. The reply is delivered by the
+    // connection's StreamReader, so this never sleeps or waits on the socket.
+    private void pollOnce() {
+        // Check if we should still be running
+        if (!started || !connection.isConnected()) {
+            trace.instant(TraceEvent.POLL_SKIPPED, started ? 1 : 0, connection.isConnected() ? 1 : 0, 0);
+            return;
+        }
+
+        try {
+            // Check link validity
+            SampleSource s = source;
+            if (s == null || !s.isOpen()) {
+                Log.w(TAG, "Link not ready - source: " + (s != null ? s.name() : "none"));
+                throw new IOException("Link not ready");
+            }
+
+            // ---- CHECK the previous request was answered ----
+            if (pollOutstanding) {
+                checkForMissedFrames();
+            }
+
+            // ---- WRITE command to MCU ----
+            if (!sendCommand(pollPlan.command())) {
+                // Remove frequent reconnection toast - just log and reconnect silently
+                linkLost("write failed");
+                return;
+            }
+            trace.instant(TraceEvent.POLL, pollPlan.samplesPerRequest);
+            pollOutstanding = true;
+
+        } catch (IOException ioEx) {
+            Log.e(TAG, "IO error in pollOnce(): " + ioEx.getMessage(), ioEx);
+            linkLost("IO error during polling");
+        } catch (Exception e) {
+            Log.e(TAG, "Unexpected error in pollOnce(): " + e.getMessage(), e);
+            errorCount++;
+            if (errorCount >= MAX_ERRORS) {
+                errorCount = 0;
+                linkLost("multiple unexpected errors");
+            }
+        }
+    }
+
+    // Streaming mode: the device pushes frames on its own, so the scheduler only
+    // watches for a stalled stream.
+    private void streamWatchdog() {
+        if (!started || !connection.isConnected()) {
+            return;
+        }
+        checkForMissedFrames();
+    }
+
+    // Counts a miss when no frame arrived since the previous check and
+    // reconnects after MAX_ERRORS consecutive misses.
+    private void checkForMissedFrames() {
+        if (framesSinceCheck.getAndSet(0) > 0) {
+            errorCount = 0;
+            return;
+        }
+        errorCount++;
+        Log.w(TAG, "No frames received (consecutive misses=" + errorCount + ")");
+        trace.instant(TraceEvent.POLL_MISSED, errorCount);
+
+        if (errorCount >= MAX_ERRORS) {
+            errorCount = 0;
+            linkLost("multiple missed frames");
+        }
+    }
+
+    // Queues a device command for the link's writer; returns false if the link is gone.
+    // Never blocks: if the writer is backed up the command is dropped instead.
+    private boolean sendCommand(String command) {
+        CommandWriter w = commandWriter;
+        if (w == null || !w.isRunning()) {
+            return false;
+        }
+        if (!w.offer(command.getBytes())) {
+            Log.w(TAG, "Writer backed up (" + w.pending() + " queued), dropped " + command.trim());
+        }
+        return true;
+    }
+
+    private synchronized void shutdownScheduler() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    //————————————————————————————
+    // Command writer
+    //————————————————————————————
+
+    private final CommandWriter.Listener writerListener = new CommandWriter.Listener() {
+        @Override
+        public void onWritten(byte[] command, long startedNanos, long finishedNanos) {
+            profiler.record(Stage.POLL_WRITE, finishedNanos - startedNanos);
+            pollAwaitingByte.set(startedNanos);
+            pollAwaitingFrame.set(startedNanos);
+        }
+
+        @Override
+        public void onWriteFailed(IOException cause) {
+            Log.e(TAG, "Write failed (broken pipe): " + cause.getMessage(), cause);
+            linkLost("write failed");
+        }
+    };
+
+    private void startWriter(OutputStream out) {
+        stopWriter();
+        commandWriter = new CommandWriter(out, WRITER_QUEUE, writerListener, SystemClock::elapsedRealtimeNanos);
+        commandWriter.start();
+        Log.d(TAG, "Command writer started");
+    }
+
+    // Detaches the writer and drops its queue; a write in progress ends once the link is closed
+    private void stopWriter() {
+        CommandWriter writer = commandWriter;
+        commandWriter = null;
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    //————————————————————————————
+    // Stream reader
+    //————————————————————————————
+
+    private final StreamReader.Listener readerListener = new StreamReader.Listener() {
+        @Override
+        public void onBytes(int count, long receivedNanos) {
+            trace.instant(TraceEvent.READ, count);
+            long sentAt = pollAwaitingByte.getAndSet(0);
+            if (sentAt != 0) {
+                profiler.record(Stage.FIRST_BYTE, receivedNanos - sentAt);
+            }
+        }
+
+        @Override
+        public void onFramesAvailable() {
+            framesSinceCheck.incrementAndGet();
+            // Coalesce wake-ups: one pending message drains everything queued
+            if (drainPending.compareAndSet(false, true)) {
+                pipelineHandler.sendEmptyMessage(MSG_FRAMES);
+            }
+        }
+
+        @Override
+        public void onStreamClosed(IOException cause) {
+            linkLost("sensor stream closed: " + cause.getMessage());
+        }
+    };
+
+    private void startReader(InputStream in) {
+        stopReader();
+        streamReader = new StreamReader(in, framer, readerListener, SystemClock::elapsedRealtimeNanos);
+        streamReader.start();
+        Log.d(TAG, "Stream reader started");
+    }
+
+    // Detaches the reader; its thread exits once the link is closed
+    private void stopReader() {
+        StreamReader reader = streamReader;
+        streamReader = null;
+        if (reader != null) {
+            reader.shutdown();
+        }
+    }
+
+    //————————————————————————————
+    // Sample journal (acquisition thread)
+    //————————————————————————————
+
+    private long sessionTimestamp() {
+        return (sampleTimestamp > 0) ? sampleTimestamp : System.currentTimeMillis();
+    }
+
+    // The connected device's curve, which the live estimate uses too; stored with the experiment
+    private Calibration sessionCalibration() {
+        return CalibrationEngine.getInstance(context).active().calibration();
+    }
+
+    // Creates the session's experiment row (write-behind target) and its journal
+    private void beginSession() {
+        currentExperimentId = persister.begin(userEmail, samplesPerSecond, movingAvgValue,
+                durationOfExp, sessionTimestamp(), sessionCalibration());
+        openJournal();
+    }
+
+    // Starts a journal for the current session, including rows collected earlier
+    private void openJournal() {
+        if (journal != null) {
+            return;
+        }
+        File file = new File(context.getFilesDir(), "session_" + System.currentTimeMillis() + SampleJournal.SUFFIX);
+        ownJournals.add(file.getName()); // before the file exists, so recovery never sees it unclaimed
+        try {
+            journal = SampleJournal.create(file, new SampleJournal.Header(persister.getExperimentId(),
+                    userEmail, sessionTimestamp(), samplesPerSecond, movingAvgValue, durationOfExp));
+            journalRows = 0;
+            lastCheckpoint = SystemClock.elapsedRealtime();
+            appendToJournal(avgDespiker.finalCount());
+            Log.i(TAG, "Sample journal opened: " + file.getName());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open sample journal: " + e.getMessage(), e);
+            journal = null;
+        }
+    }
+
+    // Appends rows [journalRows, end) and checkpoints every JOURNAL_CHECKPOINT_MS
+    private void appendToJournal(int end) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            for (; journalRows < end; journalRows++) {
+                journal.append(xaxis.get(journalRows), dataPoints0.get(journalRows),
+                        dataPoints1.get(journalRows), dataPoints2.get(journalRows),
+                        dataPointsavgd.get(journalRows));
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastCheckpoint >= JOURNAL_CHECKPOINT_MS) {
+                journal.checkpoint();
+                lastCheckpoint = now;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Sample journal write failed, journaling stopped: " + e.getMessage(), e);
+            closeJournal();
+        }
+    }
+
+    private void checkpointJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.checkpoint();
+            lastCheckpoint = SystemClock.elapsedRealtime();
+        } catch (IOException e) {
+            Log.e(TAG, "Sample journal checkpoint failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Flushes every row, including the despiker's tail, and keeps the file for recovery
+    private void closeJournal() {
+        SampleJournal j = journal;
+        if (j == null) {
+            return;
+        }
+        appendToJournal(samples.size());
+        journal = null;
+        try {
+            j.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing sample journal: " + e.getMessage(), e);
+        }
+    }
+
+    // The session is in the database (or was thrown away): the journal is no longer needed
+    private void discardJournal() {
+        SampleJournal j = journal;
+        if (j == null) {
+            return;
+        }
+        journal = null;
+        try {
+            j.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing sample journal: " + e.getMessage());
+        }
+        if (!j.file().delete()) {
+            Log.w(TAG, "Could not delete sample journal " + j.file().getName());
+        }
+    }
+
+    // Writer thread: completes sessions left behind by a crash from their journals. A session
+    // started before this runs is still writing its own journal, which is skipped.
+    private void recoverJournals() {
+        File[] files = context.getFilesDir().listFiles((dir, name) ->
+                name.endsWith(SampleJournal.SUFFIX) && !ownJournals.contains(name));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                SampleJournal.Recovered recovered = SampleJournal.read(file);
+                SampleStore rec = recovered.samples;
+                SampleJournal.Header h = recovered.header;
+                int rows = rec.size();
+
+                // Rows the write-behind persister already stored are skipped
+                long id = h.experimentId;
+                int stored = id != -1 ? dbHelper.getBiomarkerDataPointCount(id) : -1;
+                if (rows == 0) {
+                    if (stored >= 0) {
+                        dbHelper.deleteBiomarkerExperiment(id);
+                    }
+                } else {
+                    if (stored < 0) {
+                        // The journal has no curve: the recovered experiment reads with the default
+                        id = dbHelper.createBiomarkerExperiment(h.userEmail, "Bluetooth",
+                                h.samplesPerSecond, h.movingAvg, h.duration, 0.0, 0, h.sampleTimestamp);
+                        stored = 0;
+                    }
+                    if (rows > stored) {
+                        dbHelper.addBiomarkerDataRange(id, stored, rows, rec.time(), rec.channel(0),
+                                rec.channel(1), rec.channel(2), rec.channel(3));
+                    }
+                    dbHelper.finalizeBiomarkerExperiment(id, findMaxbyAvg(rec.channel(1)), rows);
+                    Log.i(TAG, "Recovered " + rows + " samples from " + file.getName() + " as experiment " + id);
+                    postMessage("Recovered " + rows + " samples from an interrupted session");
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unreadable sample journal " + file.getName() + ": " + e.getMessage(), e);
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete sample journal " + file.getName());
+            }
+        }
+    }
+
+    //————————————————————————————
+    // Connection (state machine callbacks run on its thread)
+    //————————————————————————————
+
+    // Any thread: the link stopped delivering. Polling stops, a sample gap is opened
+    // if collecting, and the state machine reconnects with backoff.
+    private void linkLost(String reason) {
+        if (!connection.isConnected()) {
+            return; // already being handled
+        }
+        Log.w(TAG, "Link lost: " + reason);
+        shutdownScheduler();
+        pipelineHandler.post(this::openGap);
+        connection.linkLost();
+    }
+
+    private final ConnectionManager.Listener connectionListener = new ConnectionManager.Listener() {
+        @Override
+        public void onStateChanged(ConnectionManager.State state, int attempt, long delayMs) {
+            if (state == ConnectionManager.State.BACKOFF) {
+                Log.i(TAG, "Connection attempt " + attempt + " failed, retrying in " + delayMs + "ms");
+            } else {
+                Log.d(TAG, "Connection " + state + " (attempt " + attempt + ")");
+            }
+        }
+
+        @Override
+        public void onConnected(boolean reconnected, long downMs) {
+            errorCount = 0;
+            if (reconnected) {
+                Log.i(TAG, "Link restored after " + downMs + "ms");
+            }
+            // Reconnected mid-session: resume collecting whether or not anyone is watching
+            if (started) {
+                Log.i(TAG, "Reconnected during collection - resuming data collection");
+                sendTimer(true);
+            }
+            notifyObserver(o -> o.onConnected(reconnected, downMs));
+        }
+
+        @Override
+        public void onFailed(int attempts, IOException cause) {
+            Log.e(TAG, "All " + attempts + " connection attempts failed: " + cause.getMessage());
+            // Nothing will resume the session: end it like Stop does, which closes the gap,
+            // checkpoints the journal and lets the service leave the foreground
+            mainHandler.post(() -> {
+                if (started) {
+                    stopCollection();
+                }
+            });
+            notifyObserver(o -> o.onConnectionFailed(attempts));
+        }
+    };
+
+    // Acquisition thread: the link went down after the newest sample
+    private void openGap() {
+        if (started && !gaps.isOpen()) {
+            gaps.open(dataSize, dataSize > 0 ? lastSampleAt : System.currentTimeMillis());
+            Log.i(TAG, "Sample gap opened after sample #" + dataSize);
+        }
+    }
+
+    // Acquisition thread: samples are flowing again, or collection stopped
+    private void endGap(long atMs) {
+        GapLog.Gap gap = gaps.close(atMs);
+        if (gap != null) {
+            Log.i(TAG, "Sample gap after #" + gap.afterSample + " lasted " + gap.durationMs() + "ms ("
+                    + gaps.gaps().size() + " gaps, " + gaps.totalMs() + "ms total this session)");
+            persister.addGap(gap);
+        }
+    }
+
+    //————————————————————————————
+    // Packet buffering & parsing
+    //————————————————————————————
+
+    // Runs on the acquisition thread
+    private long nominalPeriodNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / Math.max(1, samplesPerSecond);
+    }
+
+    // A fresh session starts a new time axis and new timing statistics
+    private void resetTiming() {
+        timeOriginNanos = -1;
+        timing.reset(nominalPeriodNanos());
+        profiler.reset();
+    }
+
+    private void logTiming() {
+        Log.i(TAG, String.format(Locale.US,
+                "Session timing: %d samples, interval %.1f ms (max %.1f), jitter %.2f ms, drift %+.0f ms, missed %d",
+                timing.samples(), timing.meanIntervalMs(), timing.maxIntervalMs(), timing.jitterMs(),
+                timing.driftMs(), timing.missed()));
+    }
+
+    private void drainFrames() {
+        if (!started) {
+            framer.discard(); // not collecting - drop stray frames
+            return;
+        }
+        int drained = 0;
+        long drainStart = System.nanoTime();
+        long droppedBefore = framer.getFramesDropped();
+        long parseStart = drainStart;
+        while (framer.next()) {
+            long parsed = System.nanoTime();
+            profiler.record(Stage.PARSE, parsed - parseStart);
+            if (framer.burstIndex() == 0) {
+                recordFrameLatency(framer.timestampNanos());
+            }
+            // Burst samples were taken a period apart and arrive together, ending at the stamp
+            long stamp = framer.timestampNanos()
+                    - (framer.burstSize() - 1 - framer.burstIndex()) * nominalPeriodNanos();
+            timing.add(stamp, framer.hasSequence(), framer.sequence());
+            processSample(framer.value(0), framer.value(1), framer.value(2), stamp);
+            drained++;
+            parseStart = System.nanoTime();
+            profiler.record(Stage.FILTER, parseStart - parsed);
+        }
+        trace.span(TraceEvent.DRAIN, drainStart, parseStart, drained, framer.getFramesDropped() - droppedBefore);
+        if (drained > 0) {
+            long now = System.currentTimeMillis();
+            if (gaps.isOpen()) {
+                endGap(now);
+            }
+            lastSampleAt = now;
+            appendToJournal(avgDespiker.finalCount());
+            persister.offer(avgDespiker.finalCount());
+            AcquisitionSnapshot snapshot = new AcquisitionSnapshot(samples.size(), avgDespiker.finalCount(),
+                    dataSize, time, lastVolts[0], lastVolts[1], lastVolts[2], lastCortisol,
+                    timing.jitterMs(), timing.driftMs(), timing.missed(), System.nanoTime());
+            lastSnapshot = snapshot;
+            snapshots.publish(snapshot);
+        }
+    }
+
+    // First frame completed after the outstanding poll was written answers it
+    private void recordFrameLatency(long receivedNanos) {
+        long sentAt = pollAwaitingFrame.get();
+        if (sentAt != 0 && receivedNanos >= sentAt && pollAwaitingFrame.compareAndSet(sentAt, 0)) {
+            profiler.record(Stage.FRAME, receivedNanos - sentAt);
+        }
+    }
+
+    private void processSample(int raw0, int raw1, int raw2, long stampNanos) {
+        try {
+            quality.add(raw0, raw1, raw2);
+            double val0 = raw0 * voltsPerCount;
+            double val1 = raw1 * voltsPerCount;
+            double val2 = raw2 * voltsPerCount;
+
+            dataSize++;
+            if (timeOriginNanos < 0) {
+                // First sample sits one period in, as the synthesized axis did
+                timeOriginNanos = stampNanos - nominalPeriodNanos();
+            }
+            time = (stampNanos - timeOriginNanos) / 1e9;
+            trace.instant(TraceEvent.SAMPLE, dataSize, raw1, stampNanos);
+            // Calculate cortisol from last 100 samples (or all if less than 100)
+            lastCortisol = calculateRollingAverageCortisol();
+            lastVolts[0] = val0;
+            lastVolts[1] = val1;
+            lastVolts[2] = val2;
+
+            // collect for plotting
+            xaxis.add(time);
+            processPortData(0, val0);
+            processPortData(1, val1);
+            processPortData(2, val2);
+
+            // average of all three
+            double avg = (val0 + val1 + val2) / 3.0;
+            dataPointsavgdUnclean.add(avg);
+            dataPointsavgd.add(filter(CH_AVG, avg));
+            int settled = avgDespiker.update();
+            PeakTracker avgPeak = peaks[CH_AVG];
+            while (avgPeak.size() < settled) {
+                avgPeak.add(dataPointsavgd.get(avgPeak.size()));
+            }
+
+            // Batch boundaries are counted where samples land, in both poll and stream mode
+            checkBatchBoundary();
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error in processSample", e);
+        }
+    }
+
+    private void processPortData(int portIndex, double value) {
+        try {
+            switch (portIndex) {
+                case 0:
+                    dataPoints0Unclean.add(value);
+                    dataPoints0.add(filter(CH_PORT0, value));
+                    peaks[CH_PORT0].add(dataPoints0.last());
+                    break;
+                case 1:
+                    dataPoints1Unclean.add(value);
+                    dataPoints1.add(filter(CH_PORT1, value));
+                    rollingCortisol.add(dataPoints1.last());
+                    peaks[CH_PORT1].add(dataPoints1.last());
+                    break;
+                case 2:
+                    dataPoints2Unclean.add(value);
+                    dataPoints2.add(filter(CH_PORT2, value));
+                    peaks[CH_PORT2].add(dataPoints2.last());
+                    break;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing port " + portIndex + ": " + e.getMessage(), e);
+        }
+    }
+
+    private double calculateRollingAverageCortisol() {
+        if (dataPoints1.isEmpty()) {
+            return 0.0;
+        }
+
+        int samplesToAverage = rollingCortisol.count();
+        double avgVoltage = rollingCortisol.averageVoltage();
+        double yValue = rollingCortisol.millivolts();
+
+        // Single range check + trace
+        if (!rollingCortisol.inRange()) {
+            trace.instant(TraceEvent.ROLLING_INVALID, samplesToAverage,
+                    TraceRing.bits(avgVoltage), TraceRing.bits(yValue));
+            return 0.0;
+        }
+
+        double cortisol = rollingCortisol.cortisol();
+
+        trace.instant(TraceEvent.ROLLING, samplesToAverage, TraceRing.bits(avgVoltage), TraceRing.bits(cortisol));
+
+        return cortisol;
+    }
+
+    private double filter(int port, double value) {
+        SampleFilter f = portFilters[port];
+        return f == null ? value : f.add(value);
+    }
+
+    /**
+     * Recreates each channel's filter chain (the configured stages, then the
+     * moving average) and primes it from the tail of the raw columns, so
+     * changing the filters while keeping data continues from the samples
+     * already collected. Pipeline thread, or the constructor before it starts.
+     */
+    private void rebuildFilters() {
+        for (int port = 0; port < portFilters.length; port++) {
+            List<SampleFilter> stages;
+            try {
+                stages = FilterChain.parse(filterChain, samplesPerSecond);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Ignoring filter chain \"" + filterChain + "\": " + e.getMessage());
+                stages = new ArrayList<>();
+            }
+            if (movingAvgValue > 0) {
+                stages.add(new MovingAverage(movingAvgValue));
+            }
+            if (stages.isEmpty()) {
+                portFilters[port] = null; // filtering off
+                continue;
+            }
+            DoubleColumn raw = samples.channel(CH_RAW0 + port);
+            FilterChain f = new FilterChain(stages);
+            for (int i = Math.max(0, raw.size() - f.window()); i < raw.size(); i++) {
+                f.add(raw.get(i));
+            }
+            portFilters[port] = f;
+        }
+    }
+
+    // Mean of the samples around the first maximum; live channels use peakAverage instead
+    public static double findMaxbyAvg(DoubleColumn arl) {
+        if (arl == null || arl.isEmpty()) return 0.0;
+        PeakTracker t = new PeakTracker();
+        for (int i = 0; i < arl.size(); i++) {
+            t.add(arl.get(i));
+        }
+        return t.plateauMean();
+    }
+
+    // One block of the quality checks per second of samples
+    private QualityMonitor createQualityMonitor() {
+        return new QualityMonitor(Math.max(2, samplesPerSecond), ADCbits, analogRef,
+                CalibrationEngine.getInstance(context).active(), this::onQualityChanged);
+    }
+
+    // Pipeline thread
+    private void onQualityChanged(QualityMonitor.Fault fault, int port, boolean active, double value) {
+        trace.instant(active ? TraceEvent.QUALITY_RAISED : TraceEvent.QUALITY_CLEARED,
+                fault.ordinal(), port, TraceRing.bits(value));
+        String where = port == QualityMonitor.ALL_CHANNELS ? "all ports" : "port " + port;
+        if (active) {
+            Log.w(TAG, String.format(Locale.US, "Quality fault on %s at sample #%d: %s (%.4f)",
+                    where, dataSize, fault.label, value));
+        } else {
+            Log.i(TAG, "Quality fault cleared on " + where + " at sample #" + dataSize + ": " + fault.label);
+        }
+        notifyObserver(o -> o.onQualityChanged(fault, port, active, value));
+    }
+
+    // Batches are logical: sample #n belongs to batch (n - 1) / BATCH_SIZE + 1, so the
+    // stored data_point column already marks them. Crossing a boundary only makes the
+    // finished batch durable; the connection and the sampling are left alone.
+    private void checkBatchBoundary() {
+        if (dataSize > 0 && dataSize % BATCH_SIZE == 0) {
+            // Make the batch durable (runs on the acquisition thread)
+            checkpointJournal();
+
+            int batch = ++currentBatch;
+            Log.i(TAG, "Reached batch boundary at sample #" + dataSize + ", starting batch " + batch);
+            postMessage("Starting batch " + batch);
+        }
+    }
+
+    //————————————————————————————
+    // Sensor link
+    //————————————————————————————
+
+    // The selected source as seen by the connection state machine: open() runs on the
+    // connection thread and brings the device into a known state; close() may come from
+    // any thread and aborts it.
+    private class SourceLink implements ConnectionManager.Link {
+        private static final long RESET_SETTLE_MS = 500;
+
+        @Override
+        public void open() throws IOException {
+            SampleSource s = source;
+            if (s == null) {
+                throw new IOException("No device selected");
+            }
+            s.open();
+            InputStream in = s.input();
+            OutputStream out = s.output();
+            if (in == null || out == null) {
+                throw new IOException("Link closed while connecting");
+            }
+
+            // Reset the device and drop its answer before framing starts. No reader or
+            // writer exists yet, so this thread still owns both streams.
+            try {
+                out.write(CMD_RESET.getBytes());
+                out.flush();
+            } catch (IOException e) {
+                throw new IOException("Reset command failed", e);
+            }
+            try {
+                Thread.sleep(RESET_SETTLE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while resetting device");
+            }
+            while (in.available() > 0) {
+                in.skip(in.available());
+            }
+
+            // The live estimate and the range check use this device's curve from the first sample on
+            applyCalibration(s);
+
+            // From here on every byte goes through the connection's reader and writer
+            startReader(s instanceof ReplaySource || !captureLinks ? in : startCapture(s, in));
+            startWriter(out);
+        }
+
+        @Override
+        public void close() {
+            stopWriter();
+            stopReader();
+            SampleSource s = source;
+            if (s != null) {
+                s.close();
+            }
+            stopCapture();
+        }
+    }
+
+    //————————————————————————————
+    // Stream capture (connection thread)
+    //————————————————————————————
+
+    // Records everything the reader gets from this link; capture trouble never fails the link
+    private InputStream startCapture(SampleSource s, InputStream in) {
+        stopCapture();
+        File dir = new File(context.getFilesDir(), CAPTURE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create capture directory");
+            return in;
+        }
+        pruneCaptures(MAX_CAPTURES - 1, CAPTURE_BUDGET_BYTES - MAX_CAPTURE_BYTES);
+        try {
+            capture = StreamCapture.create(
+                    new File(dir, "link_" + System.currentTimeMillis() + StreamCapture.SUFFIX), s.name(),
+                    MAX_CAPTURE_BYTES);
+            return capture.tap(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Stream capture unavailable", e);
+            return in;
+        }
+    }
+
+    private void stopCapture() {
+        StreamCapture c = capture;
+        capture = null;
+        if (c == null) {
+            return;
+        }
+        try {
+            c.close();
+            Log.d(TAG, "Captured " + c.getBytes() + " bytes in " + c.getChunks() + " reads to "
+                    + c.getFile().getName() + (c.isFailed() ? " (incomplete)" : c.isFull() ? " (size limit)" : ""));
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing stream capture", e);
+        }
+    }
+
+    // Newest first
+    public List<File> listCaptures() {
+        File[] files = new File(context.getFilesDir(), CAPTURE_DIR)
+                .listFiles((dir, name) -> name.endsWith(StreamCapture.SUFFIX));
+        List<File> captures = new ArrayList<>(files != null ? Arrays.asList(files) : new ArrayList<>());
+        captures.sort((a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        return captures;
+    }
+
+    // Keeps the newest captures while both limits hold and deletes the rest
+    private void pruneCaptures(int keep, long keepBytes) {
+        List<File> captures = listCaptures();
+        long total = 0;
+        for (int i = 0; i < captures.size(); i++) {
+            total += captures.get(i).length();
+            if (i >= keep || total > keepBytes) {
+                if (!captures.get(i).delete()) {
+                    Log.w(TAG, "Could not delete old capture " + captures.get(i).getName());
+                }
+            }
+        }
+    }
+}
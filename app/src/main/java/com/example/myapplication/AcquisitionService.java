@@ -0,0 +1,138 @@
+package com.example.myapplication;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.util.Log;
+
+/**
+ * Owns the {@link AcquisitionEngine} so a measurement does not depend on
+ * {@link OutputBluetooth} being on screen.
+ *
+ * Activities start and bind the service, then observe the engine through
+ * {@link LocalBinder}. While a session is collecting the service runs in the
+ * foreground with a partial wake lock, so sampling keeps going for hours with
+ * the screen off or the activity destroyed; when collection stops it drops
+ * back to an ordinary started service.
+ */
+public class AcquisitionService extends Service implements AcquisitionEngine.Host {
+    private static final String TAG = "AcquisitionService";
+    private static final String CHANNEL_ID = "acquisition";
+    private static final int NOTIFICATION_ID = 1;
+
+    public class LocalBinder extends Binder {
+        public AcquisitionService getService() {
+            return AcquisitionService.this;
+        }
+
+        public AcquisitionEngine getEngine() {
+            return engine;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private AcquisitionEngine engine;
+    private PowerManager.WakeLock wakeLock;
+    private boolean discardOnDestroy = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        engine = new AcquisitionEngine(getApplicationContext(), this);
+        Log.i(TAG, "Acquisition service created");
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // A killed session is recovered from its journal, not by restarting the service
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        releaseWakeLock();
+        engine.shutdown(discardOnDestroy);
+        Log.i(TAG, "Acquisition service destroyed" + (discardOnDestroy ? ", session discarded" : ""));
+    }
+
+    /**
+     * Stops the service once no activity is bound. With {@code discard} the
+     * unsaved session is dropped, otherwise its journal is kept for recovery.
+     */
+    public void finish(boolean discard) {
+        discardOnDestroy = discard;
+        stopSelf();
+    }
+
+    //————————————————————————————
+    // Foreground while collecting
+    //————————————————————————————
+
+    @Override
+    public void onCollectingChanged(boolean collecting) {
+        if (collecting) {
+            startInForeground();
+            acquireWakeLock();
+        } else {
+            releaseWakeLock();
+            stopForeground(STOP_FOREGROUND_REMOVE);
+        }
+    }
+
+    private void startInForeground() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                "Sample collection", NotificationManager.IMPORTANCE_LOW));
+
+        Intent open = new Intent(this, OutputBluetooth.class)
+                .setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP)
+                .putExtra("user_email", engine.getSessionOwner());
+        PendingIntent content = PendingIntent.getActivity(this, 0, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_medical)
+                .setContentTitle("Collecting samples")
+                .setContentText("Cortisol measurement in progress")
+                .setContentIntent(content)
+                .setOngoing(true)
+                .build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    // Keeps the CPU running for the poll timer and the pipeline with the screen off
+    private void acquireWakeLock() {
+        if (wakeLock == null) {
+            PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
+            wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "CortisolMonitor:acquisition");
+            wakeLock.setReferenceCounted(false);
+        }
+        if (!wakeLock.isHeld()) {
+            wakeLock.acquire();
+        }
+    }
+
+    private void releaseWakeLock() {
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+}
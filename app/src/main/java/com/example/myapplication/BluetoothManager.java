@@ -3,7 +3,6 @@ package com.example.myapplication;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
@@ -15,18 +14,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.UUID;
 
 public class BluetoothManager {
     private static final String TAG = "BluetoothManager";
     private final BluetoothAdapter bluetoothAdapter;
     private final Context context;
-    private BluetoothSocket bluetoothSocket;
+    private BluetoothSppSource source;
     private OutputStream outputStream;
     private InputStream inputStream;
     private boolean isConnected = false;
     private OnDataReceivedListener dataReceivedListener;
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
     public interface OnDataReceivedListener {
         void onDataReceived(String data);
@@ -91,10 +88,10 @@ public class BluetoothManager {
             }
 
             BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
-            bluetoothSocket = device.createRfcommSocketToServiceRecord(MY_UUID);
-            bluetoothSocket.connect();
-            outputStream = bluetoothSocket.getOutputStream();
-            inputStream = bluetoothSocket.getInputStream();
+            source = new BluetoothSppSource(context, bluetoothAdapter, device);
+            source.open();
+            outputStream = source.output();
+            inputStream = source.input();
             isConnected = true;
             startListening();
         } catch (SecurityException e) {
@@ -148,22 +145,12 @@ public class BluetoothManager {
     }
 
     private void cleanup() {
-        try {
-            if (outputStream != null) {
-                outputStream.close();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
-            if (bluetoothSocket != null) {
-                bluetoothSocket.close();
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing connection: " + e.getMessage());
-        } finally {
-            outputStream = null;
-            inputStream = null;
-            bluetoothSocket = null;
+        // Closing the socket closes both of its streams
+        if (source != null) {
+            source.close();
         }
+        outputStream = null;
+        inputStream = null;
+        source = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package com.example.myapplication;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.myapplication.acquisition.SampleSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+/**
+ * Bluetooth serial port (RFCOMM/SPP) link to an HC-05 style sensor module.
+ *
+ * Tries the standard SPP service record first and falls back to RFCOMM
+ * channel 1, which some modules need.
+ */
+public class BluetoothSppSource implements SampleSource {
+    private static final String TAG = "BluetoothSppSource";
+    public static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+    private static final int CONNECTION_TIMEOUT_MS = 15000;
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final BluetoothDevice device;
+
+    // Guarded by this; the socket is published before connecting so close() can abort it
+    private BluetoothSocket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    public BluetoothSppSource(Context context, BluetoothAdapter adapter, BluetoothDevice device) {
+        this.context = context.getApplicationContext();
+        this.adapter = adapter;
+        this.device = device;
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    @Override
+    public String name() {
+        String name = null;
+        try {
+            name = device.getName();
+        } catch (SecurityException e) {
+            Log.w(TAG, "No permission to read device name");
+        }
+        return (name != null ? name : "Unknown Device") + " (" + device.getAddress() + ")";
+    }
+
+    @Override
+    public void open() throws IOException {
+        try {
+            ensureBluetoothReady();
+
+            // Cancel any ongoing discovery to free up resources
+            if (adapter.isDiscovering()) {
+                adapter.cancelDiscovery();
+            }
+
+            // Try standard SPP connection first, then the channel 1 fallback
+            try {
+                connect(device.createRfcommSocketToServiceRecord(SPP_UUID));
+                Log.d(TAG, "Standard connection successful");
+            } catch (IOException e) {
+                Log.w(TAG, "Standard connection failed: " + e.getMessage());
+                close();
+                connect(createFallbackSocket());
+                Log.d(TAG, "Fallback connection successful");
+            }
+        } catch (SecurityException e) {
+            throw new IOException("Bluetooth permission denied", e);
+        }
+    }
+
+    @Override
+    public synchronized InputStream input() {
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream output() {
+        return out;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return socket != null && socket.isConnected() && in != null && out != null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing socket", e);
+            }
+            socket = null;
+        }
+        in = null;
+        out = null;
+    }
+
+    private void ensureBluetoothReady() throws IOException {
+        if (adapter == null || !adapter.isEnabled()) {
+            throw new IOException("Bluetooth adapter not available or not enabled");
+        }
+
+        // Check permissions for Android 12+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
+                ContextCompat.checkSelfPermission(context,
+                        Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            throw new IOException("BLUETOOTH_CONNECT permission not granted");
+        }
+    }
+
+    private BluetoothSocket createFallbackSocket() throws IOException {
+        try {
+            // Use reflection to create socket with channel 1
+            Method fallbackMethod = device.getClass().getMethod("createRfcommSocket", int.class);
+            return (BluetoothSocket) fallbackMethod.invoke(device, 1);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Fallback socket unavailable", e);
+        }
+    }
+
+    private void connect(BluetoothSocket s) throws IOException {
+        if (s == null) {
+            throw new IOException("No socket");
+        }
+        synchronized (this) {
+            socket = s;
+        }
+
+        // Set connection timeout if possible (on some Android versions)
+        try {
+            Method m = s.getClass().getMethod("setConnectionTimeout", int.class);
+            m.invoke(s, CONNECTION_TIMEOUT_MS);
+        } catch (Exception e) {
+            // Method not available, continue without setting timeout
+            Log.d(TAG, "Could not set connection timeout: " + e.getMessage());
+        }
+        s.connect();
+
+        synchronized (this) {
+            if (socket != s) {
+                throw new IOException("Link closed while connecting");
+            }
+            in = s.getInputStream();
+            out = s.getOutputStream();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.myapplication.acquisition.Calibration;
+import com.example.myapplication.acquisition.CalibrationTable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single place where port 1 voltages become cortisol values.
+ *
+ * Each device may have its own {@link Calibration} stored in the database
+ * (entered in Settings while it is connected); devices without one use
+ * {@link Calibration#DEFAULT}. Every experiment keeps the curve it was
+ * recorded with, so history screens convert each one under its own curve,
+ * whichever device is connected now. Curves are expanded once into a
+ * {@link CalibrationTable} and cached.
+ */
+public class CalibrationEngine {
+    private static final String TAG = "CalibrationEngine";
+
+    private static CalibrationEngine instance;
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Calibration, CalibrationTable> tables = new HashMap<>();
+    private volatile CalibrationTable active;
+
+    public static synchronized CalibrationEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new CalibrationEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CalibrationEngine(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        active = table(Calibration.DEFAULT);
+    }
+
+    /** Table of the device selected last, or the default curve. */
+    public CalibrationTable active() {
+        return active;
+    }
+
+    /** Table for a device's stored curve, falling back to the default one. */
+    public CalibrationTable forDevice(String device) {
+        Calibration c = device != null ? dbHelper.getSensorCalibration(device) : null;
+        return table(c != null ? c : Calibration.DEFAULT);
+    }
+
+    /** Makes a device's curve the active one; call when its link comes up. */
+    public CalibrationTable select(String device) {
+        CalibrationTable t = forDevice(device);
+        if (t != active) {
+            Log.i(TAG, "Calibration for " + device + ": " + t.calibration());
+        }
+        active = t;
+        return t;
+    }
+
+    /** Stores a device's curve; it takes effect the next time the device is selected. */
+    public void store(String device, Calibration c) {
+        dbHelper.saveSensorCalibration(device, c);
+    }
+
+    public CalibrationTable table(Calibration c) {
+        synchronized (tables) {
+            CalibrationTable t = tables.get(c);
+            if (t == null) {
+                t = new CalibrationTable(c);
+                tables.put(c, t);
+            }
+            return t;
+        }
+    }
+
+    /** Cortisol in ng/mL under the active curve, or {@link CalibrationTable#INVALID}. */
+    public double cortisol(double volts) {
+        return active.cortisol(volts);
+    }
+
+    /**
+     * Cortisol of stored experiments from their max port 1 voltage, each under
+     * the curve it was recorded with ({@link Calibration#DEFAULT} for older
+     * ones); {@link CalibrationTable#INVALID} where out of range.
+     */
+    public double[] convertHistory(List<DatabaseHelper.BiomarkerExperimentSummary> exps) {
+        double[] out = new double[exps.size()];
+        Calibration last = null;
+        CalibrationTable t = null;
+        for (int i = 0; i < out.length; i++) {
+            DatabaseHelper.BiomarkerExperimentSummary exp = exps.get(i);
+            Calibration c = exp.calibration != null ? exp.calibration : Calibration.DEFAULT;
+            if (!c.equals(last)) {
+                t = table(c);
+                last = c;
+            }
+            out[i] = t.cortisol(exp.maxValue);
+        }
+        return out;
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 import android.content.ContentValues;
 import androidx.lifecycle.LiveData;
@@ -16,6 +17,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.lang.StringBuilder;
 
+import com.example.myapplication.acquisition.Calibration;
+import com.example.myapplication.acquisition.DoubleColumn;
 import com.example.myapplication.data.QuestionnaireDao;
 import com.example.myapplication.data.QuestionnaireResponse;
 
@@ -31,6 +34,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // Constants for biomarker tables
     public static final String TABLE_BIOMARKER_EXPERIMENTS = "biomarker_experiments";
     public static final String TABLE_BIOMARKER_DATA = "biomarker_data";
+    public static final String TABLE_BIOMARKER_GAPS = "biomarker_gaps";
+    public static final String TABLE_SENSOR_CALIBRATIONS = "sensor_calibrations";
+    public static final String TABLE_EXPERIMENT_CALIBRATIONS = "experiment_calibrations";
 
     // Biomarker experiment table columns
     public static final String COLUMN_ID = "id";
@@ -52,6 +58,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_PORT2 = "port2";
     public static final String COLUMN_AVG = "avg";
 
+    // Biomarker gap table columns (data_point = last sample before the gap)
+    public static final String COLUMN_GAP_START = "start_ts";
+    public static final String COLUMN_GAP_END = "end_ts";
+
+    // Sensor calibration table columns (one coefficient set per device)
+    public static final String COLUMN_DEVICE = "device";
+    public static final String COLUMN_LOT = "lot";
+    public static final String COLUMN_MIN_MV = "min_mv";
+    public static final String COLUMN_MAX_MV = "max_mv";
+    public static final String COLUMN_INTERCEPT_MV = "intercept_mv";
+    public static final String COLUMN_SLOPE = "slope";
+    public static final String COLUMN_POWER = "power";
+    public static final String COLUMN_UPDATED_TS = "updated_ts";
+
     // Create table statements for biomarker data
     private static final String CREATE_TABLE_BIOMARKER_EXPERIMENTS = "CREATE TABLE " + TABLE_BIOMARKER_EXPERIMENTS + "("
             + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
@@ -77,6 +97,41 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + "FOREIGN KEY(" + COLUMN_EXPERIMENT_ID + ") REFERENCES " + TABLE_BIOMARKER_EXPERIMENTS + "(" + COLUMN_ID + ")"
             + ")";
 
+    // Link dropouts while recording; created on open so existing databases get it too
+    private static final String CREATE_TABLE_BIOMARKER_GAPS = "CREATE TABLE IF NOT EXISTS " + TABLE_BIOMARKER_GAPS + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_EXPERIMENT_ID + " INTEGER,"
+            + COLUMN_DATA_POINT + " INTEGER,"
+            + COLUMN_GAP_START + " INTEGER,"
+            + COLUMN_GAP_END + " INTEGER,"
+            + "FOREIGN KEY(" + COLUMN_EXPERIMENT_ID + ") REFERENCES " + TABLE_BIOMARKER_EXPERIMENTS + "(" + COLUMN_ID + ")"
+            + ")";
+
+    // Per-device calibration curves; created on open like the gaps table
+    private static final String CREATE_TABLE_SENSOR_CALIBRATIONS = "CREATE TABLE IF NOT EXISTS " + TABLE_SENSOR_CALIBRATIONS + "("
+            + COLUMN_DEVICE + " TEXT PRIMARY KEY,"
+            + COLUMN_LOT + " TEXT,"
+            + COLUMN_MIN_MV + " REAL,"
+            + COLUMN_MAX_MV + " REAL,"
+            + COLUMN_INTERCEPT_MV + " REAL,"
+            + COLUMN_SLOPE + " REAL,"
+            + COLUMN_POWER + " REAL,"
+            + COLUMN_UPDATED_TS + " INTEGER"
+            + ")";
+
+    // Curve each experiment was recorded with, so history never follows later device changes;
+    // experiments without a row predate it and use Calibration.DEFAULT
+    private static final String CREATE_TABLE_EXPERIMENT_CALIBRATIONS = "CREATE TABLE IF NOT EXISTS " + TABLE_EXPERIMENT_CALIBRATIONS + "("
+            + COLUMN_EXPERIMENT_ID + " INTEGER PRIMARY KEY,"
+            + COLUMN_LOT + " TEXT,"
+            + COLUMN_MIN_MV + " REAL,"
+            + COLUMN_MAX_MV + " REAL,"
+            + COLUMN_INTERCEPT_MV + " REAL,"
+            + COLUMN_SLOPE + " REAL,"
+            + COLUMN_POWER + " REAL,"
+            + "FOREIGN KEY(" + COLUMN_EXPERIMENT_ID + ") REFERENCES " + TABLE_BIOMARKER_EXPERIMENTS + "(" + COLUMN_ID + ")"
+            + ")";
+
     // Singleton instance
     private static DatabaseHelper instance;
 
@@ -122,6 +177,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             // Create biomarker tables
             db.execSQL(CREATE_TABLE_BIOMARKER_EXPERIMENTS);
             db.execSQL(CREATE_TABLE_BIOMARKER_DATA);
+            db.execSQL(CREATE_TABLE_BIOMARKER_GAPS);
+            db.execSQL(CREATE_TABLE_SENSOR_CALIBRATIONS);
+            db.execSQL(CREATE_TABLE_EXPERIMENT_CALIBRATIONS);
 
             // Create questionnaire summary table
             db.execSQL("CREATE TABLE IF NOT EXISTS questionnaire_summaries (" +
@@ -164,6 +222,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         // We won't do version-by-version upgrades as we're starting fresh
         // If you need to preserve data, implement more sophisticated migration logic
         db.execSQL("DROP TABLE IF EXISTS questionnaire_responses");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BIOMARKER_GAPS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SENSOR_CALIBRATIONS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPERIMENT_CALIBRATIONS);
         db.execSQL("DROP TABLE IF EXISTS " + TABLE_BIOMARKER_DATA);
         db.execSQL("DROP TABLE IF EXISTS " + TABLE_BIOMARKER_EXPERIMENTS);
         db.execSQL("DROP TABLE IF EXISTS questionnaire_summaries");
@@ -171,6 +232,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         onCreate(db);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            db.execSQL(CREATE_TABLE_BIOMARKER_GAPS);
+            db.execSQL(CREATE_TABLE_SENSOR_CALIBRATIONS);
+            db.execSQL(CREATE_TABLE_EXPERIMENT_CALIBRATIONS);
+        }
+    }
+
     private void checkDatabase() {
         SQLiteDatabase db = getReadableDatabase();
 
@@ -904,40 +975,259 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     /**
      * Adds biomarker data points in bulk (more efficient)
      */
-    public void addBiomarkerDataBatch(long experimentId, ArrayList<Double> xaxis,
-                                      ArrayList<Double> dataPoints0, ArrayList<Double> dataPoints1,
-                                      ArrayList<Double> dataPoints2, ArrayList<Double> dataPointsavgd) {
+    public void addBiomarkerDataBatch(long experimentId, DoubleColumn xaxis,
+                                      DoubleColumn dataPoints0, DoubleColumn dataPoints1,
+                                      DoubleColumn dataPoints2, DoubleColumn dataPointsavgd) {
+        int size = Math.min(xaxis.size(),
+                Math.min(dataPoints0.size(),
+                        Math.min(dataPoints1.size(),
+                                Math.min(dataPoints2.size(), dataPointsavgd.size()))));
+        addBiomarkerDataRange(experimentId, 0, size, xaxis,
+                dataPoints0, dataPoints1, dataPoints2, dataPointsavgd);
+    }
+
+    /**
+     * Adds rows [from, to) of the given columns in one transaction, numbered
+     * from data point from + 1.
+     *
+     * @return true if the rows were committed
+     */
+    public boolean addBiomarkerDataRange(long experimentId, int from, int to, DoubleColumn xaxis,
+                                         DoubleColumn dataPoints0, DoubleColumn dataPoints1,
+                                         DoubleColumn dataPoints2, DoubleColumn dataPointsavgd) {
+        return addBiomarkerDataRows(experimentId, from, false, xaxis.toArray(from, to),
+                dataPoints0.toArray(from, to), dataPoints1.toArray(from, to),
+                dataPoints2.toArray(from, to), dataPointsavgd.toArray(from, to));
+    }
+
+    /**
+     * Adds rows copied out of a session in one transaction, numbered from data
+     * point from + 1. Used for incremental (write-behind) saving; with
+     * {@code replace} rows already stored under the same data points are
+     * overwritten.
+     *
+     * @return true if the rows were committed
+     */
+    public boolean addBiomarkerDataRows(long experimentId, int from, boolean replace, double[] xaxis,
+                                        double[] dataPoints0, double[] dataPoints1,
+                                        double[] dataPoints2, double[] dataPointsavgd) {
+        int to = from + xaxis.length;
         SQLiteDatabase db = this.getWritableDatabase();
         db.beginTransaction();
 
+        // One compiled statement for the whole batch; values are bound as primitives
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_BIOMARKER_DATA + " ("
+                + COLUMN_EXPERIMENT_ID + ", " + COLUMN_DATA_POINT + ", " + COLUMN_TIME_SEC + ", "
+                + COLUMN_PORT0 + ", " + COLUMN_PORT1 + ", " + COLUMN_PORT2 + ", " + COLUMN_AVG
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
         try {
-            int size = Math.min(xaxis.size(),
-                    Math.min(dataPoints0.size(),
-                            Math.min(dataPoints1.size(),
-                                    Math.min(dataPoints2.size(), dataPointsavgd.size()))));
-
-            for (int i = 0; i < size; i++) {
-                ContentValues values = new ContentValues();
-                values.put(COLUMN_EXPERIMENT_ID, experimentId);
-                values.put(COLUMN_DATA_POINT, i + 1);
-                values.put(COLUMN_TIME_SEC, xaxis.get(i));
-                values.put(COLUMN_PORT0, dataPoints0.get(i));
-                values.put(COLUMN_PORT1, dataPoints1.get(i));
-                values.put(COLUMN_PORT2, dataPoints2.get(i));
-                values.put(COLUMN_AVG, dataPointsavgd.get(i));
-
-                db.insert(TABLE_BIOMARKER_DATA, null, values);
+            if (replace) {
+                db.delete(TABLE_BIOMARKER_DATA, COLUMN_EXPERIMENT_ID + " = ? AND " + COLUMN_DATA_POINT
+                        + " > ? AND " + COLUMN_DATA_POINT + " <= ?", new String[]{
+                        String.valueOf(experimentId), String.valueOf(from), String.valueOf(to)});
+            }
+            for (int i = 0; i < xaxis.length; i++) {
+                insert.bindLong(1, experimentId);
+                insert.bindLong(2, from + i + 1);
+                insert.bindDouble(3, xaxis[i]);
+                insert.bindDouble(4, dataPoints0[i]);
+                insert.bindDouble(5, dataPoints1[i]);
+                insert.bindDouble(6, dataPoints2[i]);
+                insert.bindDouble(7, dataPointsavgd[i]);
+                insert.executeInsert();
             }
             db.setTransactionSuccessful();
 
-            Log.d(TAG, "Added " + size + " biomarker data points for experiment " + experimentId);
+            Log.d(TAG, "Added " + (to - from) + " biomarker data points for experiment " + experimentId);
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "Error adding biomarker data batch: " + e.getMessage(), e);
+            return false;
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Records the final max value and size of an experiment whose data was
+     * saved incrementally
+     */
+    public void finalizeBiomarkerExperiment(long experimentId, double maxValue, int dataSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_MAX_VALUE, maxValue);
+        values.put(COLUMN_DATA_SIZE, dataSize);
+
+        int rowsUpdated = db.update(TABLE_BIOMARKER_EXPERIMENTS, values, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(experimentId)});
+
+        Log.d(TAG, "Finalized experiment " + experimentId + " (max " + maxValue + ", size " +
+                dataSize + "), rows affected: " + rowsUpdated);
+    }
+
+    /**
+     * Highest data point stored for an experiment, 0 if none, or -1 if the
+     * experiment does not exist
+     */
+    public int getBiomarkerDataPointCount(long experimentId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String[] args = {String.valueOf(experimentId)};
+
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM " + TABLE_BIOMARKER_EXPERIMENTS +
+                " WHERE " + COLUMN_ID + " = ?", args)) {
+            if (!cursor.moveToFirst()) {
+                return -1;
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT MAX(" + COLUMN_DATA_POINT + ") FROM " +
+                TABLE_BIOMARKER_DATA + " WHERE " + COLUMN_EXPERIMENT_ID + " = ?", args)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Deletes the data points of an experiment after the given data point
+     */
+    public void deleteBiomarkerDataAfter(long experimentId, int dataPoint) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] args = {String.valueOf(experimentId), String.valueOf(dataPoint)};
+        int points = db.delete(TABLE_BIOMARKER_DATA,
+                COLUMN_EXPERIMENT_ID + " = ? AND " + COLUMN_DATA_POINT + " > ?", args);
+        // A gap after the last kept point has no samples after it any more
+        db.delete(TABLE_BIOMARKER_GAPS,
+                COLUMN_EXPERIMENT_ID + " = ? AND " + COLUMN_DATA_POINT + " >= ?", args);
+        Log.d(TAG, "Deleted " + points + " unsaved data points of experiment " + experimentId);
+    }
+
+    /**
+     * Deletes an experiment and all of its data points
+     */
+    public void deleteBiomarkerExperiment(long experimentId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] args = {String.valueOf(experimentId)};
+        db.beginTransaction();
+        try {
+            int points = db.delete(TABLE_BIOMARKER_DATA, COLUMN_EXPERIMENT_ID + " = ?", args);
+            db.delete(TABLE_BIOMARKER_GAPS, COLUMN_EXPERIMENT_ID + " = ?", args);
+            db.delete(TABLE_EXPERIMENT_CALIBRATIONS, COLUMN_EXPERIMENT_ID + " = ?", args);
+            db.delete(TABLE_BIOMARKER_EXPERIMENTS, COLUMN_ID + " = ?", args);
+            db.setTransactionSuccessful();
+            Log.d(TAG, "Deleted experiment " + experimentId + " with " + points + " data points");
         } finally {
             db.endTransaction();
         }
     }
 
+    /**
+     * Records a sample gap (link dropout) after the given data point
+     */
+    public void addBiomarkerGap(long experimentId, int afterDataPoint, long startTs, long endTs) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_EXPERIMENT_ID, experimentId);
+        values.put(COLUMN_DATA_POINT, afterDataPoint);
+        values.put(COLUMN_GAP_START, startTs);
+        values.put(COLUMN_GAP_END, endTs);
+
+        long id = db.insert(TABLE_BIOMARKER_GAPS, null, values);
+        Log.d(TAG, "Added gap of " + (endTs - startTs) + "ms after data point " + afterDataPoint +
+                " for experiment " + experimentId + " (row " + id + ")");
+    }
+
+    /**
+     * Gets the sample gaps of an experiment in order
+     */
+    public Cursor getBiomarkerGaps(long experimentId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.query(TABLE_BIOMARKER_GAPS, null,
+                COLUMN_EXPERIMENT_ID + " = ?", new String[]{String.valueOf(experimentId)},
+                null, null, COLUMN_DATA_POINT + " ASC");
+    }
+
+    /**
+     * Stores the calibration curve of a device, replacing any previous one
+     */
+    public void saveSensorCalibration(String device, Calibration c) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_DEVICE, device);
+        values.put(COLUMN_LOT, c.lot);
+        values.put(COLUMN_MIN_MV, c.minMv);
+        values.put(COLUMN_MAX_MV, c.maxMv);
+        values.put(COLUMN_INTERCEPT_MV, c.interceptMv);
+        values.put(COLUMN_SLOPE, c.slope);
+        values.put(COLUMN_POWER, c.power);
+        values.put(COLUMN_UPDATED_TS, System.currentTimeMillis());
+
+        db.insertWithOnConflict(TABLE_SENSOR_CALIBRATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        Log.d(TAG, "Saved calibration for " + device + ": " + c);
+    }
+
+    /**
+     * Gets the calibration curve of a device, or null if none was stored
+     */
+    public Calibration getSensorCalibration(String device) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SENSOR_CALIBRATIONS, null,
+                COLUMN_DEVICE + " = ?", new String[]{device}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return readCalibration(cursor, device);
+        }
+    }
+
+    /**
+     * Records the calibration curve an experiment is converted with
+     */
+    public void saveExperimentCalibration(long experimentId, Calibration c) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_EXPERIMENT_ID, experimentId);
+        values.put(COLUMN_LOT, c.lot);
+        values.put(COLUMN_MIN_MV, c.minMv);
+        values.put(COLUMN_MAX_MV, c.maxMv);
+        values.put(COLUMN_INTERCEPT_MV, c.interceptMv);
+        values.put(COLUMN_SLOPE, c.slope);
+        values.put(COLUMN_POWER, c.power);
+
+        db.insertWithOnConflict(TABLE_EXPERIMENT_CALIBRATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        Log.d(TAG, "Experiment " + experimentId + " calibrated with " + c.lot);
+    }
+
+    // "t.a AS a, t.b AS b" so joined columns keep their plain names in the cursor
+    private static String joined(String table, String... columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(table).append('.').append(column).append(" AS ").append(column);
+        }
+        return sb.toString();
+    }
+
+    // Coefficient columns of the current row; null if absent (no joined row) or invalid
+    private static Calibration readCalibration(Cursor cursor, Object owner) {
+        int lot = cursor.getColumnIndexOrThrow(COLUMN_LOT);
+        if (cursor.isNull(lot)) {
+            return null;
+        }
+        try {
+            return new Calibration(
+                    cursor.getString(lot),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_MIN_MV)),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_MAX_MV)),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_INTERCEPT_MV)),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_SLOPE)),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_POWER)));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid calibration stored for " + owner + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Updates an experiment's max value
      */
@@ -964,7 +1254,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         return db.query(TABLE_BIOMARKER_EXPERIMENTS, null,
-                COLUMN_USERNAME + " = ?", new String[]{username},
+                COLUMN_USERNAME + " = ? AND " + COLUMN_DATA_SIZE + " > 0", new String[]{username},
                 null, null, COLUMN_TIMESTAMP + " DESC");
     }
 
@@ -982,11 +1272,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         public long id;
         public long timestamp;
         public double maxValue;
+        public Calibration calibration; // curve it was recorded with; null for older experiments
 
-        public BiomarkerExperimentSummary(long id, long timestamp, double maxValue) {
+        public BiomarkerExperimentSummary(long id, long timestamp, double maxValue, Calibration calibration) {
             this.id = id;
             this.timestamp = timestamp;
             this.maxValue = maxValue;
+            this.calibration = calibration;
         }
     }
     /**
@@ -1006,10 +1298,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Log.d(TAG, "getLatestBiomarkerExperiments - Filtering by username: [" + username + "]");
 
 
-        String sql = "SELECT " + COLUMN_ID + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_MAX_VALUE +
-                " FROM " + TABLE_BIOMARKER_EXPERIMENTS +
-                " WHERE " + COLUMN_USERNAME + " = ?" +
-                " ORDER BY " + COLUMN_TIMESTAMP + " DESC" +
+        String sql = "SELECT " + joined("e", COLUMN_ID, COLUMN_TIMESTAMP, COLUMN_MAX_VALUE) + ", " +
+                joined("c", COLUMN_LOT, COLUMN_MIN_MV, COLUMN_MAX_MV, COLUMN_INTERCEPT_MV, COLUMN_SLOPE, COLUMN_POWER) +
+                " FROM " + TABLE_BIOMARKER_EXPERIMENTS + " e" +
+                " LEFT JOIN " + TABLE_EXPERIMENT_CALIBRATIONS + " c" +
+                " ON c." + COLUMN_EXPERIMENT_ID + " = e." + COLUMN_ID +
+                " WHERE e." + COLUMN_USERNAME + " = ?" +
+                " AND e." + COLUMN_DATA_SIZE + " > 0" +   // skip sessions still being recorded
+                " ORDER BY e." + COLUMN_TIMESTAMP + " DESC" +
                 " LIMIT " + limit;
 
         Cursor cursor = null;
@@ -1021,7 +1317,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 long id = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID));
                 long ts = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP));
                 double maxVal = cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_MAX_VALUE));
-                results.add(new BiomarkerExperimentSummary(id, ts, maxVal));
+                results.add(new BiomarkerExperimentSummary(id, ts, maxVal, readCalibration(cursor, id)));
                 Log.d(TAG, "  - User: [" + username + "], Experiment ID: " + id + ", MaxValue: " + maxVal);
             }
         } catch (Exception e) {
@@ -1047,6 +1343,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         String query = "SELECT " + COLUMN_ID + " FROM " + TABLE_BIOMARKER_EXPERIMENTS +
                 " WHERE " + COLUMN_USERNAME + " = ? " +
+                " AND " + COLUMN_DATA_SIZE + " > 0" +
                 " ORDER BY " + COLUMN_TIMESTAMP + " DESC LIMIT 1";
 
         try (Cursor cursor = db.rawQuery(query, new String[]{currentUserEmail})) {
@@ -4,19 +4,26 @@ import android.Manifest;
 import java.lang.reflect.Method;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
-import android.os.Message;
+import android.os.IBinder;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.fragment.app.Fragment;
@@ -33,6 +40,19 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.myapplication.acquisition.AcquisitionProfiler.Stage;
+import com.example.myapplication.acquisition.AcquisitionSnapshot;
+import com.example.myapplication.acquisition.ConnectionManager;
+import com.example.myapplication.acquisition.CsvExporter;
+import com.example.myapplication.acquisition.Decimator;
+import com.example.myapplication.acquisition.DeviceSimulator;
+import com.example.myapplication.acquisition.DoubleColumn;
+import com.example.myapplication.acquisition.LatencyHistogram;
+import com.example.myapplication.acquisition.QualityMonitor;
+import com.example.myapplication.acquisition.ReplaySource;
+import com.example.myapplication.acquisition.SampleSource;
+import com.example.myapplication.acquisition.SampleStore;
+import com.example.myapplication.acquisition.TraceEvent;
 import com.jjoe64.graphview.GraphView;
 import com.jjoe64.graphview.LegendRenderer;
 import com.jjoe64.graphview.series.DataPoint;
@@ -42,21 +62,18 @@ import com.jjoe64.graphview.Viewport;
 
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Set;
-import java.util.StringTokenizer;
-import java.util.TimerTask;
-import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class OutputBluetooth extends AppCompatActivity {
@@ -64,94 +81,82 @@ public class OutputBluetooth extends AppCompatActivity {
     private static final int REQUEST_BLUETOOTH_PERMISSION = 1;
     private static final int REQUEST_LOCATION_PERMISSION = 2;
     private static final int REQUEST_STORAGE_PERMISSION = 3;
-    private boolean autoReconnectEnabled = true;
-    private boolean isReconnecting = false;
-    private final int REFRESH_THRESHOLD = 1500;
-    private boolean isRefreshing = false;
-    private static final int AUTO_RECONNECT_THRESHOLD = 1400; // Reconnect well before problems
-    private final Object reconnectLock = new Object();
-    private volatile boolean reconnecting = false;
 
-    // Connection state management
-    private volatile boolean isConnecting = false;
-    private volatile boolean connectionEstablished = false;
-    private final Object connectionLock = new Object();
-
-    private long sampleTimestamp = -1;
 
     // UI Elements
     private Button startButton, stopButton, saveButton, settingsButton, connectButton, showButton;
     private TextView textViewAppend;
-    private static final int BATCH_SIZE = 1000;
-    private int currentBatch = 1;
+    private TextView perfOverlay;
     private GraphView graphView;
 
     // Graph data storage
     private ArrayList<LineGraphSeries<DataPoint>> graphData;
-    private final ArrayList<Double> dataPoints0 = new ArrayList<>();
-    private final ArrayList<Double> dataPoints1 = new ArrayList<>();
-    private final ArrayList<Double> dataPoints2 = new ArrayList<>();
-    private final ArrayList<Double> dataPointsavgd = new ArrayList<>();
-    private static final int RECONNECT_THRESHOLD = 1300; // Lower threshold to avoid issues
-
-    private long lastReconnectTime = 0;
-    private static final long RECONNECT_COOLDOWN = 30000; // 30 seconds between reconnection attempts
-    private final ArrayList<Double> xaxis = new ArrayList<>();
-    private final ArrayList<Double> dataPoints0Unclean = new ArrayList<>();
-    private final ArrayList<Double> dataPoints1Unclean = new ArrayList<>();
-    private final ArrayList<Double> dataPoints2Unclean = new ArrayList<>();
-    private final ArrayList<Double> dataPointsavgdUnclean = new ArrayList<>();
+
+    // Acquisition runs in AcquisitionService; this activity only observes and controls it
+    private AcquisitionEngine engine;
+    private AcquisitionService service;
+    private androidx.appcompat.app.AlertDialog qualityDialog; // open signal problem prompt, if any
+
+    // CSV files are written off the UI thread, one at a time
+    private static final ExecutorService EXPORTER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "CsvExport");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile CsvExporter export; // running export, if any
+    private volatile double[] exportPeaks; // peak averages for its preamble, from the engine
+    private Intent pendingSettings; // settings result that arrived before the engine was bound
+
+    // The engine's sample columns, read up to the rows a snapshot says are complete (set once bound)
+    private SampleStore samples;
+    private DoubleColumn dataPoints0;
+    private DoubleColumn dataPoints1;
+    private DoubleColumn dataPoints2;
+    private DoubleColumn dataPointsavgd;
+    private DoubleColumn xaxis;
 
     // Bluetooth fields
     private final BluetoothAdapter mBA = BluetoothAdapter.getDefaultAdapter();
     private Set<BluetoothDevice> pairedDevices;
-    private BluetoothDevice myDevice;
-    private BluetoothSocket mySocket = null;
-    private InputStream is;
-    private OutputStream os;
-
-    // Experiment parameters
-    private double analogRef = 5.0;
-    private double durationOfExp = 600.0;
-    private int samplesPerSecond = 5;
-    private int movingAvgValue = 4;
-    private int ADCbits = 15;
-    private boolean[] analogPort = {true, true, true, true};
 
     // State
     private int backCount = 0;
-    private int graphCount = 0;
-    private int dataSize = 0;
-    private double time = 0.0;
     private double max = 0.0;
     private String userEmail;
-    private boolean started = false;
-
-    // Buffer for partial packets
-    private StringBuilder dataBuffer = new StringBuilder(256);
-
-    // Executor for scheduled polling
-    private ScheduledExecutorService scheduler;
-    private int errorCount = 0;
-    private static final int MAX_ERRORS = 5;
 
-    // Handler to pass data back to UI thread
-    private final Handler myHandler = new Handler() {
+    private int drawnRows = -1;                            // UI thread only
+    private boolean clearing = false;                      // UI thread only: columns off limits
+
+    // Per-stage latency overlay; long-press the readout to show it, the overlay to dump the trace
+    private static final long OVERLAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private long overlayUpdatedAt = 0;   // UI thread only
+    private int overlayDataSize = 0;     // UI thread only
+    private int renderedDataSize = 0;    // UI thread only
+
+    // Live plot (UI thread only): persistent series that only receive new points and
+    // keep the last durationOfExp seconds, plus a decimated overview of older data
+    private static final int OVERVIEW_POINTS = 512;
+    private final ArrayList<LiveTrace> liveTraces = new ArrayList<>();
+    private final Decimator overview = new Decimator(OVERVIEW_POINTS);
+    private LineGraphSeries<DataPoint> overviewSeries;
+    private int overviewRows = 0;
+
+    // Redraws from the newest snapshot, at most once per display frame
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
         @Override
-        public void handleMessage(Message msg) {
-            String stream = msg.getData().getString("data");
-            if (stream == null) {
-                Log.e(TAG, "Received null data stream");
-                return;
+        public void doFrame(long frameTimeNanos) {
+            AcquisitionSnapshot snapshot = engine != null && !clearing ? engine.snapshots().take() : null;
+            if (snapshot != null) {
+                renderSnapshot(snapshot, true);
+            }
+            if (perfOverlay.getVisibility() == View.VISIBLE
+                    && engine != null && frameTimeNanos - overlayUpdatedAt >= OVERLAY_REFRESH_NANOS) {
+                updatePerfOverlay(frameTimeNanos);
             }
-            dataBuffer.append(stream);
-            processBufferedData();
+            Choreographer.getInstance().postFrameCallback(this);
         }
     };
 
-    // Database helper
-    private DatabaseHelper dbHelper;
-    private long currentExperimentId = -1;
 
     //————————————————————————————
     // Activity Lifecycle
@@ -162,11 +167,9 @@ public class OutputBluetooth extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_output_bluetooth);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-        sampleTimestamp = getIntent().getLongExtra("sample_timestamp", -1);
 
         initializeViews();
         checkPermissions();
-        loadSettings();
         GraphView graph = findViewById(R.id.graphViewBL);
         Viewport vp = graph.getViewport();
 
@@ -188,34 +191,171 @@ public class OutputBluetooth extends AppCompatActivity {
 
 
 
-        // Initialize database helper using the singleton pattern
-        dbHelper = DatabaseHelper.getInstance(this);
-
-
-
         userEmail = getIntent().getStringExtra("user_email");
         graphData = new ArrayList<>();
-        resetGraph();
+
+        // Started as well as bound, so a collecting session outlives this activity
+        Intent acquisition = new Intent(this, AcquisitionService.class);
+        startService(acquisition);
+        bindService(acquisition, serviceConnection, Context.BIND_AUTO_CREATE);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        initializeBluetooth();
+        if (engine != null && engine.connectionState() == ConnectionManager.State.IDLE) {
+            initializeBluetooth();
+        }
+        Choreographer.getInstance().postFrameCallback(frameCallback);
     }
 
     @Override
-    protected void onStop() {
-        super.onStop();
-        shutdownScheduler();
-        if (started) sendTimer(false);
+    protected void onPause() {
+        super.onPause();
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        shutdownScheduler();
-        if (started) sendTimer(false);
+        if (engine != null) {
+            engine.setObserver(null);
+        }
+        // Leaving on purpose ends an idle session and drops what was not saved. A collecting
+        // session keeps running in the service; a recreated activity attaches to it again.
+        if (service != null && isFinishing() && !engine.isCollecting()) {
+            service.finish(true);
+        }
+        unbindService(serviceConnection);
+    }
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            AcquisitionService.LocalBinder local = (AcquisitionService.LocalBinder) binder;
+            service = local.getService();
+            engine = local.getEngine();
+            onEngineReady();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // Same process: only happens if the service was killed
+            service = null;
+            engine = null;
+        }
+    };
+
+    // Attaches to the engine, which may already be connected or collecting
+    private void onEngineReady() {
+        samples = engine.samples();
+        dataPoints0 = samples.channel(AcquisitionEngine.CH_PORT0);
+        dataPoints1 = samples.channel(AcquisitionEngine.CH_PORT1);
+        dataPoints2 = samples.channel(AcquisitionEngine.CH_PORT2);
+        dataPointsavgd = samples.channel(AcquisitionEngine.CH_AVG);
+        xaxis = samples.time();
+
+        engine.setSessionOwner(userEmail, getIntent().getLongExtra("sample_timestamp", -1));
+        engine.setObserver(engineObserver);
+        engine.setTracing(perfOverlay.getVisibility() == View.VISIBLE);
+
+        // Redraw what the session already has; live updates follow from the snapshots
+        resetGraph();
+        drawnRows = -1;
+        AcquisitionSnapshot last = engine.lastSnapshot();
+        if (last != null) {
+            renderSnapshot(last, false);
+        }
+
+        if (engine.isCollecting()) {
+            startButton.setEnabled(false);
+            stopButton.setEnabled(true);
+            connectButton.setEnabled(false);
+            settingsButton.setEnabled(true);
+            Log.i(TAG, "Attached to running session at sample #" + engine.getDataSize());
+        } else if (engine.connectionState() == ConnectionManager.State.IDLE) {
+            initializeBluetooth();
+        } else if (engine.hasValidConnection()) {
+            startButton.setEnabled(true);
+            connectButton.setEnabled(true);
+        }
+        updateDataDependentButtons();
+
+        if (pendingSettings != null) {
+            onSettingsResult(pendingSettings);
+            pendingSettings = null;
+        }
+    }
+
+    // Engine events, delivered on the main thread
+    private final AcquisitionEngine.Observer engineObserver = new AcquisitionEngine.Observer() {
+        @Override
+        public void onConnected(boolean reconnected, long downMs) {
+            notifyConnectionSuccess(reconnected, downMs);
+        }
+
+        @Override
+        public void onConnectionFailed(int attempts) {
+            Toast.makeText(OutputBluetooth.this,
+                    "Connection failed after " + attempts + " attempts. Please check device and try again.",
+                    Toast.LENGTH_LONG).show();
+
+            // Reset UI state; the engine has stopped the session, so what was collected can be saved
+            startButton.setEnabled(true);
+            stopButton.setEnabled(false);
+            connectButton.setEnabled(true);
+            settingsButton.setEnabled(true);
+            updateDataDependentButtons();
+        }
+
+        @Override
+        public void onMessage(String message) {
+            Toast.makeText(OutputBluetooth.this, message, Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onQualityChanged(QualityMonitor.Fault fault, int port, boolean active, double value) {
+            String where = port == QualityMonitor.ALL_CHANNELS ? "All ports" : "Port " + port;
+            if (active) {
+                showQualityDialog(where + ": " + fault.label);
+            } else {
+                Toast.makeText(OutputBluetooth.this, where + " no longer " + fault.label, Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    // Offers to abort a test whose signal has gone bad instead of finishing an invalid reading
+    private void showQualityDialog(String problem) {
+        if (engine == null || !engine.isCollecting()) {
+            return;
+        }
+        if (qualityDialog != null && qualityDialog.isShowing()) {
+            qualityDialog.setMessage(qualityMessage(problem));
+            return;
+        }
+        qualityDialog = new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Signal Problem")
+                .setMessage(qualityMessage(problem))
+                .setIcon(android.R.drawable.ic_dialog_alert)
+                .setPositiveButton("Abort & Retry", (dialog, which) -> {
+                    Log.i(TAG, "User aborted the test after a quality fault: " + problem);
+                    onClickStop(null);
+                    // The clear is queued on the pipeline behind the stop and the last drain;
+                    // Start comes back once the aborted session is gone
+                    startButton.setEnabled(false);
+                    resetDataArrays(() -> {
+                        startButton.setEnabled(engine != null && !engine.isCollecting());
+                        Toast.makeText(this, "Test aborted. Check the sensor and press Start to retry.",
+                                Toast.LENGTH_LONG).show();
+                    });
+                })
+                .setNegativeButton("Keep Going", (dialog, which) -> dialog.dismiss())
+                .setCancelable(true)
+                .show();
+    }
+
+    private static String qualityMessage(String problem) {
+        return problem + "\n\nThe result of this test is likely to be invalid. Abort it and start again?";
     }
 
     @Override
@@ -223,34 +363,12 @@ public class OutputBluetooth extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
 
         if (requestCode == 1 && resultCode == RESULT_OK && data != null) {
-            // Settings activity result
-            try {
-                int newSamplesPerSecond = data.getIntExtra("sps", samplesPerSecond);
-                int newMovingAvgValue = data.getIntExtra("avgpoints", movingAvgValue);
-                double newDurationOfExp = data.getDoubleExtra("duration", durationOfExp);
-                boolean[] newAnalogPort = data.getBooleanArrayExtra("analog_port");
-                if (newAnalogPort == null) {
-                    newAnalogPort = new boolean[]{true, true, true, true};
-                }
-
-                // Check if settings changed and we have existing data
-                boolean settingsChanged = (newSamplesPerSecond != samplesPerSecond) ||
-                        (newMovingAvgValue != movingAvgValue) ||
-                        (newDurationOfExp != durationOfExp) ||
-                        !java.util.Arrays.equals(newAnalogPort, analogPort);
-
-                if (settingsChanged && hasExistingData()) {
-                    // Show warning about existing data
-                    showSettingsChangeWarning(newSamplesPerSecond, newMovingAvgValue, newDurationOfExp, newAnalogPort);
-                } else {
-                    // No existing data or no changes, apply settings directly
-                    applyNewSettings(newSamplesPerSecond, newMovingAvgValue, newDurationOfExp, newAnalogPort);
-                }
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing settings result", e);
-                Toast.makeText(this, "Error updating settings", Toast.LENGTH_SHORT).show();
+            // Settings activity result; a recreated activity applies it once bound
+            if (engine == null) {
+                pendingSettings = data;
+                return;
             }
+            onSettingsResult(data);
         } else if (requestCode == 0) {
             // Bluetooth enable request result
             if (resultCode == RESULT_OK) {
@@ -265,19 +383,62 @@ public class OutputBluetooth extends AppCompatActivity {
         }
     }
 
-    private void showSettingsChangeWarning(int newSps, int newAvg, double newDuration, boolean[] newPorts) {
+    private void onSettingsResult(Intent data) {
+        try {
+            // A curve stored for the current sensor applies from the next session on
+            if (data.getBooleanExtra("calibration_changed", false)) {
+                engine.reloadCalibration();
+            }
+            int newSamplesPerSecond = data.getIntExtra("sps", engine.getSamplesPerSecond());
+            int newMovingAvgValue = data.getIntExtra("avgpoints", engine.getMovingAvgValue());
+            double newDurationOfExp = data.getDoubleExtra("duration", engine.getDurationOfExp());
+            boolean[] newAnalogPort = data.getBooleanArrayExtra("analog_port");
+            if (newAnalogPort == null) {
+                newAnalogPort = new boolean[]{true, true, true, true};
+            }
+            boolean newStreaming = data.getBooleanExtra("streaming", engine.isStreamingMode());
+            String newFilterChain = data.getStringExtra("filter_chain");
+            if (newFilterChain == null) {
+                newFilterChain = engine.getFilterChain();
+            }
+
+            // Check if settings changed and we have existing data
+            boolean settingsChanged = (newSamplesPerSecond != engine.getSamplesPerSecond()) ||
+                    (newMovingAvgValue != engine.getMovingAvgValue()) ||
+                    (newDurationOfExp != engine.getDurationOfExp()) ||
+                    !java.util.Arrays.equals(newAnalogPort, engine.getAnalogPort()) ||
+                    !newFilterChain.equals(engine.getFilterChain());
+
+            if (settingsChanged && engine.hasExistingData()) {
+                // Show warning about existing data
+                showSettingsChangeWarning(newSamplesPerSecond, newMovingAvgValue, newDurationOfExp, newAnalogPort, newStreaming,
+                        newFilterChain);
+            } else {
+                // No existing data or no changes, apply settings directly
+                applyNewSettings(newSamplesPerSecond, newMovingAvgValue, newDurationOfExp, newAnalogPort, newStreaming,
+                        newFilterChain);
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing settings result", e);
+            Toast.makeText(this, "Error updating settings", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void showSettingsChangeWarning(int newSps, int newAvg, double newDuration, boolean[] newPorts,
+                                           boolean newStreaming, String newFilterChain) {
         androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
         builder.setTitle("Settings Changed")
-                .setMessage("You have " + dataSize + " existing data points.\n\nChanging settings may affect data consistency.\n\nWhat would you like to do?")
+                .setMessage("You have " + engine.getDataSize() + " existing data points.\n\nChanging settings may affect data consistency.\n\nWhat would you like to do?")
                 .setIcon(android.R.drawable.ic_dialog_info)
                 .setPositiveButton("Apply & Keep Data", (dialog, which) -> {
                     Log.i(TAG, "User chose to apply settings and keep existing data");
-                    applyNewSettings(newSps, newAvg, newDuration, newPorts);
+                    applyNewSettings(newSps, newAvg, newDuration, newPorts, newStreaming, newFilterChain);
                     Toast.makeText(this, "Settings applied. Note: Data consistency may be affected.", Toast.LENGTH_LONG).show();
                 })
                 .setNegativeButton("Apply & Clear Data", (dialog, which) -> {
                     Log.i(TAG, "User chose to apply settings and clear existing data");
-                    applyNewSettings(newSps, newAvg, newDuration, newPorts);
+                    applyNewSettings(newSps, newAvg, newDuration, newPorts, newStreaming, newFilterChain);
                     resetDataArrays();
                     Toast.makeText(this, "Settings applied and data cleared", Toast.LENGTH_SHORT).show();
                 })
@@ -290,17 +451,10 @@ public class OutputBluetooth extends AppCompatActivity {
                 .show();
     }
 
-    private void applyNewSettings(int newSps, int newAvg, double newDuration, boolean[] newPorts) {
-        samplesPerSecond = newSps;
-        movingAvgValue = newAvg;
-        durationOfExp = newDuration;
-        analogPort = newPorts;
-
-        saveSettings();
+    private void applyNewSettings(int newSps, int newAvg, double newDuration, boolean[] newPorts,
+                                  boolean newStreaming, String newFilterChain) {
+        engine.applySettings(newSps, newAvg, newDuration, newPorts, newStreaming, newFilterChain);
         resetGraph();
-
-        Log.i(TAG, "Settings updated - SPS: " + samplesPerSecond +
-                ", MovingAvg: " + movingAvgValue + ", Duration: " + durationOfExp);
     }
 
     @Override
@@ -340,11 +494,8 @@ public class OutputBluetooth extends AppCompatActivity {
                 if (allGranted) {
                     // Remove verbose success toast
                     Log.i(TAG, "Storage permission granted");
-                    try {
-                        saveToFile(); // Retry the save operation
-                    } catch (IOException e) {
-                        Log.e(TAG, "Error saving file after permission granted", e);
-                        Toast.makeText(this, "Save failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    if (engine != null) {
+                        startExport(); // Retry the save operation
                     }
                 } else {
                     Toast.makeText(this, "Storage permission denied. Cannot save files.", Toast.LENGTH_LONG).show();
@@ -362,29 +513,24 @@ public class OutputBluetooth extends AppCompatActivity {
     //————————————————————————————
 
     public void onClickStart(View v) {
-        synchronized (connectionLock) {
-            // 1) Stop any existing job & ensure clean state
-            sendTimer(false);
-
-            // 2) Check if we have existing data and ask user what to do
-            if (hasExistingData()) {
-                showDataContinuationDialog();
-                return;
-            }
+        if (engine == null) {
+            return; // not bound yet
+        }
 
-            // 3) No existing data, proceed with fresh start
-            startDataCollection(true); // true = reset data arrays
+        // 2) Check if we have existing data and ask user what to do
+        if (engine.hasExistingData()) {
+            showDataContinuationDialog();
+            return;
         }
-    }
 
-    private boolean hasExistingData() {
-        return dataSize > 0 && (!dataPointsavgd.isEmpty() || !xaxis.isEmpty());
+        // 3) No existing data, proceed with fresh start
+        startDataCollection(true); // true = reset data arrays
     }
 
     private void showDataContinuationDialog() {
         androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
         builder.setTitle("Existing Data Found")
-                .setMessage("You have " + dataSize + " data points from a previous session.\n\nWhat would you like to do?")
+                .setMessage("You have " + engine.getDataSize() + " data points from a previous session.\n\nWhat would you like to do?")
                 .setIcon(android.R.drawable.ic_dialog_info)
                 .setPositiveButton("Continue Collection", (dialog, which) -> {
                     Log.i(TAG, "User chose to continue from existing data");
@@ -403,69 +549,61 @@ public class OutputBluetooth extends AppCompatActivity {
     }
 
     private void startDataCollection(boolean resetData) {
-        synchronized (connectionLock) {
-            // 1) Reset data if requested
-            if (resetData) {
-                resetDataArrays();
-                Log.i(TAG, "Starting fresh data collection");
-            } else {
-                Log.i(TAG, "Continuing data collection from sample #" + dataSize + " (time: " + String.format("%.2f", time) + "s)");
-            }
-
-            // 2) Check runtime BLUETOOTH_CONNECT permission (Android 12+)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
-                    ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
-                            != PackageManager.PERMISSION_GRANTED) {
-                ActivityCompat.requestPermissions(this,
-                        new String[]{Manifest.permission.BLUETOOTH_CONNECT},
-                        REQUEST_BLUETOOTH_PERMISSION);
-                return;
-            }
-
-            // 3) Check if we already have a valid connection
-            if (hasValidConnection()) {
-                // We have a valid connection, just start data collection
-                Log.i(TAG, "Bluetooth ready - showing step overlay");
-                showStepOverlay(); // show steps first, collection starts after step 5
-                return;
-            }
+        // 1) Reset data if requested
+        if (resetData) {
+            resetDataArrays();
+            Log.i(TAG, "Starting fresh data collection");
+        } else {
+            Log.i(TAG, "Continuing data collection from sample #" + engine.getDataSize() + " (time: " + String.format("%.2f", engine.getTime()) + "s)");
+        }
 
-            // 4) Need to establish new connection
-            // Prevent multiple connection attempts
-            if (isConnecting) {
-                Toast.makeText(this, "Connection already in progress...", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        // 2) Check runtime BLUETOOTH_CONNECT permission (Android 12+)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
+                ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
+                        != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.BLUETOOTH_CONNECT},
+                    REQUEST_BLUETOOTH_PERMISSION);
+            return;
+        }
 
-            // 5) Set connecting state and spawn connect thread
-            isConnecting = true;
-            connectionEstablished = false;
+        // 3) Check if we already have a valid connection
+        if (engine.hasValidConnection()) {
+            // We have a valid connection, just start data collection
+            Log.i(TAG, "Bluetooth ready - showing step overlay");
+            showStepOverlay(); // show steps first, collection starts after step 5
+            return;
+        }
 
-            if (myDevice != null) {
-                new ConnectThread(myDevice).start();
-            } else {
-                // No device selected, try to find one
-                isConnecting = false; // Reset since we're going to searchForDevice
-                initializeBluetooth();
-            }
+        // 4) Need to establish new connection
+        // Prevent multiple connection attempts
+        if (engine.connectionState() != ConnectionManager.State.IDLE) {
+            Toast.makeText(this, "Connection already in progress...", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            // 6) UI state will be enabled in ConnectThread on success.
-            //    For now disable Start to prevent double-tap:
-            startButton.setEnabled(false);
-            stopButton.setEnabled(false);
+        if (engine.getSource() == null) {
+            // No device selected, try to find one
+            initializeBluetooth();
+            return;
         }
+        engine.connect();
+
+        // 5) UI state will be enabled once the link is up.
+        //    For now disable Start to prevent double-tap:
+        startButton.setEnabled(false);
+        stopButton.setEnabled(false);
     }
 
     public void onClickStop(View v) {
         Log.i(TAG, "Stop button clicked - stopping data collection only");
-
-        synchronized (connectionLock) {
-            // 1) Stop polling and reset data collection state only
-            sendTimer(false);
-            started = false;
-            // DON'T reset connectionEstablished or isConnecting - keep Bluetooth connected
-            isReconnecting = false;
+        if (engine == null) {
+            return;
         }
+
+        // 1) Stop polling and reset data collection state only
+        engine.stopCollection();
+        // DON'T disconnect - keep Bluetooth connected
         // Dismiss overlay if showing
         Fragment overlay = getSupportFragmentManager().findFragmentByTag("step_overlay");
         if (overlay != null) {
@@ -558,9 +696,9 @@ public class OutputBluetooth extends AppCompatActivity {
                         .commit();
                 findViewById(R.id.stepOverlayContainer).setVisibility(View.GONE);
 
-                // NOW start actual sample collection after step 5
-                started = true;
-                sendTimer(true);
+                // NOW start actual sample collection after step 5; it continues in the
+                // service if this activity goes away
+                engine.startCollection();
                 startButton.setEnabled(false);
                 stopButton.setEnabled(true);
                 connectButton.setEnabled(false);
@@ -595,39 +733,21 @@ public class OutputBluetooth extends AppCompatActivity {
     public void onClickConnect(View v) {
         Log.i(TAG, "Connect button clicked");
 
-        synchronized (connectionLock) {
-            // Prevent multiple connection attempts
-            if (isConnecting) {
-                Log.w(TAG, "Connection already in progress");
-                Toast.makeText(this, "Connection already in progress...", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            // manual reconnect
-            Log.i(TAG, "Starting manual reconnection");
-            shutdownScheduler();
-            connectionEstablished = false;
-            isReconnecting = false;
-
-            if (mySocket != null) {
-                try {
-                    mySocket.close();
-                    Log.d(TAG, "Closed existing socket for reconnection");
-                } catch (IOException ignored) {
-                }
-                mySocket = null;
-            }
-            is = null;
-            os = null;
+        if (engine == null) {
+            return;
         }
 
+        // Manual reconnect: drop the current link (or pending retries), then pick a device
+        Log.i(TAG, "Starting manual reconnection");
+        engine.disconnect();
+
         Toast.makeText(this, "Reconnecting...", Toast.LENGTH_SHORT).show();
         initializeBluetooth();
     }
     public void onClickShow(View v) {
         Log.i(TAG, "Show button clicked");
         try {
-            if (dataPointsavgd.isEmpty()) {
+            if (engine == null || dataPointsavgd.isEmpty()) {
                 // No new data, just open ResultActivity to show history
                 Intent intent = new Intent(this, ResultActivity.class);
                 String role = getIntent().getStringExtra("user_role");
@@ -637,45 +757,38 @@ public class OutputBluetooth extends AppCompatActivity {
                 return;
             }
 
-            // Calculate max values
-            double max = findMaxbyAvg(dataPointsavgd);
-            double max0 = findMaxbyAvg(dataPoints0);
-            double max1 = findMaxbyAvg(dataPoints1);
-            double max2 = findMaxbyAvg(dataPoints2);
-
-            Log.i(TAG, "Calculated max values: port0=" + max0 + ", port1=" + max1 + ", port2=" + max2);
-
-            // SAVE TO DATABASE FIRST
-            
-            if (currentExperimentId == -1) {
-                // Create new experiment
-                long tsToSave = (sampleTimestamp > 0) ? sampleTimestamp : System.currentTimeMillis();
-                currentExperimentId = dbHelper.createBiomarkerExperiment(
-                        userEmail, "Bluetooth", samplesPerSecond,
-                        movingAvgValue, durationOfExp, max1, dataSize, tsToSave);
-                dbHelper.addBiomarkerDataBatch(currentExperimentId, xaxis,
-                        dataPoints0, dataPoints1, dataPoints2, dataPointsavgd);
-                Log.i(TAG, "New experiment saved with ID: " + currentExperimentId);
-            } else {
-                // Update existing experiment
-                dbHelper.updateBiomarkerExperimentMaxValue(currentExperimentId, max1);  // ✅ Also change this
-                Log.i(TAG, "Updated experiment " + currentExperimentId + " with max value: " + max1);
-            }
-
-
-            // Then open ResultActivity
-            String role = getIntent().getStringExtra("user_role");
+            // SAVE TO DATABASE FIRST (the samples are already there, this finalizes),
+            // then open ResultActivity once the writer is done; the engine works out the max values
+            engine.finishSession(new AcquisitionEngine.SaveCallback() {
+                @Override
+                public void onSessionSaved(long experimentId, double[] peakAverages) {
+                    double max0 = peakAverages[AcquisitionEngine.CH_PORT0];
+                    double max1 = peakAverages[AcquisitionEngine.CH_PORT1];
+                    double max2 = peakAverages[AcquisitionEngine.CH_PORT2];
+                    Log.i(TAG, "Calculated max values: port0=" + max0 + ", port1=" + max1 + ", port2=" + max2);
+                    Log.i(TAG, "Experiment " + experimentId + " saved with max value: " + max1);
+                    if (isFinishing() || isDestroyed()) {
+                        return;
+                    }
+                    String role = getIntent().getStringExtra("user_role");
 
-            Intent resultActivity = new Intent(this, ResultActivity.class);
-            resultActivity.putExtra("max_value_port0", max0);
-            resultActivity.putExtra("max_value_port1", max1);
-            resultActivity.putExtra("max_value_port2", max2);
-            resultActivity.putExtra("user_email", userEmail);
-            resultActivity.putExtra("user_role", role);   // forward role
-            startActivity(resultActivity);
+                    Intent resultActivity = new Intent(OutputBluetooth.this, ResultActivity.class);
+                    resultActivity.putExtra("max_value_port0", max0);
+                    resultActivity.putExtra("max_value_port1", max1);
+                    resultActivity.putExtra("max_value_port2", max2);
+                    resultActivity.putExtra("user_email", userEmail);
+                    resultActivity.putExtra("user_role", role);   // forward role
+                    startActivity(resultActivity);
 
+                    Log.i(TAG, "Started ResultActivity with max values");
+                }
 
-            Log.i(TAG, "Started ResultActivity with max values");
+                @Override
+                public void onSessionSaveFailed(Exception cause) {
+                    Toast.makeText(OutputBluetooth.this, "Error showing results: " + cause.getMessage(),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
         } catch (Exception e) {
             Log.e(TAG, "Error showing results", e);
             Toast.makeText(this, "Error showing results: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -767,6 +880,9 @@ public class OutputBluetooth extends AppCompatActivity {
 
     public void onClickSetting(View v) {
         Log.i(TAG, "Settings button clicked");
+        if (engine == null) {
+            return;
+        }
 
         // Check if button is actually enabled
         if (!settingsButton.isEnabled()) {
@@ -776,7 +892,7 @@ public class OutputBluetooth extends AppCompatActivity {
         }
 
         // Check if data collection is currently active
-        if (started) {
+        if (engine.isCollecting()) {
             Log.w(TAG, "Settings requested during active data collection");
             showSettingsBlockedDialog();
             return;
@@ -784,10 +900,13 @@ public class OutputBluetooth extends AppCompatActivity {
 
         try {
             Intent settingsIntent = new Intent(OutputBluetooth.this, SettingsActivity.class);
-            settingsIntent.putExtra("sps", samplesPerSecond);
-            settingsIntent.putExtra("avgpoints", movingAvgValue);
-            settingsIntent.putExtra("duration", durationOfExp);
-            settingsIntent.putExtra("analog_port", analogPort);
+            settingsIntent.putExtra("sps", engine.getSamplesPerSecond());
+            settingsIntent.putExtra("avgpoints", engine.getMovingAvgValue());
+            settingsIntent.putExtra("duration", engine.getDurationOfExp());
+            settingsIntent.putExtra("analog_port", engine.getAnalogPort());
+            settingsIntent.putExtra("streaming", engine.isStreamingMode());
+            settingsIntent.putExtra("filter_chain", engine.getFilterChain());
+            settingsIntent.putExtra("device", engine.getSource() != null ? engine.getSource().name() : null);
             startActivityForResult(settingsIntent, 1);
             Log.i(TAG, "Settings activity started successfully");
         } catch (Exception e) {
@@ -811,10 +930,13 @@ public class OutputBluetooth extends AppCompatActivity {
                     new android.os.Handler().postDelayed(() -> {
                         try {
                             Intent settingsIntent = new Intent(OutputBluetooth.this, SettingsActivity.class);
-                            settingsIntent.putExtra("sps", samplesPerSecond);
-                            settingsIntent.putExtra("avgpoints", movingAvgValue);
-                            settingsIntent.putExtra("duration", durationOfExp);
-                            settingsIntent.putExtra("analog_port", analogPort);
+                            settingsIntent.putExtra("sps", engine.getSamplesPerSecond());
+                            settingsIntent.putExtra("avgpoints", engine.getMovingAvgValue());
+                            settingsIntent.putExtra("duration", engine.getDurationOfExp());
+                            settingsIntent.putExtra("analog_port", engine.getAnalogPort());
+                            settingsIntent.putExtra("streaming", engine.isStreamingMode());
+                            settingsIntent.putExtra("filter_chain", engine.getFilterChain());
+                            settingsIntent.putExtra("device", engine.getSource() != null ? engine.getSource().name() : null);
                             startActivityForResult(settingsIntent, 1);
                             Log.i(TAG, "Settings activity started after stopping data collection");
                         } catch (Exception e) {
@@ -833,9 +955,12 @@ public class OutputBluetooth extends AppCompatActivity {
 
     public void onClickSave(View v) {
         Log.i(TAG, "Save button clicked");
+        if (engine == null) {
+            return;
+        }
 
         // Check if data collection is currently active
-        if (started) {
+        if (engine.isCollecting()) {
             Log.w(TAG, "Save requested during active data collection");
             showSaveBlockedDialog();
             return;
@@ -848,13 +973,13 @@ public class OutputBluetooth extends AppCompatActivity {
             return;
         }
 
-        if (dataSize == 0) {
+        if (engine.getDataSize() == 0) {
             Log.w(TAG, "No data to save - dataSize is 0");
             Toast.makeText(this, "No data to save", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        Log.i(TAG, "Saving " + dataSize + " data points");
+        Log.i(TAG, "Saving " + engine.getDataSize() + " data points");
 
         // Check permissions based on Android version
         if (needsStoragePermission()) {
@@ -863,20 +988,67 @@ public class OutputBluetooth extends AppCompatActivity {
             return;
         }
 
-        try {
-            // Save to file and get file information
-            SaveResult fileResult = saveToFileWithResult();
+        startExport();
+    }
 
-            // Save to database
-            saveToDatabaseHelper();
+    // Writes the CSV in the background behind a modal progress dialog, then saves the
+    // session to the database and shows where the file went
+    private void startExport() {
+        if (export != null) {
+            return;
+        }
+        ProgressBar bar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        bar.setMax(engine.getDataSize());
+        bar.setPadding(48, 32, 48, 0);
+        CsvExporter exporter = new CsvExporter((rows, total) -> runOnUiThread(() -> bar.setProgress(rows)));
+        export = exporter;
+        androidx.appcompat.app.AlertDialog dialog = new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Saving " + engine.getDataSize() + " data points")
+                .setView(bar)
+                .setNegativeButton("Cancel", (d, which) -> exporter.cancel())
+                .setCancelable(false)
+                .show();
 
-            // Show detailed success dialog with file path and options
-            showSaveSuccessDialog(fileResult);
+        long start = System.nanoTime();
+        // The max values in the preamble come from the engine's thread, after its last drain
+        engine.requestPeakAverages(peakAverages -> {
+            exportPeaks = peakAverages;
+            EXPORTER.execute(() -> {
+                try {
+                    SaveResult fileResult = saveToFileWithResult();
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    Log.i(TAG, "CSV export of " + engine.getDataSize() + " rows took " + ms + " ms");
+                    runOnUiThread(() -> {
+                        finishExport(dialog);
+                        // Save to database
+                        saveToDatabaseHelper();
 
-            Log.i(TAG, "Save operation completed successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "Error during save operation", e);
-            Toast.makeText(this, "Save failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        // Show detailed success dialog with file path and options
+                        showSaveSuccessDialog(fileResult);
+
+                        Log.i(TAG, "Save operation completed successfully");
+                    });
+                } catch (CancellationException e) {
+                    Log.i(TAG, "CSV export cancelled");
+                    runOnUiThread(() -> {
+                        finishExport(dialog);
+                        Toast.makeText(this, "Save cancelled", Toast.LENGTH_SHORT).show();
+                    });
+                } catch (Exception e) {
+                    Log.e(TAG, "Error during save operation", e);
+                    runOnUiThread(() -> {
+                        finishExport(dialog);
+                        Toast.makeText(this, "Save failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    });
+                }
+            });
+        });
+    }
+
+    private void finishExport(androidx.appcompat.app.AlertDialog dialog) {
+        export = null;
+        if (!isFinishing() && !isDestroyed()) {
+            dialog.dismiss();
         }
     }
 
@@ -915,11 +1087,14 @@ public class OutputBluetooth extends AppCompatActivity {
 
             if (result != null && result.file != null) {
                 Log.i(TAG, "File saved successfully: " + result.file.getPath());
+                saveLatencyHistograms(result, fileName);
                 return result;
             } else {
                 throw new IOException("Failed to create file location");
             }
 
+        } catch (CancellationException e) {
+            throw e; // Cancelled by the user, not a storage problem: no fallback
         } catch (Exception e) {
             Log.e(TAG, "Error saving file: " + e.getMessage(), e);
 
@@ -929,6 +1104,7 @@ public class OutputBluetooth extends AppCompatActivity {
                 SaveResult fallbackResult = saveToAppSpecificStorageWithResult(fileName, headers);
                 if (fallbackResult != null && fallbackResult.file != null) {
                     Log.i(TAG, "Fallback save successful: " + fallbackResult.file.getPath());
+                    saveLatencyHistograms(fallbackResult, fileName);
                     return fallbackResult;
                 } else {
                     throw new IOException("Fallback save also failed");
@@ -940,6 +1116,45 @@ public class OutputBluetooth extends AppCompatActivity {
         }
     }
 
+    // Writes the per-stage latency histograms next to the session CSV, the same way it
+    // was stored. Diagnostics only: a failure here never fails the save.
+    private void saveLatencyHistograms(SaveResult result, String fileName) {
+        String latencyName = fileName.replace(".csv", "_latency.csv");
+        try {
+            if ("Public Documents".equals(result.storageType) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                android.content.ContentValues values = new android.content.ContentValues();
+                values.put(android.provider.MediaStore.MediaColumns.DISPLAY_NAME, latencyName);
+                values.put(android.provider.MediaStore.MediaColumns.MIME_TYPE, "text/csv");
+                values.put(android.provider.MediaStore.MediaColumns.RELATIVE_PATH,
+                        android.os.Environment.DIRECTORY_DOCUMENTS + "/BluetoothData");
+                android.net.Uri uri = getContentResolver().insert(
+                        android.provider.MediaStore.Files.getContentUri("external"), values);
+                if (uri == null) {
+                    throw new IOException("Failed to create MediaStore entry");
+                }
+                try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+                    writeLatencyCsv(out);
+                }
+            } else {
+                try (FileOutputStream out = new FileOutputStream(new File(result.file.getParentFile(), latencyName))) {
+                    writeLatencyCsv(out);
+                }
+            }
+            Log.i(TAG, "Latency histograms saved: " + latencyName + "\n" + engine.profiler().summary());
+        } catch (Exception e) {
+            Log.w(TAG, "Could not save latency histograms: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeLatencyCsv(OutputStream out) throws IOException {
+        if (out == null) {
+            throw new IOException("No output stream");
+        }
+        StringBuilder csv = new StringBuilder();
+        engine.profiler().writeCsv(csv);
+        out.write(csv.toString().getBytes());
+    }
+
     private SaveResult saveToMediaStoreWithResult(String fileName, String headers) throws IOException {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             // Use MediaStore for Android 10+
@@ -960,6 +1175,9 @@ public class OutputBluetooth extends AppCompatActivity {
                     File virtualFile = new File(android.os.Environment.DIRECTORY_DOCUMENTS + "/BluetoothData/" + fileName);
                     String displayPath = "Documents/BluetoothData/" + fileName;
                     return new SaveResult(virtualFile, displayPath, "Public Documents", true);
+                } catch (CancellationException e) {
+                    getContentResolver().delete(uri, null, null); // Don't leave a partial file
+                    throw e;
                 }
             } else {
                 throw new IOException("Failed to create MediaStore entry");
@@ -981,6 +1199,9 @@ public class OutputBluetooth extends AppCompatActivity {
 
         try (FileOutputStream dataOutput = new FileOutputStream(fileLocation)) {
             writeDataToStream(dataOutput, headers);
+        } catch (CancellationException e) {
+            fileLocation.delete(); // Don't leave a partial file
+            throw e;
         }
 
         String displayPath = fileLocation.getAbsolutePath();
@@ -1007,6 +1228,9 @@ public class OutputBluetooth extends AppCompatActivity {
 
         try (FileOutputStream dataOutput = new FileOutputStream(fileLocation)) {
             writeDataToStream(dataOutput, headers);
+        } catch (CancellationException e) {
+            fileLocation.delete(); // Don't leave a partial file
+            throw e;
         }
 
         String displayPath = fileLocation.getAbsolutePath();
@@ -1020,7 +1244,7 @@ public class OutputBluetooth extends AppCompatActivity {
                 "📁 Location: " + result.storageType + "\n" +
                 "📄 File: " + result.file.getName() + "\n" +
                 "📍 Path: " + result.displayPath + "\n\n" +
-                "💾 " + dataSize + " data points saved";
+                "💾 " + engine.getDataSize() + " data points saved";
 
         builder.setTitle("Save Successful")
                 .setMessage(message)
@@ -1151,7 +1375,7 @@ public class OutputBluetooth extends AppCompatActivity {
 
             shareIntent.putExtra(Intent.EXTRA_STREAM, fileUri);
             shareIntent.putExtra(Intent.EXTRA_SUBJECT, "Bluetooth Data Export");
-            shareIntent.putExtra(Intent.EXTRA_TEXT, "Biomarker data collected via Bluetooth (" + dataSize + " samples)");
+            shareIntent.putExtra(Intent.EXTRA_TEXT, "Biomarker data collected via Bluetooth (" + engine.getDataSize() + " samples)");
 
             Intent chooser = Intent.createChooser(shareIntent, "Share data file");
             if (shareIntent.resolveActivity(getPackageManager()) != null) {
@@ -1337,71 +1561,48 @@ public class OutputBluetooth extends AppCompatActivity {
     }
 
     private void writeDataToStream(java.io.OutputStream outputStream, String headers) throws IOException {
-        // Calculate max values for each port
-        double max1 = findMaxbyAvg(dataPoints1);
-        double max2 = findMaxbyAvg(dataPoints2);
-
-        outputStream.write(("Sampling rate= " + samplesPerSecond + " samples/sec\n").getBytes());
-        outputStream.write(("Moving Avg value= " + movingAvgValue + " points\n").getBytes());
-        outputStream.write(("Data size= " + dataSize + "\n").getBytes());
-        outputStream.write(("Max value (avg)= " + max + "\n").getBytes());
-        outputStream.write(("Max value port1= " + max1 + "\n").getBytes());
-        outputStream.write(("Max value port2= " + max2 + "\n\n").getBytes());
-        outputStream.write(headers.getBytes());
-
-        int maxIndex = Math.min(dataSize,
+        // Max values for each port, as the engine worked them out before the export
+        double[] peakAverages = exportPeaks;
+        double max1 = peakAverages[AcquisitionEngine.CH_PORT1];
+        double max2 = peakAverages[AcquisitionEngine.CH_PORT2];
+
+        String preamble = "Sampling rate= " + engine.getSamplesPerSecond() + " samples/sec\n" +
+                "Moving Avg value= " + engine.getMovingAvgValue() + " points\n" +
+                "Data size= " + engine.getDataSize() + "\n" +
+                "Max value (avg)= " + max + "\n" +
+                "Max value port1= " + max1 + "\n" +
+                "Max value port2= " + max2 + "\n\n" +
+                headers;
+
+        int maxIndex = Math.min(engine.getDataSize(),
                 Math.min(dataPoints0.size(),
                         Math.min(dataPoints1.size(), dataPoints2.size())));
 
-        for (int i = 0; i < maxIndex; i++) {
-            outputStream.write(("\n" + (i + 1) + "," +
-                    xaxis.get(i) + "," +
-                    dataPoints0.get(i) + "," +
-                    dataPoints1.get(i) + "," +
-                    dataPoints2.get(i)).getBytes());
-        }
+        // Rows go through the exporter's buffer; a background save shares its exporter
+        // so the dialog can follow and cancel it
+        CsvExporter exporter = export != null ? export : new CsvExporter(null);
+        exporter.export(Channels.newChannel(outputStream), preamble, maxIndex,
+                xaxis, dataPoints0, dataPoints1, dataPoints2);
 
         outputStream.flush();
     }
 
     // Add new method to save data to the database
     private void saveToDatabaseHelper() {
-        try {
-            long tsToSave;
-            if (sampleTimestamp > 0) {
-                tsToSave = sampleTimestamp;
-            } else {
-                tsToSave = System.currentTimeMillis();
+        // Samples were written during acquisition; only the summary is left, written behind
+        engine.finishSession(new AcquisitionEngine.SaveCallback() {
+            @Override
+            public void onSessionSaved(long experimentId, double[] peakAverages) {
+                // Remove individual success toast - consolidated message shown in onClickSave
+                Log.i(TAG, "Data saved to database with experiment ID: " + experimentId);
             }
-            // Create a new experiment entry
-            currentExperimentId = dbHelper.createBiomarkerExperiment(
-                    userEmail,
-                    "Bluetooth",
-                    samplesPerSecond,
-                    movingAvgValue,
-                    durationOfExp,
-                    max,
-                    dataSize,
-                    tsToSave
-            );
-
-            // Add all data points
-            dbHelper.addBiomarkerDataBatch(
-                    currentExperimentId,
-                    xaxis,
-                    dataPoints0,
-                    dataPoints1,
-                    dataPoints2,
-                    dataPointsavgd
-            );
-
-            // Remove individual success toast - consolidated message shown in onClickSave
-            Log.i(TAG, "Data saved to database with experiment ID: " + currentExperimentId);
 
-        } catch (Exception e) {
-            Toast.makeText(this, "Database save error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "Database save error: " + e.getMessage(), e);
-        }
+            @Override
+            public void onSessionSaveFailed(Exception cause) {
+                Toast.makeText(OutputBluetooth.this, "Database save error: " + cause.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     //————————————————————————————
@@ -1427,6 +1628,13 @@ public class OutputBluetooth extends AppCompatActivity {
                 perms.add(Manifest.permission.ACCESS_FINE_LOCATION);
             }
 
+            // Notification for sessions that run in the background (Android 13+)
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU &&
+                    ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                            != PackageManager.PERMISSION_GRANTED) {
+                perms.add(Manifest.permission.POST_NOTIFICATIONS);
+            }
+
             // Storage permission (only for Android 6-9, not needed for Android 10+)
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q &&
                     ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
@@ -1452,6 +1660,24 @@ public class OutputBluetooth extends AppCompatActivity {
         connectButton = findViewById(R.id.buttonConnectBL);
         showButton = findViewById(R.id.buttonShowBL);
         textViewAppend = findViewById(R.id.textAppendBL);
+        perfOverlay = findViewById(R.id.perfOverlay);
+
+        // Long-press the readout to show per-stage latencies
+        textViewAppend.setOnLongClickListener(v -> {
+            boolean show = perfOverlay.getVisibility() != View.VISIBLE;
+            perfOverlay.setVisibility(show ? View.VISIBLE : View.GONE);
+            if (engine != null) {
+                engine.setTracing(show);
+            }
+            overlayUpdatedAt = 0;
+            return true;
+        });
+        perfOverlay.setOnLongClickListener(v -> {
+            if (engine != null) {
+                engine.dumpTrace();
+            }
+            return true;
+        });
 
         // Set initial button states
         startButton.setEnabled(false);
@@ -1464,7 +1690,7 @@ public class OutputBluetooth extends AppCompatActivity {
 
         // Add long-press listener to start button for clearing data
         startButton.setOnLongClickListener(v -> {
-            if (hasExistingData()) {
+            if (engine != null && engine.hasExistingData()) {
                 showClearDataDialog();
                 return true; // Consume the long click
             } else {
@@ -1477,7 +1703,7 @@ public class OutputBluetooth extends AppCompatActivity {
     private void showClearDataDialog() {
         androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
         builder.setTitle("Clear Data")
-                .setMessage("Are you sure you want to clear all " + dataSize + " collected data points?\n\nThis action cannot be undone.")
+                .setMessage("Are you sure you want to clear all " + engine.getDataSize() + " collected data points?\n\nThis action cannot be undone.")
                 .setIcon(android.R.drawable.ic_dialog_alert)
                 .setPositiveButton("Clear Data", (dialog, which) -> {
                     Log.i(TAG, "User chose to clear all data");
@@ -1492,61 +1718,22 @@ public class OutputBluetooth extends AppCompatActivity {
                 .show();
     }
 
-    private void loadSettings() {
-        File settingFile = new File(this.getFilesDir(), "settings");
-        if (settingFile.isFile()) {
-            try (FileInputStream inputStream = openFileInput("settings")) {
-                byte[] buf = new byte[inputStream.available()];
-                inputStream.read(buf);
-                StringTokenizer st = new StringTokenizer(new String(buf), "/");
-                if (st.countTokens() >= 8) {
-                    samplesPerSecond = Integer.parseInt(st.nextToken());
-                    movingAvgValue = Integer.parseInt(st.nextToken());
-                    durationOfExp = Double.parseDouble(st.nextToken());
-                    analogPort[0] = st.nextToken().equals("T");
-                    analogPort[1] = st.nextToken().equals("T");
-                    analogPort[2] = st.nextToken().equals("T");
-                    analogPort[3] = st.nextToken().equals("T");
-                    // last token is movingAvgValue again if you like
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading settings: " + e.getMessage(), e);
-                Toast.makeText(this, "Can't load file, using defaults", Toast.LENGTH_SHORT).show();
-            }
-        } else {
-            saveSettings();
-        }
-    }
-
-    private void saveSettings() {
-        try (FileOutputStream outputStream = openFileOutput("settings", MODE_PRIVATE)) {
-            String data = samplesPerSecond + "/" +
-                    movingAvgValue + "/" +
-                    durationOfExp + "/" +
-                    (analogPort[0] ? "T" : "F") + "/" +
-                    (analogPort[1] ? "T" : "F") + "/" +
-                    (analogPort[2] ? "T" : "F") + "/" +
-                    (analogPort[3] ? "T" : "F") + "/" +
-                    movingAvgValue;
-            outputStream.write(data.getBytes());
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving settings: " + e.getMessage(), e);
-            Toast.makeText(this, "Failed to save settings", Toast.LENGTH_SHORT).show();
-        }
-    }
 
     private void initializeBluetooth() {
         try {
             Log.i(TAG, "Initializing Bluetooth...");
 
-            if (mBA == null) {
+            // A wired sensor needs no Bluetooth at all
+            boolean usbAttached = !UsbSerialSource.findDevices(usbManager()).isEmpty();
+
+            if (mBA == null && !usbAttached) {
                 Toast.makeText(this, "Bluetooth not supported on this device", Toast.LENGTH_LONG).show();
                 Log.e(TAG, "Bluetooth adapter is null - device doesn't support Bluetooth");
                 return;
             }
 
             // Check if Bluetooth is enabled
-            if (!mBA.isEnabled()) {
+            if (!usbAttached && !mBA.isEnabled()) {
                 Log.i(TAG, "Bluetooth is disabled, requesting to enable...");
                 Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
 
@@ -1567,7 +1754,7 @@ public class OutputBluetooth extends AppCompatActivity {
                 return;
             }
 
-            Log.i(TAG, "Bluetooth is enabled, searching for devices...");
+            Log.i(TAG, "Sensor link available, searching for devices...");
 
             // Enable UI elements now that Bluetooth is ready
             connectButton.setEnabled(true);
@@ -1588,61 +1775,61 @@ public class OutputBluetooth extends AppCompatActivity {
 
     private void searchForDevice() {
         try {
-            // Check permissions first
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                if (ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
-                        != PackageManager.PERMISSION_GRANTED) {
-                    Log.e(TAG, "BLUETOOTH_CONNECT permission not granted");
-                    return;
+            final ArrayList<SampleSource> sources = new ArrayList<>();
+
+            // Wired sensors first: USB needs no pairing and has far lower latency
+            UsbManager usbManager = usbManager();
+            for (UsbDevice device : UsbSerialSource.findDevices(usbManager)) {
+                sources.add(new UsbSerialSource(this, usbManager, device, UsbSerialSource.DEFAULT_BAUD_RATE));
+            }
+
+            // Then all paired Bluetooth devices (needs BLUETOOTH_CONNECT on Android 12+)
+            boolean bluetoothAllowed = Build.VERSION.SDK_INT < Build.VERSION_CODES.S ||
+                    ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
+                            == PackageManager.PERMISSION_GRANTED;
+            if (!bluetoothAllowed) {
+                Log.e(TAG, "BLUETOOTH_CONNECT permission not granted");
+            } else if (mBA != null && mBA.isEnabled()) {
+                pairedDevices = mBA.getBondedDevices();
+                if (pairedDevices != null) {
+                    for (BluetoothDevice device : pairedDevices) {
+                        sources.add(new BluetoothSppSource(this, mBA, device));
+                    }
+                }
+            }
+
+            // Debug builds can run the whole pipeline against an in-process sensor
+            if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                DeviceSimulator.Config simulated = new DeviceSimulator.Config();
+                simulated.sampleRateHz = engine.getSamplesPerSecond();
+                sources.add(new DeviceSimulator(simulated));
+                for (File file : engine.listCaptures()) {
+                    sources.add(new ReplaySource(file, 1.0, false));
                 }
             }
 
-            // Get all paired devices and show a selection dialog
-            pairedDevices = mBA.getBondedDevices();
-            if (pairedDevices == null || pairedDevices.isEmpty()) {
-                Toast.makeText(this, "No paired Bluetooth devices found. Please pair your device first.", Toast.LENGTH_LONG).show();
+            if (sources.isEmpty()) {
+                Toast.makeText(this, "No paired Bluetooth devices or USB sensors found. Please pair or plug in your device first.", Toast.LENGTH_LONG).show();
                 return;
             }
 
-            Log.i(TAG, "Found " + pairedDevices.size() + " paired devices");
+            Log.i(TAG, "Found " + sources.size() + " sensor links");
 
             // Create list of devices for selection dialog
-            final ArrayList<BluetoothDevice> deviceList = new ArrayList<>(pairedDevices);
-            final String[] deviceNames = new String[deviceList.size()];
-
-            for (int i = 0; i < deviceList.size(); i++) {
-                BluetoothDevice device = deviceList.get(i);
-                String name = device.getName();
-                if (name == null) name = "Unknown Device";
-                deviceNames[i] = name + " (" + device.getAddress() + ")";
+            final String[] deviceNames = new String[sources.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                deviceNames[i] = sources.get(i).name();
             }
 
             // Show device selection dialog
             runOnUiThread(() -> {
                 new androidx.appcompat.app.AlertDialog.Builder(OutputBluetooth.this)
-                        .setTitle("Select Bluetooth Device")
+                        .setTitle("Select Device")
                         .setItems(deviceNames, (dialog, which) -> {
-                            // Get selected device
-                            myDevice = deviceList.get(which);
-
+                            // Get selected device; it replaces the current link, if any
                             Toast.makeText(OutputBluetooth.this,
-                                    "Connecting to: " + myDevice.getName(), Toast.LENGTH_SHORT).show();
-
-                            // Set connection state
-                            synchronized (connectionLock) {
-                                if (isConnecting) {
-                                    Log.w(TAG, "Connection already in progress");
-                                    Toast.makeText(OutputBluetooth.this,
-                                            "Connection already in progress...", Toast.LENGTH_SHORT).show();
-                                    return;
-                                }
-                                isConnecting = true;
-                                connectionEstablished = false;
-                            }
-
-                            // Start connection
-                            ConnectThread ct = new ConnectThread(myDevice);
-                            ct.start();
+                                    "Connecting to: " + deviceNames[which], Toast.LENGTH_SHORT).show();
+                            engine.selectSource(sources.get(which));
                         })
                         .setNegativeButton("Cancel", null)
                         .setCancelable(true)
@@ -1659,688 +1846,224 @@ public class OutputBluetooth extends AppCompatActivity {
     }
 
     //————————————————————————————
-    // Scheduled send/read loop
+    // Engine events
     //————————————————————————————
 
-    private void sendTimer(boolean start) {
-        long intervalMs = 1000L / samplesPerSecond;
-        shutdownScheduler();  // always call first
+    private void notifyConnectionSuccess(boolean reconnected, long downMs) {
+        try {
+            SampleSource s = engine != null ? engine.getSource() : null;
+            String deviceName = s != null ? s.name() : "Unknown Device";
+
+            Toast.makeText(OutputBluetooth.this, reconnected
+                    ? String.format(Locale.getDefault(), "Reconnected after %.1f s", downMs / 1000.0)
+                    : "Connected to " + deviceName, Toast.LENGTH_SHORT).show();
 
-        if (start) {
-            // Only start if we have a valid connection
-            if (!hasValidConnection()) {
-                Log.w(TAG, "Cannot start timer - connection not established");
-                return;
+            // ✅ CHECK: If data collection was active when the link dropped
+            boolean shouldResumeCollection = engine != null && engine.isCollecting();
+
+            if (shouldResumeCollection) {
+                // ✅ RECONNECTED MID-SESSION: the engine has already resumed polling
+                Log.i(TAG, "Reconnected during collection - data collection resumed");
+
+                // Update UI for resumed collection
+                startButton.setEnabled(false);
+                stopButton.setEnabled(true);
+                connectButton.setEnabled(false);
+                settingsButton.setEnabled(true);
+                saveButton.setEnabled(false);
+                showButton.setEnabled(false);
+            } else {
+                // ✅ NORMAL CONNECTION: Update UI for connected but not started
+                startButton.setEnabled(true);  // Enable start button
+                stopButton.setEnabled(false);  // Not started yet
+                connectButton.setEnabled(true); // Allow manual reconnect
+                settingsButton.setEnabled(true); // Allow settings
+                saveButton.setEnabled(engine.getDataSize() > 0);   // Only if there's data
+                showButton.setEnabled(engine.getDataSize() > 0);   // Only if there's data
+
+                Log.i(TAG, "Connection established. Ready for data collection.");
             }
 
-            Log.i(TAG, "Starting data collection timer with interval: " + intervalMs + "ms");
-            scheduler = Executors.newSingleThreadScheduledExecutor();
-            scheduler.scheduleWithFixedDelay(
-                    this::pollOnce,
-                    500, // Initial delay to ensure connection is stable
-                    intervalMs,
-                    TimeUnit.MILLISECONDS
-            );
+            // Log button states for debugging
+            logButtonStates("after connection success");
+
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception in success notification", e);
         }
     }
 
-    // Create a complete reconnection handler that addresses the timeout issues
-    private void smartReconnect() {
-        // Only proceed if not already reconnecting and cooldown period has passed
-        long currentTime = System.currentTimeMillis();
-        if (dataSize >= RECONNECT_THRESHOLD && !isReconnecting &&
-                (currentTime - lastReconnectTime > RECONNECT_COOLDOWN)) {
+    // Runs on the UI thread; only reads rows the snapshot says are complete. A snapshot
+    // replayed on attach is not live and stays out of the latency figures.
+    private void renderSnapshot(AcquisitionSnapshot s, boolean live) {
+        if (live) {
+            engine.profiler().record(Stage.PUBLISH, System.nanoTime() - s.publishedNanos);
+        }
+        renderedDataSize = s.dataSize;
+        textViewAppend.setText(String.format(Locale.getDefault(),
+                "Samples %d | %.2fs\n0: %.4f V\n1: %.4f V\n2: %.4f V\nCortisol: %.1f ng/mL\n"
+                        + "Jitter %.1f ms | Drift %+.0f ms | Missed %d",
+                s.dataSize, s.time, s.volts0, s.volts1, s.volts2, s.cortisol,
+                s.jitterMs, s.driftMs, s.missed));
+        if (s.rows != drawnRows) {
+            drawnRows = s.rows;
+            long drawStart = System.nanoTime();
+            drawGraph(s.rows, s.finalRows);
+            long drawEnd = System.nanoTime();
+            engine.profiler().record(Stage.DRAW, drawEnd - drawStart);
+            engine.trace().span(TraceEvent.DRAW, drawStart, drawEnd, s.rows, 0);
+        }
 
-            isReconnecting = true;
-            lastReconnectTime = currentTime;
+        // Update Save and Show button states when data is available
+        updateDataDependentButtons();
+    }
 
-            Log.i(TAG, "Starting controlled reconnection at sample #" + dataSize);
+    // Runs on the UI thread: per-stage p50/p99, delivered rate and framer losses
+    private void updatePerfOverlay(long frameTimeNanos) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-10s %7s %7s", "stage", "p50 ms", "p99 ms"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = engine.profiler().histogram(stage);
+            sb.append(String.format(Locale.US, "%n%-10s %7.2f %7.2f", stage.label,
+                    h.percentileMicros(50) / 1000.0, h.percentileMicros(99) / 1000.0));
+        }
+        if (overlayUpdatedAt != 0) {
+            double rate = (renderedDataSize - overlayDataSize) * 1e9 / (frameTimeNanos - overlayUpdatedAt);
+            sb.append(String.format(Locale.US, "%n%-10s %7.1f", "samples/s", Math.max(0, rate)));
+        }
+        sb.append(String.format(Locale.US, "%n%-10s %7d%n%-10s %7d", "dropped", engine.getFramesDropped(),
+                "overrun B", engine.getBytesOverrun()));
+        perfOverlay.setText(sb);
+        overlayUpdatedAt = frameTimeNanos;
+        overlayDataSize = renderedDataSize;
+    }
 
-            // Save current data
-            saveCurrentProgress();
 
-            // Create a completely independent thread for reconnection
-            Thread reconnectThread = new Thread(() -> {
-                try {
-                    // Pause the scheduler but don't change started state
-                    boolean wasStarted = started;
-                    shutdownScheduler();
-
-                    // Close existing connection
-                    synchronized (OutputBluetooth.this) {
-                        if (mySocket != null) {
-                            try {
-                                mySocket.close();
-                            } catch (IOException e) {
-                                Log.e(TAG, "Error closing socket", e);
-                            }
-                            mySocket = null;
-                        }
-                        is = null;
-                        os = null;
-                    }
 
-                    // Wait a significant time for resources to be released
-                    Thread.sleep(3000);
-
-                    // Force Bluetooth reset - try disabling and re-enabling
-                    try {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
-                                ContextCompat.checkSelfPermission(OutputBluetooth.this,
-                                        Manifest.permission.BLUETOOTH_CONNECT)
-                                        == PackageManager.PERMISSION_GRANTED) {
-                            mBA.disable();
-                            Thread.sleep(2000);
-                            mBA.enable();
-                            Thread.sleep(5000);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Bluetooth toggle failed", e);
-                    }
 
-                    // Start a completely fresh connection on UI thread
-                    runOnUiThread(() -> {
-                        try {
-                            // Show status
-                            Toast.makeText(OutputBluetooth.this,
-                                    "Creating new connection...", Toast.LENGTH_SHORT).show();
 
-                            // Cancel any ongoing discovery
-                            if (mBA != null) {
-                                mBA.cancelDiscovery();
-                            }
+    private static final class LiveTrace {
+        final DoubleColumn column;
+        final boolean despiked;    // only plot rows the despiker has finished with
+        final LineGraphSeries<DataPoint> series;
+        int plotted = 0;
 
-                            // Create connection on UI thread to avoid BlockedOnMainThread errors
-                            // Use a separate class, not an anonymous inner class
-                            FinalConnectThread finalConnect = new FinalConnectThread(myDevice, wasStarted);
-                            finalConnect.start();
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error in UI reconnect", e);
-                            isReconnecting = false;
-                        }
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error in reconnect thread", e);
-                    isReconnecting = false;
-                }
-            });
-
-            reconnectThread.setDaemon(true); // Allow JVM to exit if this thread is hanging
-            reconnectThread.start();
+        LiveTrace(DoubleColumn column, boolean despiked, String title, int color, int thickness) {
+            this.column = column;
+            this.despiked = despiked;
+            series = new LineGraphSeries<>();
+            series.setTitle(title);
+            series.setColor(color);
+            series.setThickness(thickness);
         }
     }
 
-    // New connection thread class with clear completion handling
-    private class FinalConnectThread extends Thread {
-        private final BluetoothDevice device;
-        private final boolean restartCollection;
-        private final UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
-
-        FinalConnectThread(BluetoothDevice device, boolean restartCollection) {
-            this.device = device;
-            this.restartCollection = restartCollection;
-        }
-
-        @Override
-        public void run() {
-            try {
-                // Cancel discovery
-                mBA.cancelDiscovery();
-
-                // Try standard connection
-                mySocket = device.createRfcommSocketToServiceRecord(uuid);
-
-                try {
-                    mySocket.connect();
-                } catch (IOException standardEx) {
-                    Log.w(TAG, "Standard connect failed, trying fallback", standardEx);
-
-                    // Close failed socket
-                    try {
-                        mySocket.close();
-                    } catch (IOException ignored) {}
-
-                    // Fallback via reflection
-                    try {
-                        Method fallback = device.getClass().getMethod("createRfcommSocket", int.class);
-                        mySocket = (BluetoothSocket) fallback.invoke(device, 1);
-                        mySocket.connect();
-                    } catch (Exception fallbackEx) {
-                        Log.e(TAG, "Fallback connect also failed", fallbackEx);
-                        runOnUiThread(() ->
-                                Toast.makeText(OutputBluetooth.this, "Connection failed", Toast.LENGTH_SHORT).show());
-
-                        // IMPORTANT: Reset the reconnection flag
-                        isReconnecting = false;
-                        return;
-                    }
-                }
-
-                // Initialize streams
-                is = mySocket.getInputStream();
-                os = mySocket.getOutputStream();
-
-                // Send a command to reset the device and clear buffers
-                os.write("R\r".getBytes());
-                os.flush();
-
-                // Clear input buffer
-                while (is.available() > 0) {
-                    is.skip(is.available());
-                }
-
-                // Update UI on success
-                runOnUiThread(() -> {
-                    Toast.makeText(OutputBluetooth.this, "Connection re-established", Toast.LENGTH_SHORT).show();
-
-                    // Update buttons based on whether we're restarting collection or not
-                    if (restartCollection) {
-                        // Data collection will restart - keep settings enabled to show dialog
-                        stopButton.setEnabled(true);
-                        connectButton.setEnabled(false);
-                        settingsButton.setEnabled(true); // Keep enabled to show dialog
-                        saveButton.setEnabled(false);
-                        showButton.setEnabled(false);
-                        startButton.setEnabled(false);
-                    } else {
-                        // Just reconnected - allow settings since not collecting
-                        startButton.setEnabled(true);
-                        stopButton.setEnabled(false);
-                        connectButton.setEnabled(true);
-                        settingsButton.setEnabled(true);
-                        saveButton.setEnabled(dataSize > 0);   // Only if there's data
-                        showButton.setEnabled(dataSize > 0);   // Only if there's data
-                    }
-
-                    // Restart data collection if needed
-                    if (restartCollection) {
-                        started = true;
-                        sendTimer(true);
-                    }
-
-                    // Log button states for debugging
-                    logButtonStates("after connection success");
-
-                    // Reset reconnection flags
-                    OutputBluetooth.this.reconnecting = false;
-                    isReconnecting = false;
-                    errorCount = 0;
-
-                    // Don't automatically start data collection - wait for user to press Start
-                    Log.i(TAG, "Connection established. Ready for data collection.");
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Unexpected error in FinalConnectThread", e);
-
-                // IMPORTANT: Reset the flag even on failure
-                runOnUiThread(() -> {
-                    Toast.makeText(OutputBluetooth.this,
-                            "Connection error - please reconnect manually", Toast.LENGTH_LONG).show();
-                    isReconnecting = false;
-                });
-            }
-        }
+    // Samples kept per live series: the visible durationOfExp window
+    private int liveWindowPoints() {
+        return Math.max(2, (int) Math.ceil(engine.getDurationOfExp() * engine.getSamplesPerSecond()) + 1);
     }
 
-    // Modified pollOnce() method with transparent reconnection
-    private void pollOnce() {
-        // Check if we should still be running
-        if (!started || !connectionEstablished) {
-            Log.v(TAG, "Polling stopped - started: " + started + ", connected: " + connectionEstablished);
-            return;
-        }
+    // Faster sessions plot every n-th row so a frame costs the same at any sample rate
+    private static final int MAX_PLOT_HZ = 10;
 
-        try {
-            // Check socket and stream validity
-            if (mySocket == null || !mySocket.isConnected() || os == null || is == null) {
-                Log.w(TAG, "Socket or streams not ready - Socket: " + (mySocket != null) +
-                        ", Connected: " + (mySocket != null && mySocket.isConnected()) +
-                        ", OutputStream: " + (os != null) + ", InputStream: " + (is != null));
-                throw new IOException("Socket or streams not ready");
-            }
-
-            // ---- WRITE command to MCU ----
-            synchronized (OutputBluetooth.this) {
-                try {
-                    os.write("0\r".getBytes());
-                    os.flush();
-                    Log.v(TAG, "Command sent successfully");
-                } catch (IOException writeEx) {
-                    Log.e(TAG, "Write failed (broken pipe): " + writeEx.getMessage(), writeEx);
-                    if (!isReconnecting && started) {
-                        // Remove frequent reconnection toast - just log and reconnect silently
-                        Log.w(TAG, "Connection lost during write, attempting reconnection");
-                        reconnectBluetooth();
-                    }
-                    return;
-                }
-            }
-
-            // ---- WAIT FOR DATA with timeout ----
-            byte[] buffer = new byte[512];
-            int totalRead = 0;
-            long startTime = System.currentTimeMillis();
-            long timeout = startTime + 1000; // Increased timeout to 1000ms
-
-            while (System.currentTimeMillis() < timeout && totalRead < buffer.length) {
-                synchronized (OutputBluetooth.this) {
-                    if (is != null && is.available() > 0) {
-                        int readBytes = is.read(buffer, totalRead, buffer.length - totalRead);
-                        if (readBytes > 0) {
-                            totalRead += readBytes;
-                            Log.v(TAG, "Read " + readBytes + " bytes, total: " + totalRead);
-                            // Check for packet terminator
-                            if (buffer[totalRead - 1] == 'p') {
-                                Log.v(TAG, "Found packet terminator");
-                                break;
-                            }
-                        }
-                    }
-                }
-                Thread.sleep(10); // avoid CPU spinning
-            }
-
-            // ---- HANDLE THE DATA ----
-            if (totalRead > 0) {
-                errorCount = 0;
-                String pkt = new String(buffer, 0, totalRead).trim();
-
-
-                Log.v(TAG, "Sample #" + dataSize + " received (" + totalRead + " bytes): " + pkt);
-
-                Message msg = myHandler.obtainMessage();
-                Bundle b = new Bundle();
-                b.putString("data", pkt);
-                msg.setData(b);
-                myHandler.sendMessage(msg);
-            } else {
-                errorCount++;
-                long readTime = System.currentTimeMillis() - startTime;
-                Log.w(TAG, "Poll missed: no data read in " + readTime + "ms (consecutive errors=" + errorCount + ")");
-
-                if (errorCount >= MAX_ERRORS && !isReconnecting && started) {
-                    // Remove frequent error toast - just log and reconnect silently
-                    Log.w(TAG, "Multiple unexpected errors, attempting reconnection");
-                    reconnectBluetooth();
-                    errorCount = 0;
-                }
-            }
-
-            // ✅ Check if we hit batch limit
-            checkBatchBoundary();
-
-            // only redraw every 3 samples
-            if (graphCount == 3) {
-                graphCount = 0;
-                drawGraph();
-            }
-
-            // Update Save and Show button states when data is available
-            runOnUiThread(this::updateDataDependentButtons);
-
-        } catch (IOException ioEx) {
-            Log.e(TAG, "IO error in pollOnce(): " + ioEx.getMessage(), ioEx);
-            if (!isReconnecting && started) {
-                // Remove frequent IO error toast - just log and reconnect silently
-                Log.w(TAG, "IO error during polling, attempting reconnection");
-                reconnectBluetooth();
-            }
-        } catch (InterruptedException intEx) {
-            Log.w(TAG, "pollOnce() interrupted", intEx);
-            Thread.currentThread().interrupt();
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error in pollOnce(): " + e.getMessage(), e);
-            errorCount++;
-            if (errorCount >= MAX_ERRORS && !isReconnecting && started) {
-                // Remove frequent error toast - just log and reconnect silently
-                Log.w(TAG, "Multiple unexpected errors, attempting reconnection");
-                reconnectBluetooth();
-                errorCount = 0;
-            }
-        }
+    private int plotStride() {
+        return Math.max(1, (engine.getSamplesPerSecond() + MAX_PLOT_HZ - 1) / MAX_PLOT_HZ);
     }
 
-    // Helper method to save current progress
-    private void saveCurrentProgress() {
-        // Only save if we have meaningful data
-        if (dataSize < 10) return;
-
-        // Create a backup file with current timestamp
-        SimpleDateFormat sdf = new SimpleDateFormat("MM_dd_HH_mm_ss", Locale.getDefault());
-        String backupTime = sdf.format(new Date());
-        File backupFile = new File(
-                getFilesDir(),
-                "BL_backup_" + backupTime + ".csv");
-
-        try (FileOutputStream backupOutput = new FileOutputStream(backupFile)) {
-            backupOutput.write(("Sampling rate= " + samplesPerSecond + " samples/sec\n").getBytes());
-            backupOutput.write(("Moving Avg value= " + movingAvgValue + " points\n").getBytes());
-            backupOutput.write(("Data size= " + dataSize + "\n\n").getBytes());
-            backupOutput.write(("Data point,Time(sec),Port0(V),Port1(V),Port2(V)\n").getBytes());
-
-            int maxIndex = Math.min(dataSize,
-                    Math.min(dataPoints0.size(),
-                            Math.min(dataPoints1.size(), dataPoints2.size())));
+    private void setupLiveSeries() {
+        graphView.removeAllSeries();
+        liveTraces.clear();
+        overview.clear();
+        overviewRows = 0;
+        overviewSeries = null;
 
-            for (int i = 0; i < maxIndex; i++) {
-                backupOutput.write(("\n" + (i + 1) + "," +
-                        xaxis.get(i) + "," +
-                        dataPoints0.get(i) + "," +
-                        dataPoints1.get(i) + "," +
-                        dataPoints2.get(i)).getBytes());
-            }
-            Log.i(TAG, "Backup saved: " + backupFile.getPath());
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving backup: " + e.getMessage(), e);
-        }
-    }
-    private void shutdownScheduler() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdownNow();
-            scheduler = null;
+        boolean[] analogPort = engine.getAnalogPort();
+        if (analogPort[3]) {
+            overviewSeries = new LineGraphSeries<>();
+            overviewSeries.setTitle("Overview");
+            overviewSeries.setColor(Color.GRAY);
+            overviewSeries.setThickness(1);
+            graphView.addSeries(overviewSeries);
         }
-    }
-
-    private void reconnectBluetooth() {
-        synchronized (connectionLock) {
-            // Prevent multiple reconnection attempts
-            if (isReconnecting || isConnecting) {
-                Log.w(TAG, "Reconnection already in progress, skipping");
-                return;
+        // Noisy traces show the unfiltered input, filtered traces the moving average
+        for (int port = 0; port < 3; port++) {
+            if (analogPort[port]) {
+                liveTraces.add(new LiveTrace(samples.channel(AcquisitionEngine.CH_RAW0 + port), false,
+                        "Noisy Port" + port, Color.LTGRAY, 1));
             }
-
-            isReconnecting = true;
-            connectionEstablished = false;
         }
-
-        Log.i(TAG, "Starting Bluetooth reconnection...");
-        shutdownScheduler();
-
-        // Close existing connection in background thread
-        new Thread(() -> {
-            try {
-                if (mySocket != null) {
-                    mySocket.close();
-                    mySocket = null;
-                }
-                is = null;
-                os = null;
-
-                // Wait before attempting reconnection
-                Thread.sleep(2000);
-
-                runOnUiThread(() -> {
-                    synchronized (connectionLock) {
-                        isReconnecting = false;
-                        isConnecting = false;
-                    }
-
-                    // Only attempt reconnection if we're still supposed to be started
-                    if (started) {
-                        initializeBluetooth();
-                    }
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error in reconnectBluetooth", e);
-                runOnUiThread(() -> {
-                    synchronized (connectionLock) {
-                        isReconnecting = false;
-                        isConnecting = false;
-                    }
-                    Toast.makeText(OutputBluetooth.this,
-                            "Reconnection failed. Please try manually.", Toast.LENGTH_SHORT).show();
-                });
+        int[] colors = {Color.BLUE, Color.MAGENTA, Color.RED};
+        for (int port = 0; port < 3; port++) {
+            if (analogPort[port]) {
+                liveTraces.add(new LiveTrace(samples.channel(AcquisitionEngine.CH_PORT0 + port), false,
+                        "Port" + port, colors[port], 2));
             }
-        }).start();
-    }
-
-    //————————————————————————————
-    // Packet buffering & parsing
-    //————————————————————————————
-
-    private void processBufferedData() {
-        String bufferStr = dataBuffer.toString();
-
-        // keep pulling complete packets   #…..p
-        int startIdx, endIdx;
-        while ((endIdx = bufferStr.indexOf('p')) >= 0) {
-            startIdx = bufferStr.lastIndexOf('#', endIdx);
-            if (startIdx < 0) startIdx = 0;
-
-            String pkt = bufferStr.substring(startIdx, endIdx + 1);
-            processBluetoothData(pkt);
-
-            // trim processed part
-            bufferStr = (endIdx + 1 < bufferStr.length())
-                    ? bufferStr.substring(endIdx + 1)
-                    : "";
         }
-        dataBuffer = new StringBuilder(bufferStr);       // keep remainder
-
-        if (dataBuffer.length() > 1024) {                // emergency drain
-            Log.w(TAG, "Data buffer overflow, resetting");
-            dataBuffer.setLength(0);
+        if (analogPort[3]) {
+            liveTraces.add(new LiveTrace(dataPointsavgd, true, "Filtered output", Color.BLACK, 3));
         }
-    }
-
-    private void processBluetoothData(String packet) {
-        try {
-            // strip markers
-            if (packet.startsWith("#")) packet = packet.substring(1);
-            if (packet.endsWith("p")) packet = packet.substring(0, packet.length() - 1);
-
-            StringTokenizer tokens = new StringTokenizer(packet, ":");
-            if (tokens.countTokens() != 3) return;
-
-            // parse & mask off whatever prefix you used
-            int raw0 = Integer.parseInt(tokens.nextToken()) % 100000;
-            int raw1 = Integer.parseInt(tokens.nextToken()) % 100000;
-            int raw2 = Integer.parseInt(tokens.nextToken()) % 100000;
-
-            double val0 = raw0 * analogRef / (Math.pow(2, ADCbits) - 1);
-            double val1 = raw1 * analogRef / (Math.pow(2, ADCbits) - 1);
-            double val2 = raw2 * analogRef / (Math.pow(2, ADCbits) - 1);
-
-            // update text
-            dataSize++;
-            time += 1.0 / samplesPerSecond;
-            // Calculate cortisol from last 100 samples (or all if less than 100)
-            double currentCortisol = calculateRollingAverageCortisol();
-
-            textViewAppend.setText(String.format(Locale.getDefault(),
-                    "Samples %d | %.2fs\n0: %.4f V\n1: %.4f V\n2: %.4f V\nCortisol: %.1f ng/mL",
-                    dataSize, time, val0, val1, val2, currentCortisol));
-
-
-            // collect for plotting
-            xaxis.add(time);
-            graphCount++;
-            processPortData(0, val0);
-            processPortData(1, val1);
-            processPortData(2, val2);
-
-            // average of all three
-            double avg = (val0 + val1 + val2) / 3.0;
-            dataPointsavgdUnclean.add(avg);
-            dataPointsavgd.add(movingAvgValue == 0
-                    ? avg
-                    : MVFilter(dataPointsavgdUnclean.size(), movingAvgValue, dataPointsavgdUnclean));
-            cleanGraph(dataPointsavgd);
-
-            // only redraw every 3 samples
-            if (graphCount == 3) {
-                graphCount = 0;
-                drawGraph();
-            }
-
-            // Update Save and Show button states when data is available
-            runOnUiThread(this::updateDataDependentButtons);
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error in processBluetoothData", e);
-        }
-    }
-
-    private void processPortData(int portIndex, double value) {
-        try {
-            switch (portIndex) {
-                case 0:
-                    dataPoints0Unclean.add(value);
-                    dataPoints0.add(movingAvgValue == 0
-                            ? value
-                            : MVFilter(dataPoints0Unclean.size(), movingAvgValue, dataPoints0Unclean));
-                    break;
-                case 1:
-                    dataPoints1Unclean.add(value);
-                    dataPoints1.add(movingAvgValue == 0
-                            ? value
-                            : MVFilter(dataPoints1Unclean.size(), movingAvgValue, dataPoints1Unclean));
-                    break;
-                case 2:
-                    dataPoints2Unclean.add(value);
-                    dataPoints2.add(movingAvgValue == 0
-                            ? value
-                            : MVFilter(dataPoints2Unclean.size(), movingAvgValue, dataPoints2Unclean));
-                    break;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing port " + portIndex + ": " + e.getMessage(), e);
+        for (LiveTrace trace : liveTraces) {
+            graphView.addSeries(trace.series);
         }
+        graphView.getLegendRenderer().setVisible(true);
+        graphView.getLegendRenderer().setAlign(LegendRenderer.LegendAlign.TOP);
     }
-    private double calculateRollingAverageCortisol() {
-        if (dataPoints1.isEmpty()) {
-            return 0.0;
-        }
 
-        int totalSamples = dataPoints1.size();
-        int samplesToAverage = Math.min(100, totalSamples);
-        int startIndex = totalSamples - samplesToAverage;
-
-        double sum = 0.0;
-        for (int i = startIndex; i < totalSamples; i++) {
-            sum += dataPoints1.get(i);
-        }
-        double avgVoltage = sum / samplesToAverage;
-        double yValue = avgVoltage * 1000.0; // mV
-
-        // Single range check + log
-        if (yValue < 428.0 || yValue > 478.6686) {
-            Log.d(TAG, "ROLLING INVALID totalSamples=" + totalSamples
-                    + " windowSize=" + samplesToAverage
-                    + " avgVoltage=" + avgVoltage
-                    + " yValue=" + yValue);
-            return 0.0;
+    // Appends rows plotted since the last call; cost depends on the new rows and
+    // the window size, not on the session length
+    private void drawGraph(int rows, int finalRows) {
+        rows = Math.min(rows, samples.size());
+        if (rows == 0) return;
+        if (liveTraces.isEmpty()) {
+            setupLiveSeries();
         }
+        int window = liveWindowPoints();
+        int stride = plotStride();
+        int maxPoints = window / stride + 1;
 
-        double cortisol =
-                Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
-
-        Log.d(TAG, "ROLLING totalSamples=" + totalSamples
-                + " windowSize=" + samplesToAverage
-                + " avgVoltage=" + avgVoltage
-                + " yValue=" + yValue
-                + " cortisol=" + cortisol);
-
-        return cortisol;
-    }
-
-
-
-
-    private void drawGraph() {
-        int len = Math.min(dataPoints0.size(), xaxis.size());
-        if (len == 0) return;
-
-        // Build arrays once – reuse for all series that need them
-        DataPoint[] p0  = new DataPoint[len];
-        DataPoint[] p1  = new DataPoint[len];
-        DataPoint[] p2  = new DataPoint[len];
-        DataPoint[] pav = new DataPoint[len];
-        for (int i = 0; i < len; i++) {
-            double t = xaxis.get(i);
-            p0[i]  = new DataPoint(t, dataPoints0.get(i));
-            p1[i]  = new DataPoint(t, dataPoints1.get(i));
-            p2[i]  = new DataPoint(t, dataPoints2.get(i));
-            pav[i] = new DataPoint(t, dataPointsavgd.get(i));
+        for (LiveTrace trace : liveTraces) {
+            int end = trace.despiked ? Math.min(finalRows, rows) : rows;
+            int start = Math.max(trace.plotted, end - window);
+            if (start > trace.plotted && trace.plotted > 0) {
+                trace.series.resetData(new DataPoint[0]); // fell a whole window behind
+            }
+            for (int i = (start + stride - 1) / stride * stride; i < end; i += stride) {
+                trace.series.appendData(new DataPoint(xaxis.get(i), trace.column.get(i)), false, maxPoints, true);
+            }
+            trace.plotted = Math.max(trace.plotted, end);
         }
 
-        graphView.removeAllSeries();
-
-        if (analogPort[0]) {              // ‑‑ noisy 0
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p0);
-            s.setTitle("Noisy Port0");
-            s.setColor(Color.LTGRAY);
-            s.setThickness(1);
-            graphView.addSeries(s);
-        }
-        if (analogPort[1]) {              // ‑‑ noisy 1
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p1);
-            s.setTitle("Noisy Port1");
-            s.setColor(Color.LTGRAY);
-            s.setThickness(1);
-            graphView.addSeries(s);
-        }
-        if (analogPort[2]) {              // ‑‑ noisy 2
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p2);
-            s.setTitle("Noisy Port2");
-            s.setColor(Color.LTGRAY);
-            s.setThickness(1);
-            graphView.addSeries(s);
-        }
-
-        if (analogPort[0]) {              // ‑‑ filtered 0
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p0);
-            s.setTitle("Port0");
-            s.setColor(Color.BLUE);
-            s.setThickness(2);
-            graphView.addSeries(s);
-        }
-        if (analogPort[1]) {              // ‑‑ filtered 1
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p1);
-            s.setTitle("Port1");
-            s.setColor(Color.MAGENTA);
-            s.setThickness(2);
-            graphView.addSeries(s);
-        }
-        if (analogPort[2]) {              // ‑‑ filtered 2
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(p2);
-            s.setTitle("Port2");
-            s.setColor(Color.RED);
-            s.setThickness(2);
-            graphView.addSeries(s);
-        }
-        if (analogPort[3]) {              // ‑‑ overall average
-            LineGraphSeries<DataPoint> s = new LineGraphSeries<>(pav);
-            s.setTitle("Filtered output");
-            s.setColor(Color.BLACK);
-            s.setThickness(3);
-            graphView.addSeries(s);
+        if (overviewSeries != null) {
+            boolean changed = false;
+            int overviewEnd = Math.max(0, Math.min(finalRows, rows) - window);
+            for (; overviewRows < overviewEnd; overviewRows++) {
+                changed |= overview.add(xaxis.get(overviewRows), dataPointsavgd.get(overviewRows));
+            }
+            if (changed) {
+                DataPoint[] points = new DataPoint[overview.size()];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = new DataPoint(overview.x(i), overview.y(i));
+                }
+                overviewSeries.resetData(points);
+            }
         }
+        graphView.onDataChanged(true, false);
 
         // scroll window
-        if (!
-
-
-                xaxis.isEmpty()) {
-            double last = xaxis.get(xaxis.size() - 1);
-            if (last > durationOfExp) {
-                graphView.getViewport().setMinX(last - durationOfExp);
-                graphView.getViewport().setMaxX(last);
-            }
+        double last = xaxis.get(rows - 1);
+        if (last > engine.getDurationOfExp()) {
+            graphView.getViewport().setMinX(last - engine.getDurationOfExp());
+            graphView.getViewport().setMaxX(last);
         }
-        graphView.getLegendRenderer().setVisible(true);
-        graphView.getLegendRenderer().setAlign(LegendRenderer.LegendAlign.TOP);
     }
 
     private void resetGraph() {
         try {
             graphView.removeAllSeries();
+            liveTraces.clear(); // series are rebuilt on the next draw
             graphView.setTitle("Voltage (V) vs Time (s)");
             graphView.getViewport().setYAxisBoundsManual(false);
             graphView.getViewport().setXAxisBoundsManual(true);
             graphView.getViewport().setMinX(0);
-            graphView.getViewport().setMaxX(durationOfExp);
+            graphView.getViewport().setMaxX(engine.getDurationOfExp());
             graphView.getViewport().setScrollable(true);
             graphView.getViewport().setScalable(true);
             graphView.getGridLabelRenderer().setNumVerticalLabels(13);
@@ -2350,78 +2073,29 @@ public class OutputBluetooth extends AppCompatActivity {
         }
     }
 
-    private double MVFilter(int arrSize, int x, ArrayList<Double> arr) {
-        if (arr == null || arr.isEmpty() || x <= 0) return 0.0;
-        double sum = 0.0;
-        int start = Math.max(0, arrSize - x), end = arrSize;
-        for (int i = start; i < end; i++) sum += arr.get(i);
-        int count = end - start;
-        return count > 0 ? sum / count : 0.0;
+    private void resetDataArrays() {
+        resetDataArrays(null);
     }
 
-    public void cleanGraph(ArrayList<Double> arl) {
-        if (arl == null || arl.size() < 3) return;
-        int size = arl.size();
-        for (int a = 1; a < size - 1; a++) {
-            // Single outlier
-            if ((arl.get(a) - arl.get(a - 1) > 0.01 && arl.get(a) - arl.get(a + 1) > 0.01) ||
-                    (arl.get(a - 1) - arl.get(a) > 0.01 && arl.get(a + 1) - arl.get(a) > 0.01)) {
-                arl.set(a, (arl.get(a - 1) + arl.get(a + 1)) / 2);
-            }
-            // Two-point outlier
-            if (a < size - 2) {
-                double avg2 = (arl.get(a) + arl.get(a + 1)) / 2;
-                if ((avg2 - arl.get(a - 1) > 0.01 && avg2 - arl.get(a + 2) > 0.01) ||
-                        (arl.get(a - 1) - avg2 > 0.01 && arl.get(a + 2) - avg2 > 0.01)) {
-                    arl.set(a, (arl.get(a - 1) + arl.get(a + 2)) / 2);
-                    arl.set(a + 1, (arl.get(a - 1) + arl.get(a + 2)) / 2);
-                }
-            }
-            // Three-point outlier
-            if (a < size - 3) {
-                double avg3 = (arl.get(a) + arl.get(a + 1) + arl.get(a + 2)) / 3;
-                if ((avg3 - arl.get(a - 1) > 0.01 && avg3 - arl.get(a + 3) > 0.01) ||
-                        (arl.get(a - 1) - avg3 > 0.01 && arl.get(a + 3) - avg3 > 0.01)) {
-                    arl.set(a, (arl.get(a - 1) + arl.get(a + 3)) / 2);
-                    arl.set(a + 1, (arl.get(a - 1) + arl.get(a + 3)) / 2);
-                    arl.set(a + 2, (arl.get(a - 1) + arl.get(a + 3)) / 2);
-                }
+    // The engine clears on its pipeline thread; nothing is drawn from the columns until
+    // it is done, then {@code then} runs
+    private void resetDataArrays(Runnable then) {
+        clearing = true;
+        updateDataDependentButtons(); // no Save/Show of a session being cleared
+        engine.clearData(() -> {
+            clearing = false;
+            if (isDestroyed()) {
+                return;
             }
-        }
-    }
-
-    private void resetDataArrays() {
-        dataPoints0.clear();
-        dataPoints1.clear();
-        dataPoints2.clear();
-        dataPointsavgd.clear();
-        xaxis.clear();
-        dataPoints0Unclean.clear();
-        dataPoints1Unclean.clear();
-        dataPoints2Unclean.clear();
-        dataPointsavgdUnclean.clear();
-        time = 0.0;
-        dataSize = 0;
-        graphCount = 0;
-
-        // Update Save and Show button states when data is cleared
-        updateDataDependentButtons();
-    }
+            drawnRows = -1;
+            resetGraph();
 
-    public double findMaxbyAvg(ArrayList<Double> arl) {
-        if (arl == null || arl.isEmpty()) return 0.0;
-        double maxVal = 0;
-        int idx = 0;
-        for (int i = 0; i < arl.size(); i++) {
-            if (arl.get(i) > maxVal) {
-                maxVal = arl.get(i);
-                idx = i;
+            // Update Save and Show button states when data is cleared
+            updateDataDependentButtons();
+            if (then != null) {
+                then.run();
             }
-        }
-        int start = Math.max(0, idx - 19), end = Math.min(arl.size() - 1, idx + 20);
-        double sum = 0.0;
-        for (int i = start; i <= end; i++) sum += arl.get(i);
-        return (end - start + 1) > 0 ? sum / (end - start + 1) : maxVal;
+        });
     }
 
     @Override
@@ -2436,398 +2110,11 @@ public class OutputBluetooth extends AppCompatActivity {
     }
 
     //————————————————————————————
-    // Thread to connect Bluetooth
+    // Sensor link
     //————————————————————————————
 
-    private void checkBatchBoundary() {
-        if (dataSize > 0 && dataSize % BATCH_SIZE == 0) {
-            Log.i(TAG, "Reached batch boundary at sample #" + dataSize);
-
-            // Save current batch data
-            saveCurrentProgress();
-
-            // Force a complete connection reset
-            runOnUiThread(() -> {
-                Toast.makeText(OutputBluetooth.this,
-                        "Starting batch " + (currentBatch + 1), Toast.LENGTH_SHORT).show();
-            });
-
-            // Shutdown current collection
-            shutdownScheduler();
-
-            // Close and reset connection in a separate thread
-            new Thread(() -> {
-                try {
-                    if (mySocket != null) {
-                        mySocket.close();
-                        mySocket = null;
-                    }
-                    is = null;
-                    os = null;
-
-                    // Wait before reconnection
-                    Thread.sleep(1000);
-
-                    // Start fresh connection
-                    runOnUiThread(() -> {
-                        // Increment batch counter
-                        currentBatch++;
-
-                        // ✅ FIXED: Set connection state properly
-                        synchronized (connectionLock) {
-                            isConnecting = true;
-                            connectionEstablished = false;
-                        }
-
-                        // Start with fresh connection
-                        new ConnectThread(myDevice).start();
-
-                        // ❌ REMOVE THIS - Let ConnectThread handle timer restart
-                        // The ConnectThread will automatically start the timer in notifyConnectionSuccess()
-                        // new Handler().postDelayed(() -> {
-                        //     sendTimer(true);
-                        // }, 2000);
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error during batch transition", e);
-
-                    // ✅ ADDED: Reset connection state on error
-                    runOnUiThread(() -> {
-                        synchronized (connectionLock) {
-                            isConnecting = false;
-                            connectionEstablished = false;
-                        }
-
-                        Toast.makeText(OutputBluetooth.this,
-                                "Batch transition failed. Please reconnect manually.",
-                                Toast.LENGTH_LONG).show();
-                    });
-                }
-            }).start();
-        }
-    }
-
-    // Inner class for connecting to HC-05, with fallback and improved error handling
-    private class ConnectThread extends Thread {
-        private final UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
-        private final BluetoothDevice device;
-        private static final int MAX_RETRY_ATTEMPTS = 3;
-        private static final long RETRY_DELAY_MS = 2000;
-        private static final long CONNECTION_TIMEOUT_MS = 15000;
-
-        ConnectThread(BluetoothDevice device) {
-            this.device = device;
-        }
-
-        @Override
-        public void run() {
-            boolean connectionSuccessful = false;
-
-            // Ensure we're in connecting state
-            synchronized (connectionLock) {
-                if (!isConnecting) {
-                    Log.w(TAG, "Connection attempt cancelled - not in connecting state");
-                    return;
-                }
-            }
-
-            for (int attempt = 1; attempt <= MAX_RETRY_ATTEMPTS && !connectionSuccessful; attempt++) {
-                // Check if we should still be connecting
-                synchronized (connectionLock) {
-                    if (!isConnecting) {
-                        Log.i(TAG, "Connection attempt cancelled during retry " + attempt);
-                        return;
-                    }
-                }
-
-                Log.i(TAG, "Connection attempt " + attempt + "/" + MAX_RETRY_ATTEMPTS);
-
-                try {
-                    // Ensure Bluetooth is enabled and ready
-                    if (!ensureBluetoothReady()) {
-                        Log.e(TAG, "Bluetooth not ready for connection");
-                        continue;
-                    }
-
-                    // Cancel any ongoing discovery to free up resources
-                    if (mBA.isDiscovering()) {
-                        mBA.cancelDiscovery();
-                        Thread.sleep(1000); // Wait for discovery to stop
-                    }
-
-                    // Close any existing socket
-                    closeExistingSocket();
-
-                    // Wait between attempts (except first attempt)
-                    if (attempt > 1) {
-                        Log.i(TAG, "Waiting " + RETRY_DELAY_MS + "ms before retry...");
-                        Thread.sleep(RETRY_DELAY_MS);
-                    }
-
-                    // Try standard SPP connection first
-                    connectionSuccessful = attemptStandardConnection();
-
-                    if (!connectionSuccessful) {
-                        // Try fallback connection method
-                        connectionSuccessful = attemptFallbackConnection();
-                    }
-
-                    if (connectionSuccessful) {
-                        // Initialize streams and test connection
-                        if (initializeStreamsAndTest()) {
-                            Log.i(TAG, "Connection successful on attempt " + attempt);
-                            notifyConnectionSuccess();
-                            return;
-                        } else {
-                            connectionSuccessful = false;
-                            closeExistingSocket();
-                        }
-                    }
-
-                } catch (InterruptedException e) {
-                    Log.e(TAG, "Connection thread interrupted", e);
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    Log.e(TAG, "Unexpected error in connection attempt " + attempt, e);
-                    closeExistingSocket();
-                }
-            }
-
-            // All attempts failed - reset connection state
-            synchronized (connectionLock) {
-                isConnecting = false;
-                connectionEstablished = false;
-            }
-
-            Log.e(TAG, "All connection attempts failed");
-            runOnUiThread(() -> {
-                Toast.makeText(OutputBluetooth.this,
-                        "Connection failed after " + MAX_RETRY_ATTEMPTS + " attempts. Please check device and try again.",
-                        Toast.LENGTH_LONG).show();
-
-                // Reset UI state
-                startButton.setEnabled(true);
-                stopButton.setEnabled(false);
-                connectButton.setEnabled(true);
-                settingsButton.setEnabled(true);
-            });
-        }
-
-        private boolean ensureBluetoothReady() {
-            try {
-                if (mBA == null || !mBA.isEnabled()) {
-                    Log.e(TAG, "Bluetooth adapter not available or not enabled");
-                    return false;
-                }
-
-                // Check permissions for Android 12+
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                    if (ContextCompat.checkSelfPermission(OutputBluetooth.this,
-                            Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                        Log.e(TAG, "BLUETOOTH_CONNECT permission not granted");
-                        return false;
-                    }
-                }
-
-                return true;
-            } catch (SecurityException e) {
-                Log.e(TAG, "Security exception checking Bluetooth state", e);
-                return false;
-            }
-        }
-
-        private void closeExistingSocket() {
-            if (mySocket != null) {
-                try {
-                    mySocket.close();
-                    Log.d(TAG, "Existing socket closed");
-                } catch (IOException e) {
-                    Log.w(TAG, "Error closing existing socket", e);
-                }
-                mySocket = null;
-            }
-        }
-
-        private boolean attemptStandardConnection() {
-            try {
-                Log.d(TAG, "Attempting standard RFCOMM connection...");
-
-                // Add a delay before connection attempt to stabilize
-                Thread.sleep(1000);
-
-                // Create the socket
-                mySocket = device.createRfcommSocketToServiceRecord(uuid);
-
-                // Set connection timeout if possible (on some Android versions)
-                try {
-                    // Use reflection to set socket timeout property
-                    Method m = mySocket.getClass().getMethod("setConnectionTimeout", int.class);
-                    m.invoke(mySocket, 15000); // 15 seconds timeout
-                    Log.d(TAG, "Connection timeout set to 15 seconds");
-                } catch (Exception e) {
-                    // Method not available, continue without setting timeout
-                    Log.d(TAG, "Could not set connection timeout: " + e.getMessage());
-                }
-
-                // Try connecting with improved error handling
-                try {
-                    // Cancel discovery to avoid interference
-                    if (mBA.isDiscovering()) {
-                        mBA.cancelDiscovery();
-                        Thread.sleep(500);
-                    }
-
-                    // Actual connection
-                    mySocket.connect();
-                    Log.d(TAG, "Standard connection successful");
-                    return true;
-                } catch (IOException e) {
-                    String errorMsg = e.getMessage();
-                    Log.w(TAG, "Standard connection failed: " + errorMsg);
-
-                    // More detailed error logging
-                    if (errorMsg != null && errorMsg.contains("timeout")) {
-                        Log.e(TAG, "Connection timed out - device may be out of range or powered off");
-                    } else if (errorMsg != null && errorMsg.contains("closed")) {
-                        Log.e(TAG, "Socket was closed during connection");
-                    }
-
-                    closeExistingSocket();
-                    return false;
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error in standard connection attempt: " + e.getClass().getName() + ": " + e.getMessage());
-                closeExistingSocket();
-                return false;
-            }
-        }
-
-        private boolean attemptFallbackConnection() {
-            try {
-                Log.d(TAG, "Attempting fallback connection via reflection...");
-
-                // Use reflection to create socket with channel 1
-                Method fallbackMethod = device.getClass().getMethod("createRfcommSocket", int.class);
-                mySocket = (BluetoothSocket) fallbackMethod.invoke(device, 1);
-
-                if (mySocket != null) {
-                    mySocket.connect();
-                    Log.d(TAG, "Fallback connection successful");
-                    return true;
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Fallback connection failed: " + e.getMessage());
-                closeExistingSocket();
-            }
-            return false;
-        }
-
-        private boolean initializeStreamsAndTest() {
-            try {
-                Log.d(TAG, "Initializing input/output streams...");
-
-                // Get streams
-                is = mySocket.getInputStream();
-                os = mySocket.getOutputStream();
-
-                if (is == null || os == null) {
-                    Log.e(TAG, "Failed to get input/output streams");
-                    return false;
-                }
-
-                // Test the connection by sending a simple command
-                Log.d(TAG, "Testing connection with ping command...");
-                os.write("R\r".getBytes()); // Reset command
-                os.flush();
-
-                // Wait a bit and clear any response
-                Thread.sleep(500);
-                while (is.available() > 0) {
-                    is.skip(is.available());
-                }
-
-                Log.d(TAG, "Connection test successful");
-                return true;
-
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to initialize streams or test connection", e);
-                return false;
-            }
-        }
-
-
-        private void notifyConnectionSuccess() {
-            runOnUiThread(() -> {
-                try {
-                    String deviceName = device.getName();
-                    if (deviceName == null) deviceName = "Unknown Device";
-
-                    Toast.makeText(OutputBluetooth.this,
-                            "Connected to " + deviceName, Toast.LENGTH_SHORT).show();
-
-                    // Set connection state flags
-                    synchronized (connectionLock) {
-                        isConnecting = false;
-                        connectionEstablished = true;
-                    }
-
-                    // ✅ CHECK: If this is a batch transition and data collection was active
-                    boolean shouldResumeCollection = started && currentBatch > 1;
-
-                    if (shouldResumeCollection) {
-                        // ✅ BATCH TRANSITION: Automatically resume data collection
-                        Log.i(TAG, "Batch transition complete - resuming data collection");
-
-                        // Update UI for resumed collection
-                        startButton.setEnabled(false);
-                        stopButton.setEnabled(true);
-                        connectButton.setEnabled(false);
-                        settingsButton.setEnabled(true);
-                        saveButton.setEnabled(false);
-                        showButton.setEnabled(false);
-
-                        // Restart data collection
-                        sendTimer(true);
-
-                        Toast.makeText(OutputBluetooth.this,
-                                "Batch " + currentBatch + " resumed", Toast.LENGTH_SHORT).show();
-                    } else {
-                        // ✅ NORMAL CONNECTION: Update UI for connected but not started
-                        startButton.setEnabled(true);  // Enable start button
-                        stopButton.setEnabled(false);  // Not started yet
-                        connectButton.setEnabled(true); // Allow manual reconnect
-                        settingsButton.setEnabled(true); // Allow settings
-                        saveButton.setEnabled(dataSize > 0);   // Only if there's data
-                        showButton.setEnabled(dataSize > 0);   // Only if there's data
-
-                        Log.i(TAG, "Connection established. Ready for data collection.");
-                    }
-
-                    // Log button states for debugging
-                    logButtonStates("after connection success");
-
-                    // Reset reconnection flags
-                    OutputBluetooth.this.reconnecting = false;
-                    isReconnecting = false;
-                    errorCount = 0;
-
-                } catch (SecurityException e) {
-                    Log.e(TAG, "Security exception in success notification", e);
-                    // Reset connection state on error
-                    synchronized (connectionLock) {
-                        isConnecting = false;
-                        connectionEstablished = false;
-                    }
-                }
-            });
-        }
-    }
-
-    // Helper method to check if we have a valid Bluetooth connection
-    private boolean hasValidConnection() {
-        return connectionEstablished && mySocket != null && mySocket.isConnected() &&
-                os != null && is != null;
+    private UsbManager usbManager() {
+        return (UsbManager) getSystemService(USB_SERVICE);
     }
 
     // Helper method to log current button states for debugging
@@ -2843,21 +2130,24 @@ public class OutputBluetooth extends AppCompatActivity {
 
     // Helper method to update Save and Show button states based on data availability
     private void updateDataDependentButtons() {
-        boolean hasData = dataSize > 0 && !dataPointsavgd.isEmpty();
+        if (engine == null) {
+            return;
+        }
+        boolean hasData = !clearing && engine.getDataSize() > 0 && !dataPointsavgd.isEmpty();
         // Only enable save/show buttons if we have data AND data collection is not active
-        boolean shouldEnable = hasData && !started;
+        boolean shouldEnable = hasData && !engine.isCollecting();
 
         // Only update if the state would change to avoid unnecessary UI updates
         if (saveButton.isEnabled() != shouldEnable) {
             saveButton.setEnabled(shouldEnable);
             Log.d(TAG, "Save button " + (shouldEnable ? "enabled" : "disabled") +
-                    " (dataSize=" + dataSize + ", started=" + started + ")");
+                    " (dataSize=" + engine.getDataSize() + ", started=" + engine.isCollecting() + ")");
         }
 
         if (showButton.isEnabled() != shouldEnable) {
             showButton.setEnabled(shouldEnable);
             Log.d(TAG, "Show button " + (shouldEnable ? "enabled" : "disabled") +
-                    " (dataSize=" + dataSize + ", started=" + started + ")");
+                    " (dataSize=" + engine.getDataSize() + ", started=" + engine.isCollecting() + ")");
         }
     }
 }
\ No newline at end of file
@@ -32,6 +32,7 @@ public class PatientHistoryDetailActivity extends AppCompatActivity {
 
     private UserDatabaseHelper userDb;
     private DatabaseHelper appDb;
+    private CalibrationEngine calibration;
     private String patientEmail;
 
     @Override
@@ -46,6 +47,7 @@ public class PatientHistoryDetailActivity extends AppCompatActivity {
 
         userDb = UserDatabaseHelper.getInstance(this);
         appDb = DatabaseHelper.getInstance(this);
+        calibration = CalibrationEngine.getInstance(this);
 
         patientEmail = getIntent().getStringExtra("patient_email");
         if (patientEmail == null || patientEmail.isEmpty()) {
@@ -156,12 +158,15 @@ public class PatientHistoryDetailActivity extends AppCompatActivity {
                 new SimpleDateFormat("MMM dd, yyyy  HH:mm", Locale.getDefault());
         dateTimeFormat.setTimeZone(TimeZone.getDefault());
 
-        for (DatabaseHelper.BiomarkerExperimentSummary exp : exps) {
+        // same conversion as ResultActivity: each experiment under its recorded curve
+        double[] cortisols = calibration.convertHistory(exps);
+
+        for (int i = 0; i < exps.size(); i++) {
+            DatabaseHelper.BiomarkerExperimentSummary exp = exps.get(i);
             long correctedTs = correctTimestamp(exp.timestamp); // reuse your helper if you copy it here
             String dateTime = dateTimeFormat.format(new Date(correctedTs));
 
-            // use same formula as ResultActivity
-            double cortisol = calculateCortisol(exp.maxValue);
+            double cortisol = cortisols[i];
 
             String displayLine;
             if (cortisol <= 0) {
@@ -195,14 +200,6 @@ public class PatientHistoryDetailActivity extends AppCompatActivity {
         return timestamp;
     }
 
-    private double calculateCortisol(double voltage) {
-        double yValue = voltage * 1000.0;
-        if (yValue >= 428.0 && yValue <= 478.6686) {
-            return Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
-        }
-        return -1.0;
-    }
-
 
 
     @Override
@@ -56,6 +56,7 @@ public class ResultActivity extends AppCompatActivity {
 
     // Database
     private DatabaseHelper dbHelper;
+    private CalibrationEngine calibration;
 
     // Selected date for graph display
     private long selectedDateTimestamp = 0;
@@ -70,6 +71,7 @@ public class ResultActivity extends AppCompatActivity {
         selectedDateTimestamp = timestamp;
 
         dbHelper = DatabaseHelper.getInstance(this);
+        calibration = CalibrationEngine.getInstance(this);
 
         initializeViews();
 
@@ -167,21 +169,9 @@ public class ResultActivity extends AppCompatActivity {
 
     private void calculateBiomarkerValues() {
         if (maxValuePort1 > 0) {
-            double yValue = maxValuePort1 * 1000.0;
-
-            if (yValue < 428.0 || yValue > 478.6686) {
-                cortisolLevel = 0.0;
-            } else {
-                cortisolLevel = Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
-            }
+            cortisolLevel = Math.max(0.0, calibration.cortisol(maxValuePort1));
         } else if (maxValue > 0) {
-            double yValue = maxValue * 1000.0;
-
-            if (yValue < 428.0 || yValue > 478.6686) {
-                cortisolLevel = 0.0;
-            } else {
-                cortisolLevel = Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
-            }
+            cortisolLevel = Math.max(0.0, calibration.cortisol(maxValue));
         } else {
             cortisolLevel = 0.0;
         }
@@ -217,12 +207,9 @@ public class ResultActivity extends AppCompatActivity {
         return cal.getTimeInMillis();
     }
 
-    private double calculateCortisol(double voltage) {
-        double yValue = voltage * 1000.0;
-        if (yValue >= 428.0 && yValue <= 478.6686) {
-            return Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
-        }
-        return -1.0;
+    // Converts the stored voltages of a list of experiments, each under its own curve; -1.0 marks invalid ones
+    private double[] calculateCortisol(List<DatabaseHelper.BiomarkerExperimentSummary> exps) {
+        return calibration.convertHistory(exps);
     }
 
     // Helper method to correct timestamp (detects if in seconds)
@@ -330,7 +317,10 @@ public class ResultActivity extends AppCompatActivity {
             headerRow.addView(tvDayHeader);
             tablePreviousResults.addView(headerRow);
 
-            for (DatabaseHelper.BiomarkerExperimentSummary exp : dayTests) {
+            double[] dayCortisol = calculateCortisol(dayTests);
+
+            for (int i = 0; i < dayTests.size(); i++) {
+                DatabaseHelper.BiomarkerExperimentSummary exp = dayTests.get(i);
                 TableRow row = new TableRow(this);
                 row.setPadding(0, 4, 0, 4);
 
@@ -342,7 +332,7 @@ public class ResultActivity extends AppCompatActivity {
                 tvTime.setTextSize(14);
                 tvTime.setTextColor(Color.parseColor("#424242"));
 
-                double cortisol = calculateCortisol(exp.maxValue);
+                double cortisol = dayCortisol[i];
 
                 TextView tvCort = new TextView(this);
                 if (cortisol <= 0) {
@@ -411,15 +401,17 @@ public class ResultActivity extends AppCompatActivity {
         List<DataPoint> validPoints = new ArrayList<>();
         List<DataPoint> invalidPoints = new ArrayList<>();
 
-        for (DatabaseHelper.BiomarkerExperimentSummary exp : dayHistory) {
+        double[] dayCortisol = calculateCortisol(dayHistory);
+
+        for (int i = 0; i < dayHistory.size(); i++) {
+            DatabaseHelper.BiomarkerExperimentSummary exp = dayHistory.get(i);
 
             long expTimestamp = correctTimestamp(exp.timestamp);
             double hoursFromMidnight =
                     (expTimestamp - dayStart) / (1000.0 * 60.0 * 60.0);
 
-            // IMPORTANT: use correct stored voltage
-            double voltage = exp.maxValue;
-            double cortisol = calculateCortisol(voltage);
+            // IMPORTANT: converted from the correct stored voltage
+            double cortisol = dayCortisol[i];
 
             if (cortisol > 0) {
                 validPoints.add(new DataPoint(hoursFromMidnight, cortisol));
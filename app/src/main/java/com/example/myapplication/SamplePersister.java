@@ -0,0 +1,224 @@
+package com.example.myapplication;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.myapplication.acquisition.Calibration;
+import com.example.myapplication.acquisition.DoubleColumn;
+import com.example.myapplication.acquisition.GapLog;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Write-behind persistence of one acquisition session into biomarker_data.
+ *
+ * The experiment row is created when the session starts; after that the
+ * acquisition thread {@link #offer offers} the number of finished rows and
+ * every {@link #FLUSH_ROWS} rows or {@link #FLUSH_INTERVAL_MS} the new range
+ * is inserted in a small transaction on a background thread. Saving only has
+ * to flush the last few rows and record the final max value and size.
+ *
+ * All biomarker writes, including journal recovery, go through one
+ * process-wide writer thread so they are applied in order even across
+ * activity instances. Ranges are copied out of the columns on the
+ * acquisition thread when they are queued, so the writer never reads the
+ * columns and they can be cleared or reused at any time. Only rows that no
+ * longer change are queued, except the unfinished tail a save has to
+ * include: it is stored provisionally and overwritten by the next flush.
+ */
+public class SamplePersister {
+
+    private static final String TAG = "SamplePersister";
+
+    public static final int FLUSH_ROWS = 250;
+    public static final long FLUSH_INTERVAL_MS = 2000;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SamplePersister");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DatabaseHelper dbHelper;
+    private final DoubleColumn time, port0, port1, port2, avg;
+
+    private long experimentId = -1;
+    private int queuedRows = 0;
+    private int provisionalRows = 0; // end of the tail stored by finish, beyond queuedRows
+    private int savedRows = 0;
+    private long lastFlush = 0;
+
+    // Writer thread only: ranges that failed to insert, oldest first
+    private final ArrayDeque<Rows> unstored = new ArrayDeque<>();
+
+    public SamplePersister(DatabaseHelper dbHelper, DoubleColumn time, DoubleColumn port0,
+                           DoubleColumn port1, DoubleColumn port2, DoubleColumn avg) {
+        this.dbHelper = dbHelper;
+        this.time = time;
+        this.port0 = port0;
+        this.port1 = port1;
+        this.port2 = port2;
+        this.avg = avg;
+    }
+
+    /** Runs a task on the shared biomarker writer thread, after everything queued before it. */
+    public static Future<?> enqueue(Runnable task) {
+        return WRITER.submit(task);
+    }
+
+    /**
+     * Creates the experiment row for a new session unless one is already open,
+     * recording the calibration curve its results are converted with.
+     */
+    public synchronized long begin(String userEmail, int samplesPerSecond, int movingAvg,
+                                   double duration, long sampleTimestamp, Calibration calibration) {
+        if (experimentId == -1) {
+            experimentId = dbHelper.createBiomarkerExperiment(userEmail, "Bluetooth",
+                    samplesPerSecond, movingAvg, duration, 0.0, 0, sampleTimestamp);
+            if (experimentId != -1) {
+                dbHelper.saveExperimentCalibration(experimentId, calibration);
+            }
+            queuedRows = 0;
+            provisionalRows = 0;
+            savedRows = 0;
+            lastFlush = SystemClock.elapsedRealtime();
+            Log.i(TAG, "Session persisted as experiment " + experimentId);
+        }
+        return experimentId;
+    }
+
+    public synchronized long getExperimentId() {
+        return experimentId;
+    }
+
+    /** Called after each drain with the number of rows that will not change any more. */
+    public synchronized void offer(int finalRows) {
+        if (experimentId == -1 || finalRows <= queuedRows) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (finalRows - queuedRows >= FLUSH_ROWS || now - lastFlush >= FLUSH_INTERVAL_MS) {
+            flush(finalRows);
+            lastFlush = now;
+        }
+    }
+
+    /** Records a sample gap of the open session. */
+    public synchronized void addGap(GapLog.Gap gap) {
+        long id = experimentId;
+        if (id == -1) {
+            return;
+        }
+        WRITER.execute(() -> dbHelper.addBiomarkerGap(id, gap.afterSample, gap.startMs, gap.endMs));
+    }
+
+    /**
+     * Flushes everything up to {@code rows} and records the session's max value
+     * and size. The session stays open, so collection can continue afterwards:
+     * rows from {@code finalRows} on may still change and are written again by
+     * the next flush.
+     *
+     * @return completes once the experiment is up to date
+     */
+    public synchronized Future<?> finish(int finalRows, int rows, double maxValue, int dataSize) {
+        long id = experimentId;
+        if (finalRows > queuedRows) {
+            flush(finalRows);
+        }
+        if (rows > queuedRows) {
+            queue(queuedRows, rows);
+            provisionalRows = Math.max(provisionalRows, rows);
+        }
+        savedRows = rows;
+        return WRITER.submit(() -> {
+            if (id != -1) {
+                dbHelper.finalizeBiomarkerExperiment(id, maxValue, dataSize);
+            }
+        });
+    }
+
+    /**
+     * Closes the session. A session that was never saved is deleted; rows
+     * written after the last save are removed so the stored experiment matches
+     * what the user saved.
+     */
+    public synchronized void discard() {
+        long id = experimentId;
+        int keep = savedRows;
+        experimentId = -1;
+        queuedRows = 0;
+        provisionalRows = 0;
+        savedRows = 0;
+        if (id == -1) {
+            return;
+        }
+        WRITER.execute(() -> {
+            // Saved rows that failed to insert get a last try before the session is let go
+            if (keep > 0 && !storeUnstored()) {
+                Log.e(TAG, "Experiment " + id + " saved without some of its first " + keep + " rows");
+            }
+            unstored.clear();
+            if (keep == 0) {
+                dbHelper.deleteBiomarkerExperiment(id);
+            } else {
+                dbHelper.deleteBiomarkerDataAfter(id, keep);
+            }
+        });
+    }
+
+    private void flush(int to) {
+        queue(queuedRows, to);
+        queuedRows = to;
+        if (to >= provisionalRows) {
+            provisionalRows = 0;
+        }
+    }
+
+    // Acquisition thread: copies the range now and inserts it on the writer thread
+    private void queue(int from, int to) {
+        Rows rows = new Rows(experimentId, from, from < provisionalRows, time.toArray(from, to),
+                port0.toArray(from, to), port1.toArray(from, to), port2.toArray(from, to),
+                avg.toArray(from, to));
+        WRITER.execute(() -> {
+            unstored.add(rows);
+            storeUnstored();
+        });
+    }
+
+    // Writer thread: ranges are stored in order, so a failed one is simply retried before the next
+    private boolean storeUnstored() {
+        while (!unstored.isEmpty()) {
+            Rows r = unstored.peek();
+            if (!dbHelper.addBiomarkerDataRows(r.experimentId, r.from, r.replace,
+                    r.time, r.port0, r.port1, r.port2, r.avg)) {
+                Log.e(TAG, "Rows " + r.from + "-" + (r.from + r.time.length) + " of experiment "
+                        + r.experimentId + " not stored, will retry");
+                return false;
+            }
+            unstored.remove();
+        }
+        return true;
+    }
+
+    private static final class Rows {
+        final long experimentId;
+        final int from;
+        final boolean replace;
+        final double[] time, port0, port1, port2, avg;
+
+        Rows(long experimentId, int from, boolean replace, double[] time, double[] port0,
+             double[] port1, double[] port2, double[] avg) {
+            this.experimentId = experimentId;
+            this.from = from;
+            this.replace = replace;
+            this.time = time;
+            this.port0 = port0;
+            this.port1 = port1;
+            this.port2 = port2;
+            this.avg = avg;
+        }
+    }
+}
@@ -5,18 +5,31 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.myapplication.acquisition.BurstPolling;
+import com.example.myapplication.acquisition.Calibration;
+import com.example.myapplication.acquisition.FilterChain;
+
+import java.util.Locale;
+
 public class SettingsActivity extends AppCompatActivity {
 
-    private EditText etSamplesPerSec, etPointsToAvg, etDurationOfExp, etMovingAvgValue;
+    private EditText etSamplesPerSec, etPointsToAvg, etDurationOfExp, etMovingAvgValue, etFilterChain;
     private CheckBox checkboxPort0, checkboxPort1, checkboxPort2, checkboxPort3;
+    private CheckBox checkboxStreaming;
+    private EditText etCalLot, etCalMinMv, etCalMaxMv, etCalIntercept, etCalSlope, etCalPower;
 
     private int samplesPerSecond, pointsToAverage, movingAvgValue;
     private double durationOfExp;
     private boolean[] analogPort = new boolean[4];
+    private boolean streamingMode;
+    private String filterChain;
+    private String device;          // selected sensor, null if none
+    private Calibration calibration; // its current curve
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,10 +41,18 @@ public class SettingsActivity extends AppCompatActivity {
         etPointsToAvg = findViewById(R.id.etPointsToAvg);
         etDurationOfExp = findViewById(R.id.etDurationOfExp);
         etMovingAvgValue = findViewById(R.id.etMovingAvgValue);
+        etFilterChain = findViewById(R.id.etFilterChain);
         checkboxPort0 = findViewById(R.id.checkboxPort0);
         checkboxPort1 = findViewById(R.id.checkboxPort1);
         checkboxPort2 = findViewById(R.id.checkboxPort2);
         checkboxPort3 = findViewById(R.id.checkboxPort3);
+        checkboxStreaming = findViewById(R.id.checkboxStreaming);
+        etCalLot = findViewById(R.id.etCalLot);
+        etCalMinMv = findViewById(R.id.etCalMinMv);
+        etCalMaxMv = findViewById(R.id.etCalMaxMv);
+        etCalIntercept = findViewById(R.id.etCalIntercept);
+        etCalSlope = findViewById(R.id.etCalSlope);
+        etCalPower = findViewById(R.id.etCalPower);
 
         // Get settings from the intent
         Intent intent = getIntent();
@@ -40,17 +61,39 @@ public class SettingsActivity extends AppCompatActivity {
         durationOfExp = intent.getDoubleExtra("duration", 600.0);
         analogPort = (boolean[]) intent.getSerializableExtra("analog_port");
         movingAvgValue = intent.getIntExtra("moving_avg_value", 4);
+        streamingMode = intent.getBooleanExtra("streaming", false);
+        filterChain = intent.getStringExtra("filter_chain");
+        device = intent.getStringExtra("device");
 
         // Set UI values from settings
         etSamplesPerSec.setText(String.valueOf(samplesPerSecond));
         etPointsToAvg.setText(String.valueOf(pointsToAverage));
         etDurationOfExp.setText(String.valueOf(durationOfExp));
         etMovingAvgValue.setText(String.valueOf(movingAvgValue));
+        etFilterChain.setText(filterChain != null ? filterChain : "");
 
         checkboxPort0.setChecked(analogPort[0]);
         checkboxPort1.setChecked(analogPort[1]);
         checkboxPort2.setChecked(analogPort[2]);
         checkboxPort3.setChecked(analogPort[3]);
+        checkboxStreaming.setChecked(streamingMode);
+
+        // The selected sensor's calibration curve can be edited here
+        if (device != null) {
+            calibration = CalibrationEngine.getInstance(this).forDevice(device).calibration();
+            findViewById(R.id.layoutCalibration).setVisibility(View.VISIBLE);
+            ((TextView) findViewById(R.id.tvCalibrationTitle)).setText("Sensor calibration (" + device + "):");
+            etCalLot.setText(calibration.lot);
+            etCalMinMv.setText(format(calibration.minMv));
+            etCalMaxMv.setText(format(calibration.maxMv));
+            etCalIntercept.setText(format(calibration.interceptMv));
+            etCalSlope.setText(format(calibration.slope));
+            etCalPower.setText(format(calibration.power));
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.4f", value);
     }
 
     public void onClickSave(View v) {
@@ -65,12 +108,51 @@ public class SettingsActivity extends AppCompatActivity {
             analogPort[1] = checkboxPort1.isChecked();
             analogPort[2] = checkboxPort2.isChecked();
             analogPort[3] = checkboxPort3.isChecked();
+            streamingMode = checkboxStreaming.isChecked();
+            filterChain = etFilterChain.getText().toString().trim();
 
             // Validate input
             if (samplesPerSecond <= 0 || pointsToAverage <= 0 || durationOfExp <= 0) {
                 Toast.makeText(this, "All values must be positive", Toast.LENGTH_SHORT).show();
                 return;
             }
+            if (samplesPerSecond > BurstPolling.MAX_SAMPLES_PER_SECOND) {
+                Toast.makeText(this, "Samples per second must be at most "
+                        + BurstPolling.MAX_SAMPLES_PER_SECOND, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            try {
+                FilterChain.parse(filterChain, samplesPerSecond);
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Calibration newCalibration = null;
+            if (device != null) {
+                String lot = etCalLot.getText().toString().trim();
+                double minMv = Double.parseDouble(etCalMinMv.getText().toString());
+                double maxMv = Double.parseDouble(etCalMaxMv.getText().toString());
+                double interceptMv = Double.parseDouble(etCalIntercept.getText().toString());
+                double slope = Double.parseDouble(etCalSlope.getText().toString());
+                double power = Double.parseDouble(etCalPower.getText().toString());
+                if (lot.isEmpty()) {
+                    Toast.makeText(this, "Please enter the sensor lot", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                try {
+                    newCalibration = new Calibration(lot, minMv, maxMv, interceptMv, slope, power);
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            }
+
+            // Fields shown with 4 decimals: only a real edit replaces the stored curve
+            boolean calibrationChanged = newCalibration != null
+                    && !describe(newCalibration).equals(describe(calibration));
+            if (calibrationChanged) {
+                CalibrationEngine.getInstance(this).store(device, newCalibration);
+            }
 
             // Return values to calling activity
             Intent returnIntent = new Intent();
@@ -79,6 +161,9 @@ public class SettingsActivity extends AppCompatActivity {
             returnIntent.putExtra("duration", durationOfExp);
             returnIntent.putExtra("analog_port", analogPort);
             returnIntent.putExtra("moving_avg_value", movingAvgValue);
+            returnIntent.putExtra("streaming", streamingMode);
+            returnIntent.putExtra("filter_chain", filterChain);
+            returnIntent.putExtra("calibration_changed", calibrationChanged);
             setResult(RESULT_OK, returnIntent);
             finish();
         } catch (NumberFormatException e) {
@@ -86,6 +171,11 @@ public class SettingsActivity extends AppCompatActivity {
         }
     }
 
+    private static String describe(Calibration c) {
+        return c.lot + "/" + format(c.minMv) + "/" + format(c.maxMv) + "/" + format(c.interceptMv)
+                + "/" + format(c.slope) + "/" + format(c.power);
+    }
+
     public void onClickCancel(View v) {
         setResult(RESULT_CANCELED);
         finish();
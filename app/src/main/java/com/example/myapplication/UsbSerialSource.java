@@ -0,0 +1,193 @@
+package com.example.myapplication;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.myapplication.acquisition.SampleSource;
+import com.felhr.usbserial.UsbSerialDevice;
+import com.felhr.usbserial.UsbSerialInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wired link to a sensor on a USB-CDC (or FTDI/CP210x/CH34x) serial adapter,
+ * using the UsbSerial library in synchronous mode so the same blocking
+ * {@link com.example.myapplication.acquisition.StreamReader} reads it.
+ *
+ * Opening asks the user for USB permission the first time and waits for the
+ * answer on the connection thread.
+ */
+public class UsbSerialSource implements SampleSource {
+    private static final String TAG = "UsbSerialSource";
+    private static final String ACTION_USB_PERMISSION = "com.example.myapplication.USB_PERMISSION";
+    private static final long PERMISSION_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_BAUD_RATE = 115200;
+
+    private final Context context;
+    private final UsbManager usbManager;
+    private final UsbDevice device;
+    private final int baudRate;
+
+    // Guarded by this
+    private UsbDeviceConnection connection;
+    private UsbSerialDevice serial;
+    private InputStream in;
+    private OutputStream out;
+    private CountDownLatch permissionWait;
+    private int closes = 0;
+
+    public UsbSerialSource(Context context, UsbManager usbManager, UsbDevice device, int baudRate) {
+        this.context = context.getApplicationContext();
+        this.usbManager = usbManager;
+        this.device = device;
+        this.baudRate = baudRate;
+    }
+
+    /** Attached USB devices UsbSerial has a driver for. */
+    public static List<UsbDevice> findDevices(UsbManager usbManager) {
+        List<UsbDevice> found = new ArrayList<>();
+        if (usbManager == null) {
+            return found;
+        }
+        for (UsbDevice device : usbManager.getDeviceList().values()) {
+            if (UsbSerialDevice.isSupported(device)) {
+                found.add(device);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String name() {
+        String product = device.getProductName();
+        return "USB: " + (product != null ? product : "Serial device") + " (" + device.getDeviceName() + ")";
+    }
+
+    @Override
+    public void open() throws IOException {
+        int closesBefore;
+        synchronized (this) {
+            closesBefore = closes;
+        }
+        if (!usbManager.hasPermission(device)) {
+            awaitPermission(closesBefore);
+        }
+
+        UsbDeviceConnection conn = usbManager.openDevice(device);
+        if (conn == null) {
+            throw new IOException("Cannot open " + device.getDeviceName());
+        }
+        UsbSerialDevice dev = UsbSerialDevice.createUsbSerialDevice(device, conn);
+        if (dev == null || !dev.syncOpen()) {
+            conn.close();
+            throw new IOException("No serial driver for " + device.getDeviceName());
+        }
+        dev.setBaudRate(baudRate);
+        dev.setDataBits(UsbSerialInterface.DATA_BITS_8);
+        dev.setStopBits(UsbSerialInterface.STOP_BITS_1);
+        dev.setParity(UsbSerialInterface.PARITY_NONE);
+        dev.setFlowControl(UsbSerialInterface.FLOW_CONTROL_OFF);
+
+        synchronized (this) {
+            if (closes != closesBefore) {
+                dev.syncClose();
+                conn.close();
+                throw new IOException("Link closed while connecting");
+            }
+            connection = conn;
+            serial = dev;
+            in = dev.getInputStream();
+            out = dev.getOutputStream();
+        }
+        Log.d(TAG, "Opened " + name() + " at " + baudRate + " baud");
+    }
+
+    @Override
+    public synchronized InputStream input() {
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream output() {
+        return out;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return serial != null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closes++;
+        if (permissionWait != null) {
+            permissionWait.countDown(); // abort a pending open
+        }
+        if (serial != null) {
+            serial.syncClose();
+            serial = null;
+        }
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+        in = null;
+        out = null;
+    }
+
+    // Shows the system permission dialog and blocks until the user answers
+    private void awaitPermission(int closesBefore) throws IOException {
+        CountDownLatch answered = new CountDownLatch(1);
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context c, Intent intent) {
+                answered.countDown();
+            }
+        };
+        synchronized (this) {
+            if (closes != closesBefore) {
+                throw new IOException("Link closed while connecting");
+            }
+            permissionWait = answered;
+        }
+        ContextCompat.registerReceiver(context, receiver, new IntentFilter(ACTION_USB_PERMISSION),
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        try {
+            // The system fills in the result extras, so the intent must stay mutable
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0;
+            Intent intent = new Intent(ACTION_USB_PERMISSION).setPackage(context.getPackageName());
+            usbManager.requestPermission(device, PendingIntent.getBroadcast(context, 0, intent, flags));
+            if (!answered.await(PERMISSION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No answer to USB permission request");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for USB permission");
+        } finally {
+            context.unregisterReceiver(receiver);
+            synchronized (this) {
+                permissionWait = null;
+            }
+        }
+        if (!usbManager.hasPermission(device)) {
+            throw new IOException("USB permission denied");
+        }
+    }
+}
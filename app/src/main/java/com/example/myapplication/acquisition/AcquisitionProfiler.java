@@ -0,0 +1,82 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Latency histograms for each stage of the acquisition path, from sending a
+ * poll to drawing the result. Stages are recorded on whichever thread runs
+ * them; the overlay and the export read them from the UI thread.
+ */
+public class AcquisitionProfiler {
+
+    public enum Stage {
+        /** Writing one command to the link, on the connection's writer thread. */
+        POLL_WRITE("poll write"),
+        /** Command written until the first byte of any reply arrives. */
+        FIRST_BYTE("first byte"),
+        /** Command written until the first frame after it is complete. */
+        FRAME("frame"),
+        /** Framer time per drain of the acquisition thread. */
+        PARSE("parse"),
+        /** Conversion, filters and storage for one sample. */
+        FILTER("filter"),
+        /** Snapshot published until the UI picks it up. */
+        PUBLISH("publish"),
+        /** One incremental graph update. */
+        DRAW("draw");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    public AcquisitionProfiler() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+    }
+
+    /** One line per stage with data: count, p50, p99 and max in milliseconds. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-10s %7s %7s %7s %7s",
+                "stage", "n", "p50", "p99", "max"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram h = histogram(stage);
+            if (h.count() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%n%-10s %7d %7.2f %7.2f %7.2f", stage.label, h.count(),
+                    h.percentileMicros(50) / 1000.0, h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    /** Raw histograms of every stage as CSV, bucket bounds in microseconds. */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("stage,low_us,high_us,count\n");
+        for (Stage stage : STAGES) {
+            histogram(stage).appendCsv(stage.name().toLowerCase(Locale.US), out);
+        }
+    }
+}
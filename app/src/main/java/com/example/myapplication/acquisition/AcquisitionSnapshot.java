@@ -0,0 +1,46 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Immutable view of the acquisition state handed from the pipeline thread to
+ * the UI.
+ *
+ * {@link #rows} is the number of complete rows in the session's
+ * {@link SampleStore} when the snapshot was taken. Rows below it are safe to
+ * read from the consumer thread (publication through a
+ * {@link SnapshotMailbox} orders the writes before the read). Rows below
+ * {@link #finalRows} will not be rewritten by the despiker any more.
+ */
+public final class AcquisitionSnapshot {
+
+    public final int rows;
+    public final int finalRows;
+    public final int dataSize;
+    public final double time;
+    public final double volts0;
+    public final double volts1;
+    public final double volts2;
+    public final double cortisol;
+    /** Session timing quality, see {@link TimingStats}. */
+    public final double jitterMs;
+    public final double driftMs;
+    public final long missed;
+    /** {@link System#nanoTime()} when the pipeline published it. */
+    public final long publishedNanos;
+
+    public AcquisitionSnapshot(int rows, int finalRows, int dataSize, double time,
+                               double volts0, double volts1, double volts2, double cortisol,
+                               double jitterMs, double driftMs, long missed, long publishedNanos) {
+        this.rows = rows;
+        this.finalRows = finalRows;
+        this.dataSize = dataSize;
+        this.time = time;
+        this.volts0 = volts0;
+        this.volts1 = volts1;
+        this.volts2 = volts2;
+        this.cortisol = cortisol;
+        this.jitterMs = jitterMs;
+        this.driftMs = driftMs;
+        this.missed = missed;
+        this.publishedNanos = publishedNanos;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for connection retries.
+ *
+ * The ceiling for attempt n is {@code baseMs * 2^(n-1)}, capped at
+ * {@code maxMs}; the delay is drawn uniformly from the upper half of that
+ * range, so retries spread out without ever dropping to zero.
+ */
+public class Backoff {
+
+    private final long baseMs;
+    private final long maxMs;
+    private final Random random;
+
+    public Backoff(long baseMs, long maxMs) {
+        this(baseMs, maxMs, new Random());
+    }
+
+    public Backoff(long baseMs, long maxMs, Random random) {
+        if (baseMs <= 0 || maxMs < baseMs) {
+            throw new IllegalArgumentException("Invalid backoff range " + baseMs + "-" + maxMs);
+        }
+        this.baseMs = baseMs;
+        this.maxMs = maxMs;
+        this.random = random;
+    }
+
+    /** Delay before retry number {@code attempt} (1 = first retry). */
+    public long delayMs(int attempt) {
+        int shift = Math.min(Math.max(attempt, 1) - 1, 30);
+        long ceiling = Math.min(maxMs, baseMs << shift);
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Second-order IIR section in transposed direct form II.
+ *
+ * {@link #lowPass} designs the RBJ cookbook low-pass; with the default Q it
+ * is a Butterworth response. The first sample initialises the state as if
+ * the input had always been at that level, so a channel does not ring up
+ * from zero when a session starts.
+ */
+public class Biquad implements SampleFilter {
+
+    public static final double BUTTERWORTH_Q = Math.sqrt(0.5);
+
+    private final double b0, b1, b2, a1, a2;
+    private final int settle;
+    private double z1, z2;
+    private boolean primed = false;
+
+    /** Coefficients normalised so that a0 = 1. */
+    public Biquad(double b0, double b1, double b2, double a1, double a2, int settle) {
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.settle = Math.max(1, settle);
+    }
+
+    public static Biquad lowPass(double sampleRate, double cutoff) {
+        return lowPass(sampleRate, cutoff, BUTTERWORTH_Q);
+    }
+
+    public static Biquad lowPass(double sampleRate, double cutoff, double q) {
+        if (!(cutoff > 0) || !(cutoff < sampleRate / 2) || !(q > 0)) {
+            throw new IllegalArgumentException("Low-pass cutoff must be between 0 and "
+                    + sampleRate / 2 + " Hz: " + cutoff);
+        }
+        double w0 = 2 * Math.PI * cutoff / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        double a0 = 1 + alpha;
+        double b = (1 - cos) / 2 / a0;
+        // About six time constants of the pole pair
+        int settle = (int) Math.ceil(sampleRate / cutoff);
+        return new Biquad(b, 2 * b, b, -2 * cos / a0, (1 - alpha) / a0, settle);
+    }
+
+    @Override
+    public double add(double x) {
+        if (!primed) {
+            double y = x * (b0 + b1 + b2) / (1 + a1 + a2);
+            z2 = b2 * x - a2 * y;
+            z1 = y - b0 * x;
+            primed = true;
+        }
+        double y = b0 * x + z1;
+        z1 = b1 * x - a1 * y + z2;
+        z2 = b2 * x - a2 * y;
+        return y;
+    }
+
+    @Override
+    public int window() {
+        return settle;
+    }
+
+    @Override
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+        primed = false;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.myapplication.acquisition;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poll schedule for a requested sample rate.
+ *
+ * One request per sample costs a full link round trip, which caps plain
+ * polling at a few tens of Hz. Above {@link #MAX_POLL_HZ} each request
+ * ({@code B<k>\r}) asks the device for k samples at once, answered with one
+ * burst frame, so the request rate stays at or below {@link #MAX_POLL_HZ}
+ * while the sample rate goes up to {@code MAX_POLL_HZ * PacketFramer.MAX_BURST}.
+ * At or below it the plain single-sample command is used, so older firmware
+ * keeps working at the rates it always supported.
+ */
+public final class BurstPolling {
+
+    public static final int MAX_POLL_HZ = 20;
+    public static final int MAX_SAMPLES_PER_SECOND = MAX_POLL_HZ * PacketFramer.MAX_BURST;
+
+    public static final String CMD_SAMPLE = "0\r";
+
+    /** Samples asked for per request. */
+    public final int samplesPerRequest;
+    /** Time between requests. */
+    public final long intervalMicros;
+
+    public BurstPolling(int samplesPerSecond) {
+        if (samplesPerSecond <= 0 || samplesPerSecond > MAX_SAMPLES_PER_SECOND) {
+            throw new IllegalArgumentException("samplesPerSecond must be in 1.." + MAX_SAMPLES_PER_SECOND);
+        }
+        samplesPerRequest = (samplesPerSecond + MAX_POLL_HZ - 1) / MAX_POLL_HZ;
+        intervalMicros = TimeUnit.SECONDS.toMicros(samplesPerRequest) / samplesPerSecond;
+    }
+
+    public String command() {
+        return samplesPerRequest == 1 ? CMD_SAMPLE : "B" + samplesPerRequest + "\r";
+    }
+}
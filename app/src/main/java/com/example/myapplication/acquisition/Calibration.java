@@ -0,0 +1,71 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Locale;
+
+/**
+ * Coefficients of one sensor lot's calibration curve from port 1 millivolts
+ * to cortisol in ng/mL:
+ *
+ * <pre>cortisol = ((mv - interceptMv) / slope) ^ (1 / power),  minMv &lt;= mv &lt;= maxMv</pre>
+ *
+ * Immutable; equal coefficient sets share one {@link CalibrationTable}.
+ */
+public final class Calibration {
+
+    /** The curve every sensor used before per-device sets existed. */
+    public static final Calibration DEFAULT =
+            new Calibration("default", 428.0, 478.6686, 482.9265, -4.2579, 0.5553);
+
+    public final String lot;
+    public final double minMv;
+    public final double maxMv;
+    public final double interceptMv;
+    public final double slope;
+    public final double power;
+
+    public Calibration(String lot, double minMv, double maxMv, double interceptMv, double slope, double power) {
+        if (!(minMv < maxMv) || slope == 0 || !(power > 0)) {
+            throw new IllegalArgumentException("Invalid calibration for lot " + lot);
+        }
+        this.lot = lot;
+        this.minMv = minMv;
+        this.maxMv = maxMv;
+        this.interceptMv = interceptMv;
+        this.slope = slope;
+        this.power = power;
+    }
+
+    public boolean inRange(double mv) {
+        return mv >= minMv && mv <= maxMv;
+    }
+
+    /** The exact curve at {@code mv}, without the range check. */
+    public double evaluate(double mv) {
+        return Math.pow((mv - interceptMv) / slope, 1.0 / power);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Calibration)) return false;
+        Calibration c = (Calibration) o;
+        return lot.equals(c.lot) && minMv == c.minMv && maxMv == c.maxMv
+                && interceptMv == c.interceptMv && slope == c.slope && power == c.power;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = lot.hashCode();
+        h = 31 * h + Double.hashCode(minMv);
+        h = 31 * h + Double.hashCode(maxMv);
+        h = 31 * h + Double.hashCode(interceptMv);
+        h = 31 * h + Double.hashCode(slope);
+        return 31 * h + Double.hashCode(power);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s [%.4f..%.4f mV] ((mv - %.4f) / %.4f)^(1/%.4f)",
+                lot, minMv, maxMv, interceptMv, slope, power);
+    }
+}
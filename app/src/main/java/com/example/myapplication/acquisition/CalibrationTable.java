@@ -0,0 +1,86 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Dense lookup table of one {@link Calibration} curve over its valid range.
+ *
+ * The curve is evaluated once per grid point when the table is built;
+ * conversions then cost a multiply, a truncation and a linear interpolation
+ * instead of a {@link Math#pow}. At the default 0.01 mV grid the table holds
+ * about 5k points and stays within 1e-5 of the exact curve. Immutable and
+ * safe to share between threads.
+ */
+public final class CalibrationTable {
+
+    /** Returned for voltages outside the calibrated range. */
+    public static final double INVALID = -1.0;
+
+    public static final double DEFAULT_STEP_MV = 0.01;
+
+    private final Calibration calibration;
+    private final double minMv;
+    private final double maxMv;
+    private final double pointsPerMv;
+    private final double[] values;
+
+    public CalibrationTable(Calibration calibration) {
+        this(calibration, DEFAULT_STEP_MV);
+    }
+
+    public CalibrationTable(Calibration calibration, double stepMv) {
+        if (!(stepMv > 0)) {
+            throw new IllegalArgumentException("stepMv must be positive");
+        }
+        this.calibration = calibration;
+        minMv = calibration.minMv;
+        maxMv = calibration.maxMv;
+        int intervals = Math.max(1, (int) Math.ceil((maxMv - minMv) / stepMv));
+        pointsPerMv = intervals / (maxMv - minMv);
+        values = new double[intervals + 1];
+        for (int i = 0; i < intervals; i++) {
+            values[i] = calibration.evaluate(minMv + i / pointsPerMv);
+        }
+        values[intervals] = calibration.evaluate(maxMv);
+    }
+
+    public Calibration calibration() {
+        return calibration;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean inRange(double mv) {
+        return mv >= minMv && mv <= maxMv;
+    }
+
+    /** Cortisol in ng/mL for a port 1 reading in millivolts, or {@link #INVALID}. */
+    public double cortisolAtMillivolts(double mv) {
+        if (!(mv >= minMv && mv <= maxMv)) {
+            return INVALID; // also NaN
+        }
+        double pos = (mv - minMv) * pointsPerMv;
+        int i = (int) pos;
+        if (i >= values.length - 1) {
+            return values[values.length - 1];
+        }
+        double lo = values[i];
+        return lo + (values[i + 1] - lo) * (pos - i);
+    }
+
+    /** Cortisol in ng/mL for a port 1 reading in volts, or {@link #INVALID}. */
+    public double cortisol(double volts) {
+        return cortisolAtMillivolts(volts * 1000.0);
+    }
+
+    /** Converts {@code volts} into {@code out}, which must be at least as long. */
+    public void convert(double[] volts, double[] out) {
+        convert(volts, 0, out, 0, volts.length);
+    }
+
+    public void convert(double[] volts, int from, double[] out, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = cortisolAtMillivolts(volts[from + i] * 1000.0);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Dedicated writer for one sensor connection, the counterpart of
+ * {@link StreamReader}.
+ *
+ * The thread is the only one that touches the link's output stream. Other
+ * threads hand it commands through a bounded queue and never wait on the
+ * socket: {@link #offer} returns at once, and a slow or stuck write only
+ * delays later commands, never the poll timer, the reader or reconnect logic.
+ * There is exactly one writer per connection; it ends on the first write
+ * failure or on {@link #shutdown()}.
+ */
+public class CommandWriter extends Thread {
+
+    public interface Listener {
+        /** Called on the writer thread after a command was written and flushed. */
+        default void onWritten(byte[] command, long startedNanos, long finishedNanos) {
+        }
+
+        /** Called once when a write fails. */
+        void onWriteFailed(IOException cause);
+    }
+
+    private static final byte[] STOP = new byte[0];
+
+    private final OutputStream out;
+    private final Listener listener;
+    private final LongSupplier clock;
+    private final int capacity;
+    private final BlockingQueue<byte[]> queue;
+    private volatile boolean running = true;
+
+    public CommandWriter(OutputStream out, int capacity, Listener listener) {
+        this(out, capacity, listener, System::nanoTime);
+    }
+
+    public CommandWriter(OutputStream out, int capacity, Listener listener, LongSupplier clock) {
+        super("CommandWriter");
+        this.out = out;
+        this.listener = listener;
+        this.clock = clock;
+        this.capacity = capacity;
+        // One spare slot so shutdown can always wake the thread
+        this.queue = new ArrayBlockingQueue<>(capacity + 1);
+        setDaemon(true);
+    }
+
+    /**
+     * Queues a command without blocking.
+     *
+     * @return false if the writer has stopped or {@code capacity} commands
+     * are already waiting
+     */
+    public boolean offer(byte[] command) {
+        return running && queue.size() < capacity && queue.offer(command);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                byte[] command = queue.take();
+                if (command == STOP || !running) {
+                    break;
+                }
+                long started = clock.getAsLong();
+                out.write(command);
+                out.flush();
+                listener.onWritten(command, started, clock.getAsLong());
+            }
+        } catch (IOException e) {
+            if (running) {
+                running = false;
+                listener.onWriteFailed(e);
+            }
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    /**
+     * Drops queued commands and stops the thread. A write already in
+     * progress ends when the underlying stream is closed.
+     */
+    public void shutdown() {
+        running = false;
+        queue.clear();
+        if (!queue.offer(STOP)) {
+            interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+}
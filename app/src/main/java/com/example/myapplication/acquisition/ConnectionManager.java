@@ -0,0 +1,205 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection state machine for the sensor link.
+ *
+ * <pre>
+ *   IDLE       --connect()---&gt; CONNECTING
+ *   CONNECTING --opened------&gt; CONNECTED
+ *   CONNECTING --failed------&gt; BACKOFF, or IDLE after the last attempt
+ *   CONNECTED  --linkLost()--&gt; BACKOFF
+ *   BACKOFF    --delay-------&gt; CONNECTING
+ *   any        --disconnect()-&gt; IDLE
+ * </pre>
+ *
+ * Every transition, and every blocking {@link Link#open()}, runs on one
+ * connection thread, so there is never more than one attempt in flight and no
+ * flags to coordinate. Failed attempts are retried after a jittered
+ * exponential {@link Backoff}; after the attempt limit the machine returns to
+ * IDLE and reports the failure. The time from losing the link to having it
+ * back is measured and reported with the reconnect.
+ *
+ * {@link #connect()} and {@link #disconnect()} are user intents: each one
+ * supersedes whatever is pending, and disconnect also aborts an open in
+ * progress by closing the link from the calling thread.
+ */
+public class ConnectionManager {
+
+    public enum State { IDLE, CONNECTING, CONNECTED, BACKOFF }
+
+    /** The transport being managed. */
+    public interface Link {
+        /** Opens the link, blocking until it is usable. Runs on the connection thread. */
+        void open() throws IOException;
+
+        /** Closes the link. May be called from any thread and when already closed. */
+        void close();
+    }
+
+    /** Callbacks, all on the connection thread. */
+    public interface Listener {
+        void onStateChanged(State state, int attempt, long delayMs);
+
+        /**
+         * @param reconnected true if the link came back after {@link #linkLost}
+         * @param downMs      time the link was down, or -1 for a first connect
+         */
+        void onConnected(boolean reconnected, long downMs);
+
+        void onFailed(int attempts, IOException cause);
+    }
+
+    private final Link link;
+    private final Backoff backoff;
+    private final int connectAttempts;
+    private final int reconnectAttempts;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+
+    // Bumped by every user intent; tasks from an older intent do nothing
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile State state = State.IDLE;
+    // Connection thread only
+    private int attempt = 0;
+    private long downSince = -1;
+    private ScheduledFuture<?> pending;
+
+    public ConnectionManager(Link link, Backoff backoff, int connectAttempts,
+                             int reconnectAttempts, Listener listener) {
+        this.link = link;
+        this.backoff = backoff;
+        this.connectAttempts = connectAttempts;
+        this.reconnectAttempts = reconnectAttempts;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Connection");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    /** Connects unless already connected; restarts the attempts if retrying. */
+    public void connect() {
+        int gen = generation.incrementAndGet();
+        post(() -> {
+            cancelPending();
+            if (state == State.CONNECTED) {
+                return;
+            }
+            attempt = 0;
+            downSince = -1;
+            tryOpen(gen);
+        });
+    }
+
+    /** Reports that a connected link stopped working; reconnects with backoff. */
+    public void linkLost() {
+        post(() -> {
+            if (state != State.CONNECTED) {
+                return; // already being handled
+            }
+            link.close();
+            attempt = 0;
+            downSince = System.nanoTime();
+            scheduleRetry(generation.get());
+        });
+    }
+
+    /** Closes the link and stops any retries. */
+    public void disconnect() {
+        generation.incrementAndGet();
+        link.close(); // aborts a blocking open
+        post(() -> {
+            cancelPending();
+            link.close();
+            downSince = -1;
+            setState(State.IDLE, 0, 0);
+        });
+    }
+
+    /** Disconnects and stops the connection thread. */
+    public void shutdown() {
+        disconnect();
+        executor.shutdown();
+    }
+
+    // Events arriving after shutdown (e.g. a reader noticing the closed link) are dropped
+    private void post(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    private void tryOpen(int gen) {
+        if (gen != generation.get()) {
+            return;
+        }
+        attempt++;
+        setState(State.CONNECTING, attempt, 0);
+        try {
+            link.open();
+        } catch (IOException e) {
+            link.close();
+            if (gen != generation.get()) {
+                return; // cancelled while opening
+            }
+            int limit = downSince >= 0 ? reconnectAttempts : connectAttempts;
+            if (attempt >= limit) {
+                setState(State.IDLE, attempt, 0);
+                listener.onFailed(attempt, e);
+            } else {
+                scheduleRetry(gen);
+            }
+            return;
+        }
+        if (gen != generation.get()) {
+            link.close();
+            return;
+        }
+        boolean reconnected = downSince >= 0;
+        long downMs = reconnected ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - downSince) : -1;
+        downSince = -1;
+        setState(State.CONNECTED, attempt, 0);
+        listener.onConnected(reconnected, downMs);
+    }
+
+    private void scheduleRetry(int gen) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long delay = backoff.delayMs(attempt + 1);
+        setState(State.BACKOFF, attempt, delay);
+        pending = executor.schedule(() -> tryOpen(gen), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private void setState(State next, int attempt, long delayMs) {
+        state = next;
+        listener.onStateChanged(next, attempt, delayMs);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes session columns as CSV rows ({@code \n<row>,<col0>,<col1>,...},
+ * rows numbered from 1) without building a String per row.
+ *
+ * Numbers are formatted straight into a reusable byte buffer, which goes to
+ * the channel in {@link #BUFFER_BYTES} writes. Values are written rounded to
+ * {@link #DECIMALS} decimals with trailing zeros dropped (at least one digit
+ * after the point), i.e. to the microvolt and microsecond. One instance per
+ * export; {@link #cancel} may be called from any thread and stops it at the
+ * next buffer flush.
+ */
+public class CsvExporter {
+
+    public static final int BUFFER_BYTES = 256 * 1024;
+    public static final int DECIMALS = 6;
+
+    private static final long SCALE = 1_000_000L; // 10^DECIMALS
+    // Larger magnitudes do not fit the scaled long; they fall back to Double.toString
+    private static final double MAX_FIXED = 9e12;
+    // Longest row field: sign, 13 integer digits, point, decimals, separator
+    private static final int MAX_FIELD = 24;
+
+    public interface Progress {
+        /** Called on the exporting thread after each buffer flush. */
+        void onProgress(int rowsWritten, int totalRows);
+    }
+
+    private final Progress progress;
+    private final byte[] buf = new byte[BUFFER_BYTES];
+    private final ByteBuffer out = ByteBuffer.wrap(buf);
+    private volatile boolean cancelled = false;
+    private int pos = 0;
+
+    public CsvExporter(Progress progress) {
+        this.progress = progress;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Writes {@code preamble} and then {@code rows} rows of the columns.
+     *
+     * @return bytes written
+     * @throws CancellationException if {@link #cancel} was called; the channel
+     *                               then holds a partial file
+     */
+    public long export(WritableByteChannel channel, String preamble, int rows, DoubleColumn... columns)
+            throws IOException {
+        long written = 0;
+        pos = 0;
+        byte[] head = preamble.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < head.length; i += buf.length) {
+            int n = Math.min(buf.length, head.length - i);
+            System.arraycopy(head, i, buf, 0, n);
+            pos = n;
+            written += flush(channel);
+        }
+
+        int rowBytes = (columns.length + 1) * MAX_FIELD + 1;
+        for (int row = 0; row < rows; row++) {
+            if (pos + rowBytes > buf.length) {
+                written += flush(channel);
+                report(row, rows);
+            }
+            buf[pos++] = '\n';
+            pos = appendLong(row + 1L, pos);
+            for (DoubleColumn c : columns) {
+                buf[pos++] = ',';
+                appendDouble(c.get(row));
+            }
+        }
+        written += flush(channel);
+        report(rows, rows);
+        return written;
+    }
+
+    private long flush(WritableByteChannel channel) throws IOException {
+        if (cancelled) {
+            throw new CancellationException("Export cancelled");
+        }
+        out.clear();
+        out.limit(pos);
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        int n = pos;
+        pos = 0;
+        return n;
+    }
+
+    private void report(int done, int total) {
+        if (progress != null) {
+            progress.onProgress(done, total);
+        }
+    }
+
+    // Fixed point with trailing zeros dropped, e.g. 0.45, -1.000002, 12.0
+    private void appendDouble(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= MAX_FIXED) {
+            String s = Double.toString(v);
+            for (int i = 0; i < s.length(); i++) {
+                buf[pos++] = (byte) s.charAt(i);
+            }
+            return;
+        }
+        long scaled = Math.round(v * SCALE);
+        if (scaled < 0) {
+            buf[pos++] = '-';
+            scaled = -scaled;
+        }
+        pos = appendLong(scaled / SCALE, pos);
+        buf[pos++] = '.';
+        long frac = scaled % SCALE;
+        int digits = DECIMALS;
+        while (digits > 1 && frac % 10 == 0) {
+            frac /= 10;
+            digits--;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + frac % 10);
+            frac /= 10;
+        }
+        pos += digits;
+    }
+
+    // Non-negative decimal integer at p; returns the position after it
+    private int appendLong(long v, int p) {
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        for (int i = p + digits - 1; i >= p; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return p + digits;
+    }
+}
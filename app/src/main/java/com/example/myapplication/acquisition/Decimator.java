@@ -0,0 +1,89 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size downsampled overview of an unbounded series.
+ *
+ * Points are averaged into at most {@code maxPoints} bins. When every bin is
+ * used, neighbouring bins are merged pairwise and the bin width doubles, so
+ * the overview always spans the whole series with between half and all of
+ * its bins, and adding a point is O(1) amortised.
+ */
+public class Decimator {
+
+    private final double[] xSum;
+    private final double[] ySum;
+    private final int[] counts;
+    private int binWidth = 1;
+    private int bins = 0;          // completed bins
+    private int pending = 0;       // points in the open bin (index bins)
+
+    /**
+     * @param maxPoints number of bins, rounded up to an even number
+     */
+    public Decimator(int maxPoints) {
+        int n = Math.max(2, maxPoints + (maxPoints & 1));
+        xSum = new double[n];
+        ySum = new double[n];
+        counts = new int[n];
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @return true if a bin was completed, i.e. the overview changed
+     */
+    public boolean add(double x, double y) {
+        xSum[bins] += x;
+        ySum[bins] += y;
+        counts[bins]++;
+        if (++pending < binWidth) {
+            return false;
+        }
+        pending = 0;
+        if (++bins == xSum.length) {
+            merge();
+        }
+        return true;
+    }
+
+    /** Number of completed bins available from {@link #x} and {@link #y}. */
+    public int size() {
+        return bins;
+    }
+
+    public double x(int bin) {
+        return xSum[bin] / counts[bin];
+    }
+
+    public double y(int bin) {
+        return ySum[bin] / counts[bin];
+    }
+
+    public void clear() {
+        Arrays.fill(xSum, 0.0);
+        Arrays.fill(ySum, 0.0);
+        Arrays.fill(counts, 0);
+        binWidth = 1;
+        bins = 0;
+        pending = 0;
+    }
+
+    // Halves the number of bins; the slots freed at the top are zeroed for reuse
+    private void merge() {
+        int half = bins / 2;
+        for (int i = 0; i < half; i++) {
+            xSum[i] = xSum[2 * i] + xSum[2 * i + 1];
+            ySum[i] = ySum[2 * i] + ySum[2 * i + 1];
+            counts[i] = counts[2 * i] + counts[2 * i + 1];
+        }
+        for (int i = half; i < xSum.length; i++) {
+            xSum[i] = 0.0;
+            ySum[i] = 0.0;
+            counts[i] = 0;
+        }
+        bins = half;
+        binWidth *= 2;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Streaming version of the 1/2/3-point outlier removal that
+ * {@code OutputBluetooth.cleanGraph} used to run over the whole history on
+ * every sample.
+ *
+ * After each append only the outlier checks that the new sample completes are
+ * run, i.e. the cleanGraph loop for the last three centre positions. A spike
+ * is a run of one to three samples that sits more than {@link #THRESHOLD}
+ * above (or below) both neighbours; it is replaced by the mean of the
+ * neighbours, exactly as before. The edits reach back at most
+ * {@link #LOOKAHEAD} samples, so everything before that is final and is
+ * never rewritten again.
+ */
+public class Despiker {
+
+    public static final double THRESHOLD = 0.01; // V
+    public static final int LOOKAHEAD = 4;
+
+    private final DoubleColumn column;
+
+    public Despiker(DoubleColumn column) {
+        this.column = column;
+    }
+
+    /**
+     * Cleans the tail after a value was appended to the column.
+     *
+     * @return number of leading values that are now final
+     */
+    public int update() {
+        int size = column.size();
+        for (int a = Math.max(1, size - LOOKAHEAD); a < size - 1; a++) {
+            despikeAt(a, size);
+        }
+        return finalCount();
+    }
+
+    /** Values below this index will not change any more. */
+    public int finalCount() {
+        return Math.max(0, column.size() - LOOKAHEAD);
+    }
+
+    private void despikeAt(int a, int size) {
+        DoubleColumn c = column;
+        // Single outlier
+        double prev = c.get(a - 1);
+        double cur = c.get(a);
+        double next = c.get(a + 1);
+        if ((cur - prev > THRESHOLD && cur - next > THRESHOLD) ||
+                (prev - cur > THRESHOLD && next - cur > THRESHOLD)) {
+            c.set(a, (prev + next) / 2);
+        }
+        // Two-point outlier
+        if (a < size - 2) {
+            double right = c.get(a + 2);
+            double avg2 = (c.get(a) + c.get(a + 1)) / 2;
+            if ((avg2 - prev > THRESHOLD && avg2 - right > THRESHOLD) ||
+                    (prev - avg2 > THRESHOLD && right - avg2 > THRESHOLD)) {
+                double fill = (prev + right) / 2;
+                c.set(a, fill);
+                c.set(a + 1, fill);
+            }
+        }
+        // Three-point outlier
+        if (a < size - 3) {
+            double right = c.get(a + 3);
+            double avg3 = (c.get(a) + c.get(a + 1) + c.get(a + 2)) / 3;
+            if ((avg3 - prev > THRESHOLD && avg3 - right > THRESHOLD) ||
+                    (prev - avg3 > THRESHOLD && right - avg3 > THRESHOLD)) {
+                double fill = (prev + right) / 2;
+                c.set(a, fill);
+                c.set(a + 1, fill);
+                c.set(a + 2, fill);
+            }
+        }
+    }
+}
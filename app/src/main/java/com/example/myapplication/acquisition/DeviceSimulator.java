@@ -0,0 +1,402 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the HC-05 sensor board, connected through a pair of
+ * in-memory pipes.
+ *
+ * It speaks the device's command set: {@code R\r} resets (and answers with a
+ * short non-frame banner, like the board), {@code 0\r} returns one
+ * {@code #a:b:cp} frame, {@code B<k>\r} returns a burst frame of k samples
+ * ({@link BurstPolling}), {@code S\r} starts streaming frames at
+ * {@link Config#sampleRateHz} and {@code X\r} stops. Each write on the device
+ * side arrives as one chunk on the host side, so split frames really are
+ * read in pieces.
+ *
+ * Link faults are configurable: timing jitter, dropped bytes, frames split
+ * across writes and disconnects. Everything random comes from
+ * {@link Config#seed}, so a run is repeatable apart from thread timing.
+ */
+public class DeviceSimulator implements SampleSource {
+
+    /** Raw ADC reading of {@code channel} for frame number {@code n} (0-based). */
+    public interface Waveform {
+        int sample(long n, int channel);
+    }
+
+    /** Slow sine around the sensor's working point plus a little noise, per channel. */
+    public static final Waveform DEFAULT_WAVEFORM = (n, channel) ->
+            2900 + (int) (Math.sin(n / 250.0 + channel) * 200) + (int) ((n * 31 + channel * 17) % 40);
+
+    public static class Config {
+        /** Frame rate while streaming. */
+        public double sampleRateHz = 5.0;
+        /** Each frame is delayed by up to this much, uniformly. */
+        public long jitterMicros = 0;
+        /** Probability that any one frame byte is lost. */
+        public double byteDropRate = 0.0;
+        /** Probability that a frame is written in two pieces. */
+        public double splitRate = 0.0;
+        /** Disconnect after this many frames on one connection; 0 = never. */
+        public long disconnectAfterFrames = 0;
+        /** Append a sequence number field to each frame, as newer firmware does. */
+        public boolean sequenceNumbers = false;
+        public Waveform waveform = DEFAULT_WAVEFORM;
+        public long seed = 1;
+    }
+
+    private static final byte[] RESET_BANNER = "OK\r\n".getBytes();
+
+    private final Config config;
+    private final Random random;
+
+    // Guarded by this
+    private Pipe toHost;
+    private Pipe toDevice;
+    private Thread device;
+
+    // Device thread only
+    private boolean streaming = false;
+    private long frameNumber = 0;
+
+    private volatile long framesSent = 0;
+    private volatile long samplesSent = 0;
+    private volatile long bytesDropped = 0;
+    private volatile int disconnects = 0;
+
+    public DeviceSimulator(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    @Override
+    public String name() {
+        return "Simulated sensor (" + config.sampleRateHz + " Hz)";
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (device != null && !toHost.isClosed()) {
+            throw new IOException("Simulator already open");
+        }
+        Pipe up = new Pipe();
+        Pipe down = new Pipe();
+        toHost = up;
+        toDevice = down;
+        device = new Thread(() -> run(up, down), "DeviceSimulator");
+        device.setDaemon(true);
+        device.start();
+    }
+
+    @Override
+    public synchronized InputStream input() {
+        return toHost != null ? toHost.input : null;
+    }
+
+    @Override
+    public synchronized OutputStream output() {
+        return toDevice != null ? toDevice.output : null;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return device != null && !toHost.isClosed();
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            t = device;
+            if (t == null) {
+                return;
+            }
+            toHost.close();
+            toDevice.close();
+            device = null;
+        }
+        try {
+            t.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Drops the link from the device side, as if the board lost power or range. */
+    public synchronized void disconnect() {
+        if (toHost != null) {
+            disconnects++;
+            toHost.close();
+            toDevice.close();
+        }
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getSamplesSent() {
+        return samplesSent;
+    }
+
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    public int getDisconnects() {
+        return disconnects;
+    }
+
+    //————————————————————————————
+    // Device thread
+    //————————————————————————————
+
+    private void run(Pipe up, Pipe down) {
+        StringBuilder command = new StringBuilder();
+        byte[] buffer = new byte[64];
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.sampleRateHz);
+        long nextFrame = System.nanoTime();
+        long framesThisLink = 0;
+        streaming = false;
+        try {
+            while (true) {
+                long wait = streaming ? Math.max(0, nextFrame - System.nanoTime()) : Long.MAX_VALUE;
+                int n = down.read(buffer, 0, buffer.length, wait);
+                if (n < 0) {
+                    return; // host closed the link
+                }
+                for (int i = 0; i < n; i++) {
+                    char c = (char) buffer[i];
+                    if (c != '\r') {
+                        command.append(c);
+                        continue;
+                    }
+                    String cmd = command.toString().trim();
+                    command.setLength(0);
+                    switch (cmd) {
+                        case "R":
+                            streaming = false;
+                            up.write(RESET_BANNER, 0, RESET_BANNER.length);
+                            break;
+                        case "0":
+                            sendFrame(up, 1);
+                            framesThisLink++;
+                            break;
+                        case "S":
+                            streaming = true;
+                            nextFrame = System.nanoTime();
+                            break;
+                        case "X":
+                            streaming = false;
+                            break;
+                        default:
+                            int burst = parseBurst(cmd);
+                            if (burst > 0) {
+                                sendFrame(up, burst);
+                                framesThisLink++;
+                            }
+                            break; // anything else is ignored by the board
+                    }
+                }
+                if (streaming && System.nanoTime() >= nextFrame) {
+                    sendFrame(up, 1);
+                    framesThisLink++;
+                    nextFrame += periodNanos;
+                }
+                if (config.disconnectAfterFrames > 0 && framesThisLink >= config.disconnectAfterFrames) {
+                    disconnect();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Link closed under us
+        }
+    }
+
+    // "B<k>" with 1 <= k <= MAX_BURST, else 0
+    private static int parseBurst(String cmd) {
+        if (cmd.length() < 2 || cmd.charAt(0) != 'B') {
+            return 0;
+        }
+        try {
+            int k = Integer.parseInt(cmd.substring(1));
+            return k >= 1 && k <= PacketFramer.MAX_BURST ? k : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void sendFrame(Pipe up, int samples) throws IOException {
+        if (config.jitterMicros > 0) {
+            long delay = (long) (random.nextDouble() * config.jitterMicros);
+            sleepMicros(delay);
+        }
+        StringBuilder text = new StringBuilder("#");
+        for (int i = 0; i < samples; i++) {
+            long n = frameNumber++;
+            text.append(i == 0 ? "" : ";")
+                    .append(config.waveform.sample(n, 0)).append(':')
+                    .append(config.waveform.sample(n, 1)).append(':')
+                    .append(config.waveform.sample(n, 2));
+            if (config.sequenceNumbers) {
+                text.append(':').append(n % 100000);
+            }
+        }
+        byte[] frame = text.append('p').toString().getBytes();
+
+        if (config.byteDropRate > 0) {
+            int kept = 0;
+            for (byte b : frame) {
+                if (random.nextDouble() < config.byteDropRate) {
+                    bytesDropped++;
+                } else {
+                    frame[kept++] = b;
+                }
+            }
+            frame = Arrays.copyOf(frame, kept);
+        }
+
+        if (frame.length > 1 && random.nextDouble() < config.splitRate) {
+            int cut = 1 + random.nextInt(frame.length - 1);
+            up.write(frame, 0, cut);
+            up.write(frame, cut, frame.length - cut);
+        } else {
+            up.write(frame, 0, frame.length);
+        }
+        framesSent++;
+        samplesSent += samples;
+    }
+
+    private static void sleepMicros(long micros) {
+        long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+
+    //————————————————————————————
+    // Loopback pipe
+    //————————————————————————————
+
+    // One direction of the link. Each write is delivered as its own chunk (a read
+    // never spans two writes), like packets from the radio. Closing drops
+    // whatever is still queued: the link is gone.
+    private static final class Pipe {
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private int headOffset = 0;
+        private boolean closed = false;
+
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int n = read(one, 0, 1);
+                return n < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len, Long.MAX_VALUE);
+            }
+
+            @Override
+            public int available() {
+                return Pipe.this.available();
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                Pipe.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Link closed");
+            }
+            if (len > 0) {
+                chunks.add(Arrays.copyOfRange(b, off, off + len));
+                notifyAll();
+            }
+        }
+
+        /**
+         * @return bytes read, 0 if {@code timeoutNanos} passed without data, or
+         * -1 once the pipe is closed
+         */
+        synchronized int read(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+            long deadline = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+            while (chunks.isEmpty() && !closed) {
+                long left = deadline == Long.MAX_VALUE ? 0 : deadline - System.nanoTime();
+                if (deadline != Long.MAX_VALUE && left <= 0) {
+                    return 0;
+                }
+                try {
+                    if (deadline == Long.MAX_VALUE) {
+                        wait();
+                    } else {
+                        TimeUnit.NANOSECONDS.timedWait(this, left);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            if (closed) {
+                return -1;
+            }
+            byte[] head = chunks.peek();
+            int n = Math.min(len, head.length - headOffset);
+            System.arraycopy(head, headOffset, b, off, n);
+            headOffset += n;
+            if (headOffset == head.length) {
+                chunks.poll();
+                headOffset = 0;
+            }
+            return n;
+        }
+
+        synchronized int available() {
+            int total = -headOffset;
+            for (byte[] chunk : chunks) {
+                total += chunk.length;
+            }
+            return Math.max(total, 0);
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void close() {
+            closed = true;
+            chunks.clear();
+            headOffset = 0;
+            notifyAll();
+        }
+    }
+}
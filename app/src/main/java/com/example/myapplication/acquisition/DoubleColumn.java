@@ -0,0 +1,137 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Arrays;
+
+/**
+ * Growable column of primitive doubles stored in fixed-size chunks.
+ *
+ * Growing never copies existing values: a full chunk is simply followed by a
+ * new one, and only the small chunk directory is ever resized. Reads and
+ * writes are plain array accesses with no boxing.
+ */
+public class DoubleColumn {
+
+    private static final int CHUNK_SHIFT = 12;               // 4096 values (32 KB) per chunk
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private double[][] chunks = new double[4][];
+    private int size = 0;
+
+    public void add(double value) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new double[CHUNK_SIZE];
+        }
+        chunks[chunk][size & CHUNK_MASK] = value;
+        size++;
+    }
+
+    public double get(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public void set(int index, double value) {
+        checkIndex(index);
+        chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = value;
+    }
+
+    public double last() {
+        return get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Forgets all values but keeps the allocated chunks for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Bulk copy of {@code [from, to)} into {@code dst}, one
+     * {@link System#arraycopy} per chunk touched.
+     */
+    public void copyTo(int from, int to, double[] dst, int dstOffset) {
+        checkRange(from, to);
+        int i = from;
+        while (i < to) {
+            int offset = i & CHUNK_MASK;
+            int n = Math.min(CHUNK_SIZE - offset, to - i);
+            System.arraycopy(chunks[i >>> CHUNK_SHIFT], offset, dst, dstOffset + (i - from), n);
+            i += n;
+        }
+    }
+
+    public double[] toArray() {
+        return toArray(0, size);
+    }
+
+    public double[] toArray(int from, int to) {
+        double[] out = new double[to - from];
+        copyTo(from, to, out, 0);
+        return out;
+    }
+
+    /** Read-only window onto {@code [from, to)} that shares this column's storage. */
+    public Slice slice(int from, int to) {
+        checkRange(from, to);
+        return new Slice(this, from, to);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "), size " + size);
+        }
+    }
+
+    public static final class Slice {
+        private final DoubleColumn column;
+        private final int from;
+        private final int to;
+
+        private Slice(DoubleColumn column, int from, int to) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+
+        public double get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + (to - from));
+            }
+            return column.get(from + index);
+        }
+
+        public int size() {
+            return to - from;
+        }
+
+        public int start() {
+            return from;
+        }
+
+        public void copyTo(double[] dst, int dstOffset) {
+            column.copyTo(from, to, dst, dstOffset);
+        }
+
+        public double[] toArray() {
+            return column.toArray(from, to);
+        }
+    }
+}
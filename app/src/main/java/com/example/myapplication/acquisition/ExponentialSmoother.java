@@ -0,0 +1,41 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * First-order exponential smoothing, {@code y += alpha * (x - y)}. The first
+ * sample is passed through unchanged.
+ */
+public class ExponentialSmoother implements SampleFilter {
+
+    private final double alpha;
+    private double y;
+    private boolean primed = false;
+
+    public ExponentialSmoother(double alpha) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Smoothing factor must be in (0, 1]: " + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    @Override
+    public double add(double value) {
+        if (primed) {
+            y += alpha * (value - y);
+        } else {
+            y = value;
+            primed = true;
+        }
+        return y;
+    }
+
+    @Override
+    public int window() {
+        // Six time constants
+        return (int) Math.ceil(6 / alpha);
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.myapplication.acquisition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a channel's operators in sequence.
+ *
+ * Chains are written in the settings screen as comma-separated stages, each
+ * a name and colon-separated arguments, e.g. {@code median:5, lowpass:2}:
+ *
+ * <pre>
+ * ma:N            moving average of N samples
+ * median:N        windowed median of N samples
+ * lowpass:HZ      Butterworth biquad low-pass
+ * fir:TAPS:HZ     windowed-sinc FIR low-pass
+ * sg:N:ORDER      Savitzky-Golay smoothing over N (odd) samples
+ * ema:ALPHA       exponential smoothing, 0 &lt; ALPHA &lt;= 1
+ * </pre>
+ */
+public class FilterChain implements SampleFilter {
+
+    private final SampleFilter[] stages;
+
+    public FilterChain(List<SampleFilter> stages) {
+        this.stages = stages.toArray(new SampleFilter[0]);
+    }
+
+    @Override
+    public double add(double value) {
+        for (SampleFilter f : stages) {
+            value = f.add(value);
+        }
+        return value;
+    }
+
+    @Override
+    public int window() {
+        int w = 1;
+        for (SampleFilter f : stages) {
+            w += f.window() - 1;
+        }
+        return w;
+    }
+
+    @Override
+    public void reset() {
+        for (SampleFilter f : stages) {
+            f.reset();
+        }
+    }
+
+    public int size() {
+        return stages.length;
+    }
+
+    /**
+     * Builds fresh stages for a chain spec; an empty spec gives no stages.
+     *
+     * @throws IllegalArgumentException naming the stage that is not valid
+     */
+    public static List<SampleFilter> parse(String spec, double sampleRate) {
+        List<SampleFilter> stages = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            return stages;
+        }
+        for (String stage : spec.split(",")) {
+            String[] parts = stage.trim().toLowerCase(Locale.US).split(":");
+            try {
+                stages.add(create(parts, sampleRate));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid filter stage: " + stage.trim());
+            }
+        }
+        return stages;
+    }
+
+    private static SampleFilter create(String[] p, double sampleRate) {
+        switch (p[0]) {
+            case "ma":
+                return new MovingAverage(Integer.parseInt(p[1]));
+            case "median":
+                return new MedianFilter(Integer.parseInt(p[1]));
+            case "lowpass":
+                return Biquad.lowPass(sampleRate, Double.parseDouble(p[1]));
+            case "fir":
+                return FirFilter.lowPass(sampleRate, Double.parseDouble(p[2]), Integer.parseInt(p[1]));
+            case "sg":
+                return SavitzkyGolay.filter(Integer.parseInt(p[1]), Integer.parseInt(p[2]));
+            case "ema":
+                return new ExponentialSmoother(Double.parseDouble(p[1]));
+            default:
+                throw new IllegalArgumentException("Unknown filter: " + p[0]);
+        }
+    }
+}
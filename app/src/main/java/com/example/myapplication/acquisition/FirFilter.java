@@ -0,0 +1,85 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Arrays;
+
+/**
+ * FIR filter with taps fixed at construction.
+ *
+ * Every sample is written twice into a ring of twice the tap count, so the
+ * last {@code taps.length} inputs always sit contiguously and the output is
+ * one straight dot product with no index wrapping. Before the first sample
+ * the history is filled with it, as if the input had always been at that
+ * level. A symmetric filter of n taps delays the signal by (n - 1) / 2
+ * samples.
+ */
+public class FirFilter implements SampleFilter {
+
+    private final double[] taps;
+    private final double[] history;
+    private int head = 0;
+    private boolean primed = false;
+
+    /** {@code taps[0]} weights the newest sample. */
+    public FirFilter(double[] taps) {
+        if (taps.length < 1) {
+            throw new IllegalArgumentException("FIR filter needs at least one tap");
+        }
+        this.taps = taps.clone();
+        history = new double[2 * taps.length];
+    }
+
+    /** Hamming-windowed sinc low-pass with unity gain at DC. */
+    public static FirFilter lowPass(double sampleRate, double cutoff, int tapCount) {
+        if (!(cutoff > 0) || !(cutoff < sampleRate / 2)) {
+            throw new IllegalArgumentException("Low-pass cutoff must be between 0 and "
+                    + sampleRate / 2 + " Hz: " + cutoff);
+        }
+        if (tapCount < 1) {
+            throw new IllegalArgumentException("Tap count must be at least 1: " + tapCount);
+        }
+        double fc = cutoff / sampleRate;
+        double mid = (tapCount - 1) / 2.0;
+        double[] taps = new double[tapCount];
+        double sum = 0;
+        for (int i = 0; i < tapCount; i++) {
+            double t = i - mid;
+            double sinc = t == 0 ? 2 * fc : Math.sin(2 * Math.PI * fc * t) / (Math.PI * t);
+            double hamming = tapCount == 1 ? 1 : 0.54 - 0.46 * Math.cos(2 * Math.PI * i / (tapCount - 1));
+            taps[i] = sinc * hamming;
+            sum += taps[i];
+        }
+        for (int i = 0; i < tapCount; i++) {
+            taps[i] /= sum;
+        }
+        return new FirFilter(taps);
+    }
+
+    @Override
+    public double add(double value) {
+        int n = taps.length;
+        if (!primed) {
+            Arrays.fill(history, value);
+            primed = true;
+        }
+        // history[head .. head + n) holds the inputs newest first
+        head = head == 0 ? n - 1 : head - 1;
+        history[head] = value;
+        history[head + n] = value;
+        double acc = 0;
+        for (int i = 0; i < n; i++) {
+            acc += taps[i] * history[head + i];
+        }
+        return acc;
+    }
+
+    @Override
+    public int window() {
+        return taps.length;
+    }
+
+    @Override
+    public void reset() {
+        head = 0;
+        primed = false;
+    }
+}
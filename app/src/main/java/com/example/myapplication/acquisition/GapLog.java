@@ -0,0 +1,78 @@
+package com.example.myapplication.acquisition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sample gaps of one session, i.e. stretches where the link was down while
+ * collecting.
+ *
+ * A gap is opened when the link is lost and closed by the first sample that
+ * arrives afterwards. Timestamps are wall-clock milliseconds so they line up
+ * with the experiment timestamp; {@link Gap#afterSample} is the 1-based
+ * number of the last sample before the gap. Not thread-safe: owned by the
+ * acquisition thread.
+ */
+public class GapLog {
+
+    public static class Gap {
+        public final int afterSample;
+        public final long startMs;
+        public final long endMs;
+
+        public Gap(int afterSample, long startMs, long endMs) {
+            this.afterSample = afterSample;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+
+        public long durationMs() {
+            return endMs - startMs;
+        }
+    }
+
+    private final List<Gap> gaps = new ArrayList<>();
+    private int openAfter = -1;
+    private long openStart;
+
+    /** Starts a gap after sample {@code afterSample}; ignored if one is already open. */
+    public void open(int afterSample, long startMs) {
+        if (openAfter < 0) {
+            openAfter = afterSample;
+            openStart = startMs;
+        }
+    }
+
+    public boolean isOpen() {
+        return openAfter >= 0;
+    }
+
+    /** Ends the open gap. @return the completed gap, or null if none was open */
+    public Gap close(long endMs) {
+        if (openAfter < 0) {
+            return null;
+        }
+        Gap gap = new Gap(openAfter, openStart, Math.max(endMs, openStart));
+        gaps.add(gap);
+        openAfter = -1;
+        return gap;
+    }
+
+    public List<Gap> gaps() {
+        return Collections.unmodifiableList(gaps);
+    }
+
+    public long totalMs() {
+        long total = 0;
+        for (Gap gap : gaps) {
+            total += gap.durationMs();
+        }
+        return total;
+    }
+
+    public void clear() {
+        gaps.clear();
+        openAfter = -1;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear latency histogram in the style of HdrHistogram.
+ *
+ * Values are recorded in microseconds: exact below {@value #SUB_BUCKETS} us,
+ * then in buckets no wider than 1/{@value #HALF} of their value (about 3 %),
+ * up to {@link Integer#MAX_VALUE} us; larger values land in the top bucket.
+ * Recording is a few shifts and one atomic increment, never allocates, and
+ * may happen on any thread while another thread reads percentiles.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;  // 64
+    static final int HALF = SUB_BUCKETS / 2;              // 32
+    private static final long MAX_MICROS = Integer.MAX_VALUE;
+    private static final int BUCKETS = indexOf(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public void record(long micros) {
+        long v = Math.min(Math.max(micros, 0), MAX_MICROS);
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        sumMicros.addAndGet(v);
+        long max;
+        while (v > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, v)) {
+            // retry
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public double meanMicros() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sumMicros.get() / n;
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return highest value equivalent to the one at that percentile (the
+     * upper end of its bucket), or 0 if nothing was recorded
+     */
+    public long percentileMicros(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /** Appends one CSV row per non-empty bucket: {@code name,low_us,high_us,count}. */
+    public void appendCsv(String name, Appendable out) throws IOException {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                out.append(name).append(',')
+                        .append(Long.toString(lowerBound(i))).append(',')
+                        .append(Long.toString(upperBound(i))).append(',')
+                        .append(Long.toString(c)).append('\n');
+            }
+        }
+    }
+
+    //————————————————————————————
+    // Bucket layout
+    //————————————————————————————
+
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(micros)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((micros >> shift) - HALF);
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int k = index - SUB_BUCKETS;
+        int shift = k / HALF + 1;
+        return (long) (k % HALF + HALF) << shift;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int k = index - SUB_BUCKETS;
+        int shift = k / HALF + 1;
+        return ((long) (k % HALF + HALF + 1) << shift) - 1;
+    }
+}
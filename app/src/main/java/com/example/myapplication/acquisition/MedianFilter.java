@@ -0,0 +1,85 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Streaming median of the last {@code window} values.
+ *
+ * Alongside the ring of raw values a sorted copy of the window is kept; each
+ * update removes the oldest value from it and inserts the new one by binary
+ * search and a shift, so an update is O(window) without allocating. Until
+ * the window fills, the median is over the values seen so far. For an even
+ * count the two middle values are averaged.
+ */
+public class MedianFilter implements SampleFilter {
+
+    private final double[] ring;
+    private final double[] sorted;
+    private int head = 0;
+    private int count = 0;
+
+    public MedianFilter(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1: " + window);
+        }
+        ring = new double[window];
+        sorted = new double[window];
+    }
+
+    @Override
+    public double add(double value) {
+        if (count == ring.length) {
+            remove(ring[head]);
+        }
+        insert(value);
+        ring[head] = value;
+        if (++head == ring.length) {
+            head = 0;
+        }
+        return median();
+    }
+
+    public double median() {
+        if (count == 0) {
+            return 0.0;
+        }
+        int mid = count >> 1;
+        return (count & 1) == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    @Override
+    public int window() {
+        return ring.length;
+    }
+
+    @Override
+    public void reset() {
+        head = 0;
+        count = 0;
+    }
+
+    private void insert(double value) {
+        int at = search(value);
+        System.arraycopy(sorted, at, sorted, at + 1, count - at);
+        sorted[at] = value;
+        count++;
+    }
+
+    private void remove(double value) {
+        int at = search(value); // always present; Double.compare is a total order
+        System.arraycopy(sorted, at + 1, sorted, at, count - at - 1);
+        count--;
+    }
+
+    // First index whose value is not below value, in Double.compare order
+    private int search(double value) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(sorted[mid], value) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Streaming mean of the last {@code window} values.
+ *
+ * Keeps the window in a ring buffer with a running sum, so each update is
+ * O(1) whatever the window size. So that adding and subtracting values for
+ * hours does not drift away from a direct re-sum, the sum is recomputed from
+ * the ring each time it wraps (once per window, so still O(1) amortised).
+ * Until the window fills, the mean is over the values seen so far, as
+ * {@code OutputBluetooth.MVFilter} always did.
+ */
+public class MovingAverage implements SampleFilter {
+
+    private final double[] ring;
+    private int head = 0;
+    private int count = 0;
+    private double sum = 0.0;
+
+    public MovingAverage(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1: " + window);
+        }
+        ring = new double[window];
+    }
+
+    /** Adds a value and returns the mean of the current window. */
+    @Override
+    public double add(double value) {
+        if (count == ring.length) {
+            sum -= ring[head];
+        } else {
+            count++;
+        }
+        ring[head] = value;
+        sum += value;
+        if (++head == ring.length) {
+            head = 0;
+            resync();
+        }
+        return mean();
+    }
+
+    public double mean() {
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    /** Number of values currently in the window, at most {@link #window()}. */
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public int window() {
+        return ring.length;
+    }
+
+    @Override
+    public void reset() {
+        head = 0;
+        count = 0;
+        sum = 0.0;
+    }
+
+    // Drops accumulated rounding error; the ring is full whenever head wraps
+    private void resync() {
+        double exact = 0.0;
+        for (double v : ring) {
+            exact += v;
+        }
+        sum = exact;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Allocation-free decoder for the sensor's {@code #a:b:cp} frames, including
+ * burst frames carrying several samples ({@code #a:b:c;a:b:c;a:b:cp}).
+ *
+ * Raw bytes go into a fixed single-producer/single-consumer ring: the reader
+ * thread calls {@link #write}, the consumer calls {@link #next} until it returns
+ * false and reads the decoded integers with {@link #value}. A burst frame is
+ * validated as a whole and then handed out one sample per {@link #next}. Parsing is a byte
+ * state machine, so a frame split across reads simply continues on the next
+ * call and nothing is copied into strings.
+ *
+ * Each write carries the time its bytes were received; a decoded frame is
+ * stamped with the time of the chunk holding its terminator
+ * ({@link #timestampNanos()}); all samples of a burst share it. Firmware may
+ * append a fourth field to a sample, its sequence number ({@code #a:b:c:sp}),
+ * which is reported separately.
+ *
+ * Recovery rules: a {@code '#'} always restarts the frame (the last header
+ * before a terminator wins, as before); bytes outside a frame are ignored; a
+ * frame with a bad character, a wrong field count, an out-of-range number, a
+ * sample of more than {@link #MAX_FRAME_LENGTH} bytes or more than
+ * {@link #MAX_BURST} samples is dropped whole and the decoder waits for the
+ * next header. Bytes lost to a full ring leave a marker in their place, so
+ * the frame they cut is dropped too instead of being joined to later bytes.
+ */
+public class PacketFramer {
+
+    public static final int CHANNELS = 3;
+    /** Longest accepted sample, in bytes between separators. */
+    public static final int MAX_FRAME_LENGTH = 64;
+    /** Most samples in one frame. */
+    public static final int MAX_BURST = 50;
+
+    // Values are reduced modulo this, matching the device's prefix masking
+    private static final int VALUE_MODULUS = 100000;
+
+    // Stands in for bytes dropped on overrun; not a frame character, so it drops the frame
+    private static final byte OVERRUN = 0;
+
+    // Receive-time marks for unconsumed writes; if the consumer falls this far
+    // behind, later chunks share the next mark's time
+    private static final int MARKS = 256;
+
+    private final byte[] ring;
+    private final int mask;
+
+    // Producer owns writePos, consumer owns readPos
+    private volatile long writePos = 0;
+    private volatile long readPos = 0;
+
+    // Ring position after each write and when it was received; same ownership
+    private final long[] markEnd = new long[MARKS];
+    private final long[] markNanos = new long[MARKS];
+    private volatile long marksWritten = 0;
+    private volatile long marksRead = 0;
+
+    // Parser state (consumer thread only)
+    private boolean inFrame = false;
+    private int frameLength = 0;
+    private int field = 0;
+    private long accumulator = 0;
+    private boolean negative = false;
+    private boolean digitSeen = false;
+    private final int[] pending = new int[CHANNELS + 1];
+    private int burstParsed = 0; // samples completed in the frame being parsed
+
+    // Samples of the last decoded frame (consumer thread only)
+    private final int[] values = new int[MAX_BURST * CHANNELS];
+    private final int[] sequences = new int[MAX_BURST];
+    private final boolean[] hasSequences = new boolean[MAX_BURST];
+    private int burstSize = 0;
+    private int burstIndex = -1;
+    private long timestampNanos = 0;
+
+    private long framesDecoded = 0;
+    private long framesDropped = 0;
+    private volatile long bytesOverrun = 0;
+
+    /**
+     * @param capacity ring size in bytes, rounded up to a power of two
+     */
+    public PacketFramer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        ring = new byte[size];
+        mask = size - 1;
+    }
+
+    //————————————————————————————
+    // Producer side
+    //————————————————————————————
+
+    /** {@link #write(byte[], int, int, long)} stamped with {@link System#nanoTime()}. */
+    public int write(byte[] src, int off, int len) {
+        return write(src, off, len, System.nanoTime());
+    }
+
+    /**
+     * Copies bytes into the ring. Bytes that do not fit are dropped and
+     * counted in {@link #getBytesOverrun()}; an overrun marker takes their
+     * place, so the frame in progress there is dropped and the parser
+     * resynchronises on the next header after it.
+     *
+     * @param receivedNanos when the bytes came off the link, on the caller's clock
+     * @return number of bytes accepted
+     */
+    public int write(byte[] src, int off, int len, long receivedNanos) {
+        long w = writePos;
+        int free = ring.length - (int) (w - readPos);
+        // One byte is always kept for the marker; a full ring already ends with one
+        int n = Math.max(0, Math.min(len, free - 1));
+        int start = (int) (w & mask);
+        int first = Math.min(n, ring.length - start);
+        System.arraycopy(src, off, ring, start, first);
+        if (n > first) {
+            System.arraycopy(src, off + first, ring, 0, n - first);
+        }
+        int written = n;
+        if (n < len) {
+            bytesOverrun += len - n;
+            if (free > 0) {
+                ring[(int) ((w + n) & mask)] = OVERRUN;
+                written++;
+            }
+        }
+        long m = marksWritten;
+        if (written > 0 && m - marksRead < MARKS) {
+            markEnd[(int) (m % MARKS)] = w + written;
+            markNanos[(int) (m % MARKS)] = receivedNanos;
+            marksWritten = m + 1; // published before the bytes it covers
+        }
+        writePos = w + written;
+        return n;
+    }
+
+    //————————————————————————————
+    // Consumer side
+    //————————————————————————————
+
+    /**
+     * Advances to the next sample: the next one of the current burst, or the
+     * first of the next complete, valid frame.
+     *
+     * @return true if a sample is available; its fields can be read with
+     * {@link #value(int)} until the next call
+     */
+    public boolean next() {
+        if (burstIndex + 1 < burstSize) {
+            burstIndex++;
+            return true;
+        }
+        long r = readPos;
+        long w = writePos;
+        while (r < w) {
+            byte b = ring[(int) (r & mask)];
+            r++;
+            if (accept(b)) {
+                readPos = r;
+                stamp(r);
+                burstIndex = 0;
+                return true;
+            }
+        }
+        readPos = r;
+        return false;
+    }
+
+    /** Decoded field of the current sample, {@code 0 <= channel < CHANNELS}. */
+    public int value(int channel) {
+        return values[burstIndex * CHANNELS + channel];
+    }
+
+    /** Number of samples in the current frame; 1 for a plain frame. */
+    public int burstSize() {
+        return burstSize;
+    }
+
+    /** Position of the current sample in its frame, from 0. */
+    public int burstIndex() {
+        return burstIndex;
+    }
+
+    /** Receive time of the current frame's last byte, as passed to {@link #write(byte[], int, int, long)}. */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /** Whether the current sample carried a device sequence number. */
+    public boolean hasSequence() {
+        return hasSequences[burstIndex];
+    }
+
+    /** Device sequence number of the current sample; meaningful if {@link #hasSequence()}. */
+    public int sequence() {
+        return sequences[burstIndex];
+    }
+
+    /** Drops everything buffered so far, including a partial frame and unread burst samples. */
+    public void discard() {
+        readPos = writePos;
+        marksRead = marksWritten;
+        inFrame = false;
+        burstSize = 0;
+        burstIndex = -1;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getBytesOverrun() {
+        return bytesOverrun;
+    }
+
+    // Returns true when b completes a valid frame
+    private boolean accept(byte b) {
+        if (b == '#') {
+            if (inFrame) {
+                framesDropped++; // header inside a frame: previous one was partial
+            }
+            startFrame();
+            return false;
+        }
+        if (!inFrame) {
+            return false; // line noise between frames
+        }
+        if (++frameLength > MAX_FRAME_LENGTH) {
+            return dropFrame();
+        }
+
+        if (b >= '0' && b <= '9') {
+            accumulator = accumulator * 10 + (b - '0');
+            digitSeen = true;
+            if (accumulator > Integer.MAX_VALUE) {
+                return dropFrame();
+            }
+            return false;
+        }
+        switch (b) {
+            case '-':
+                if (digitSeen || negative) {
+                    return dropFrame();
+                }
+                negative = true;
+                return false;
+            case ':':
+                if (!digitSeen || field >= CHANNELS) {
+                    return dropFrame();
+                }
+                finishField();
+                return false;
+            case ';':
+            case 'p':
+                if (!digitSeen || field < CHANNELS - 1 || burstParsed == MAX_BURST) {
+                    return dropFrame();
+                }
+                finishField();
+                // Only a frame being parsed is staged here; the last decoded one was fully read
+                System.arraycopy(pending, 0, values, burstParsed * CHANNELS, CHANNELS);
+                hasSequences[burstParsed] = field > CHANNELS;
+                sequences[burstParsed] = field > CHANNELS ? pending[CHANNELS] : 0;
+                burstParsed++;
+                if (b == ';') {
+                    startSample();
+                    return false;
+                }
+                burstSize = burstParsed;
+                inFrame = false;
+                framesDecoded++;
+                return true;
+            default:
+                return dropFrame();
+        }
+    }
+
+    private void startFrame() {
+        inFrame = true;
+        burstParsed = 0;
+        startSample();
+    }
+
+    private void startSample() {
+        frameLength = 0;
+        field = 0;
+        accumulator = 0;
+        negative = false;
+        digitSeen = false;
+    }
+
+    private void finishField() {
+        long v = negative ? -accumulator : accumulator;
+        pending[field++] = (int) (v % VALUE_MODULUS);
+        accumulator = 0;
+        negative = false;
+        digitSeen = false;
+    }
+
+    // Takes the time of the write that delivered the byte before ring position end
+    private void stamp(long end) {
+        long m = marksRead;
+        long written = marksWritten;
+        while (m < written && markEnd[(int) (m % MARKS)] < end) {
+            m++;
+        }
+        if (m < written) {
+            timestampNanos = markNanos[(int) (m % MARKS)];
+        }
+        marksRead = m;
+    }
+
+    // Always returns false so callers can "return dropFrame();"
+    private boolean dropFrame() {
+        inFrame = false;
+        framesDropped++;
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Streaming form of {@code AcquisitionEngine.findMaxbyAvg}: the running
+ * maximum of a channel and the mean of the plateau around it, from
+ * {@link #BEFORE} samples before the peak to {@link #AFTER} samples after.
+ *
+ * The last {@code BEFORE + 1} values are kept in a ring. A new peak re-sums
+ * its leading half from the ring (at most 20 additions); later samples are
+ * added while they fall inside the plateau. The sum is built in the same
+ * order and from the same starting value as the batch scan, and a peak is
+ * only replaced by a strictly greater value, so {@link #plateauMean()} is
+ * bit-identical to the batch result over the same samples.
+ */
+public class PeakTracker {
+
+    public static final int BEFORE = 19;
+    public static final int AFTER = 20;
+
+    private final double[] recent = new double[BEFORE + 1];
+    private int count = 0;
+    private double max = 0.0;
+    private int peakIndex = 0;
+    private double plateauSum = 0.0;
+    private int plateauCount = 0;
+
+    public void add(double value) {
+        int n = count++;
+        recent[n % recent.length] = value;
+        if (value > max) {
+            max = value;
+            peakIndex = n;
+            int start = Math.max(0, n - BEFORE);
+            double sum = 0.0;
+            for (int i = start; i <= n; i++) {
+                sum += recent[i % recent.length];
+            }
+            plateauSum = sum;
+            plateauCount = n - start + 1;
+        } else if (n <= peakIndex + AFTER) {
+            plateauSum += value;
+            plateauCount++;
+        }
+    }
+
+    /** Mean of the plateau around the peak, or 0.0 before the first sample. */
+    public double plateauMean() {
+        return plateauCount > 0 ? plateauSum / plateauCount : 0.0;
+    }
+
+    /** Largest value seen, or 0.0 if none was positive. */
+    public double max() {
+        return max;
+    }
+
+    /** Index of the first occurrence of {@link #max()}. */
+    public int peakIndex() {
+        return peakIndex;
+    }
+
+    /** Number of samples in the plateau so far, at most BEFORE + AFTER + 1. */
+    public int plateauCount() {
+        return plateauCount;
+    }
+
+    /** True once every sample after the current peak's plateau has arrived. */
+    public boolean isPlateauComplete() {
+        return count > peakIndex + AFTER;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+        max = 0.0;
+        peakIndex = 0;
+        plateauSum = 0.0;
+        plateauCount = 0;
+    }
+
+    /** Independent tracker in the same state, for looking ahead without committing. */
+    public PeakTracker copy() {
+        PeakTracker t = new PeakTracker();
+        System.arraycopy(recent, 0, t.recent, 0, recent.length);
+        t.count = count;
+        t.max = max;
+        t.peakIndex = peakIndex;
+        t.plateauSum = plateauSum;
+        t.plateauCount = plateauCount;
+        return t;
+    }
+}
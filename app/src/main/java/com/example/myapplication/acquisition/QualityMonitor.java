@@ -0,0 +1,232 @@
+package com.example.myapplication.acquisition;
+
+import java.util.Arrays;
+
+/**
+ * Streaming signal quality checks for ports 0-2, fed every raw sample.
+ *
+ * Each sample costs a few additions per channel: saturation is a run count,
+ * everything else is judged once per block of {@code blockSize} samples
+ * (one second at the session rate) from Welford accumulators over the block:
+ *
+ * <ul>
+ * <li>{@link Fault#SATURATED}: {@link #SATURATION_RUN} samples in a row at an
+ * ADC rail.</li>
+ * <li>{@link Fault#FLAT}: block spread below half an ADC step, i.e. the
+ * channel is stuck.</li>
+ * <li>{@link Fault#NOISY}: sample-to-sample noise (the spread of first
+ * differences, so a rising signal does not count) above
+ * {@link #NOISE_LIMIT_V}.</li>
+ * <li>{@link Fault#DISAGREE}: block means of the ports further apart than
+ * {@link #DISAGREE_LIMIT_V}.</li>
+ * <li>{@link Fault#DRIFT}: two-sided CUSUM of block means against the level
+ * reached after {@link #SETTLE_BLOCKS} blocks; slack
+ * {@link #DRIFT_SLACK_V} per block, alarm at {@link #DRIFT_LIMIT_V}.</li>
+ * <li>{@link Fault#OUT_OF_RANGE}: port 1 settled outside the calibrated
+ * range, which is what makes a finished test read "Invalid".</li>
+ * </ul>
+ *
+ * The listener hears each fault once when it starts and once when it ends,
+ * on the thread that feeds the monitor. Not thread-safe.
+ */
+public class QualityMonitor {
+
+    public enum Fault {
+        SATURATED("saturated"),
+        FLAT("flat-lined"),
+        NOISY("noisy"),
+        DISAGREE("ports disagree"),
+        DRIFT("drifting"),
+        OUT_OF_RANGE("outside calibrated range");
+
+        public final String label;
+
+        Fault(String label) {
+            this.label = label;
+        }
+    }
+
+    public interface Listener {
+        /** {@code value} is the statistic that crossed the limit, in volts where it has a unit. */
+        void onQualityChanged(Fault fault, int channel, boolean active, double value);
+    }
+
+    public static final int CHANNELS = 3;
+    /** Port whose level is converted to cortisol. */
+    public static final int SIGNAL_CHANNEL = 1;
+    /** Reported as the channel of faults that concern all ports. */
+    public static final int ALL_CHANNELS = -1;
+
+    public static final int SATURATION_RUN = 10;
+    public static final double NOISE_LIMIT_V = 0.005;
+    public static final double DISAGREE_LIMIT_V = 0.5;
+    public static final int SETTLE_BLOCKS = 30;
+    public static final double DRIFT_SLACK_V = 0.002;
+    public static final double DRIFT_LIMIT_V = 0.05;
+
+    private final Listener listener;
+    private final int blockSize;
+    private final int fullScale;
+    private final double voltsPerCount;
+    private volatile CalibrationTable range;
+
+    // Per channel, over the current block
+    private final int[] railRun = new int[CHANNELS];
+    private final double[] mean = new double[CHANNELS];
+    private final double[] m2 = new double[CHANNELS];
+    private final double[] diffMean = new double[CHANNELS];
+    private final double[] diffM2 = new double[CHANNELS];
+    private final double[] previous = new double[CHANNELS];
+    private int inBlock = 0;
+    private int blocks = 0;
+
+    // Per channel, across blocks
+    private final double[] reference = new double[CHANNELS];
+    private final double[] cusumHigh = new double[CHANNELS];
+    private final double[] cusumLow = new double[CHANNELS];
+
+    // Active faults, one bit per channel (bit CHANNELS for ALL_CHANNELS)
+    private final int[] active = new int[Fault.values().length];
+
+    public QualityMonitor(int blockSize, int adcBits, double analogRef, CalibrationTable range,
+                          Listener listener) {
+        if (blockSize < 2) {
+            throw new IllegalArgumentException("Block must hold at least 2 samples: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.fullScale = (1 << adcBits) - 1;
+        this.voltsPerCount = analogRef / fullScale;
+        this.range = range;
+        this.listener = listener;
+    }
+
+    /** Switches the range checked by {@link Fault#OUT_OF_RANGE}; any thread. */
+    public void setRange(CalibrationTable range) {
+        this.range = range;
+    }
+
+    public void add(int raw0, int raw1, int raw2) {
+        addChannel(0, raw0);
+        addChannel(1, raw1);
+        addChannel(2, raw2);
+        if (++inBlock == blockSize) {
+            endBlock();
+        }
+    }
+
+    private void addChannel(int ch, int raw) {
+        if (raw <= 0 || raw >= fullScale) {
+            if (++railRun[ch] == SATURATION_RUN) {
+                set(Fault.SATURATED, ch, true, raw * voltsPerCount);
+            }
+        } else if (railRun[ch] > 0) {
+            if (railRun[ch] >= SATURATION_RUN) {
+                set(Fault.SATURATED, ch, false, raw * voltsPerCount);
+            }
+            railRun[ch] = 0;
+        }
+
+        // Welford over the block, for the values and for their first differences
+        double v = raw * voltsPerCount;
+        int n = inBlock + 1;
+        double d = v - mean[ch];
+        mean[ch] += d / n;
+        m2[ch] += d * (v - mean[ch]);
+        if (inBlock > 0) {
+            double diff = v - previous[ch];
+            double dd = diff - diffMean[ch];
+            diffMean[ch] += dd / inBlock;
+            diffM2[ch] += dd * (diff - diffMean[ch]);
+        }
+        previous[ch] = v;
+    }
+
+    private void endBlock() {
+        blocks++;
+        double lo = Double.MAX_VALUE, hi = -Double.MAX_VALUE;
+        for (int ch = 0; ch < CHANNELS; ch++) {
+            boolean saturated = railRun[ch] >= SATURATION_RUN;
+            double std = Math.sqrt(m2[ch] / (blockSize - 1));
+            // Differences of white noise have twice its variance
+            double noise = blockSize > 2 ? Math.sqrt(diffM2[ch] / (blockSize - 2) / 2) : 0.0;
+
+            update(Fault.FLAT, ch, !saturated && std < voltsPerCount / 2, std);
+            update(Fault.NOISY, ch, noise > NOISE_LIMIT_V, noise);
+            updateDrift(ch, mean[ch]);
+
+            lo = Math.min(lo, mean[ch]);
+            hi = Math.max(hi, mean[ch]);
+        }
+        update(Fault.DISAGREE, ALL_CHANNELS, hi - lo > DISAGREE_LIMIT_V, hi - lo);
+        if (blocks >= SETTLE_BLOCKS) {
+            double level = mean[SIGNAL_CHANNEL];
+            update(Fault.OUT_OF_RANGE, SIGNAL_CHANNEL, !range.inRange(level * 1000.0), level);
+        }
+
+        inBlock = 0;
+        for (int ch = 0; ch < CHANNELS; ch++) {
+            mean[ch] = 0.0;
+            m2[ch] = 0.0;
+            diffMean[ch] = 0.0;
+            diffM2[ch] = 0.0;
+        }
+    }
+
+    private void updateDrift(int ch, double level) {
+        if (blocks < SETTLE_BLOCKS) {
+            return;
+        }
+        if (blocks == SETTLE_BLOCKS) {
+            reference[ch] = level;
+            return;
+        }
+        double dev = level - reference[ch];
+        cusumHigh[ch] = Math.max(0.0, cusumHigh[ch] + dev - DRIFT_SLACK_V);
+        cusumLow[ch] = Math.max(0.0, cusumLow[ch] - dev - DRIFT_SLACK_V);
+        double cusum = Math.max(cusumHigh[ch], cusumLow[ch]);
+        update(Fault.DRIFT, ch, cusum > DRIFT_LIMIT_V, dev);
+    }
+
+    private void update(Fault fault, int ch, boolean on, double value) {
+        if (on != isActive(fault, ch)) {
+            set(fault, ch, on, value);
+        }
+    }
+
+    private void set(Fault fault, int ch, boolean on, double value) {
+        int bit = 1 << (ch == ALL_CHANNELS ? CHANNELS : ch);
+        active[fault.ordinal()] = on ? active[fault.ordinal()] | bit : active[fault.ordinal()] & ~bit;
+        listener.onQualityChanged(fault, ch, on, value);
+    }
+
+    public boolean isActive(Fault fault, int channel) {
+        int bit = 1 << (channel == ALL_CHANNELS ? CHANNELS : channel);
+        return (active[fault.ordinal()] & bit) != 0;
+    }
+
+    /** True while any fault is active. */
+    public boolean hasFault() {
+        for (int bits : active) {
+            if (bits != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Starts over for a new session; active faults are dropped without notice. */
+    public void reset() {
+        inBlock = 0;
+        blocks = 0;
+        for (int ch = 0; ch < CHANNELS; ch++) {
+            railRun[ch] = 0;
+            mean[ch] = 0.0;
+            m2[ch] = 0.0;
+            diffMean[ch] = 0.0;
+            diffM2[ch] = 0.0;
+            cusumHigh[ch] = 0.0;
+            cusumLow[ch] = 0.0;
+        }
+        Arrays.fill(active, 0);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.myapplication.acquisition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Plays a {@link StreamCapture} back as if it were the sensor link.
+ *
+ * Each recorded read is returned as one read, so the framer sees the same
+ * chunking as in the field. With a positive speed, chunks are released on
+ * the recorded schedule scaled by that factor (1 = wall-clock); with speed
+ * 0 they come as fast as they are read. The clock starts at the first read,
+ * so nothing is lost to the reset-and-flush done when a link opens.
+ * Commands written to {@link #output()} are ignored.
+ *
+ * At the end of the capture the input either reports end of stream or, like
+ * a sensor that went quiet, blocks until the source is closed.
+ */
+public class ReplaySource implements SampleSource {
+
+    private final File file;
+    private final double speed;
+    private final boolean endOfStreamAtEnd;
+
+    // Guarded by this
+    private StreamCapture.Reader reader;
+    private InputStream in;
+    private boolean closed = true;
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    /**
+     * @param speed            playback rate relative to the recording; 0 for as fast as possible
+     * @param endOfStreamAtEnd report end of stream after the last chunk instead of going quiet
+     */
+    public ReplaySource(File file, double speed, boolean endOfStreamAtEnd) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed must be >= 0");
+        }
+        this.file = file;
+        this.speed = speed;
+        this.endOfStreamAtEnd = endOfStreamAtEnd;
+    }
+
+    @Override
+    public String name() {
+        return "Replay: " + file.getName() + (speed > 0 ? " (" + speed + "x)" : " (max speed)");
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        close();
+        reader = new StreamCapture.Reader(file);
+        in = new ReplayStream(reader);
+        closed = false;
+    }
+
+    @Override
+    public synchronized InputStream input() {
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream output() {
+        return closed ? null : DISCARD;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Read-only file, nothing to lose
+        }
+        reader = null;
+        in = null;
+        notifyAll(); // wake a paced or quiet read
+    }
+
+    private final class ReplayStream extends InputStream {
+        private final StreamCapture.Reader capture;
+        private long startNanos = -1;
+        private int offset = 0;
+        private boolean pending = false;
+
+        ReplayStream(StreamCapture.Reader capture) {
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (ReplaySource.this) {
+                if (reader != capture) {
+                    return -1; // closed or reopened
+                }
+                if (startNanos < 0) {
+                    startNanos = System.nanoTime();
+                }
+                if (!pending) {
+                    if (!capture.next()) {
+                        return atEnd();
+                    }
+                    pending = true;
+                    offset = 0;
+                }
+                if (offset == 0 && speed > 0 && !awaitRelease()) {
+                    return -1;
+                }
+                int n = Math.min(len, capture.length() - offset);
+                System.arraycopy(capture.data(), offset, b, off, n);
+                offset += n;
+                if (offset == capture.length()) {
+                    pending = false;
+                }
+                return n;
+            }
+        }
+
+        // Holds the lock's monitor while waiting, so close() can wake it
+        private boolean awaitRelease() throws IOException {
+            long due = startNanos + (long) (capture.atNanos() / speed);
+            try {
+                long left;
+                while (reader == capture && (left = due - System.nanoTime()) > 0) {
+                    ReplaySource.this.wait(left / 1_000_000, (int) (left % 1_000_000));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during replay");
+            }
+            return reader == capture;
+        }
+
+        private int atEnd() throws IOException {
+            if (endOfStreamAtEnd) {
+                return -1;
+            }
+            try {
+                while (reader == capture) {
+                    ReplaySource.this.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during replay");
+            }
+            return -1;
+        }
+    }
+}
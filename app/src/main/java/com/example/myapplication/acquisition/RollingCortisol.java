@@ -0,0 +1,64 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Live cortisol estimate from the mean of the last {@link #WINDOW} port 1
+ * voltages.
+ *
+ * The mean is kept by a {@link MovingAverage} and converted through the
+ * connected sensor's {@link CalibrationTable}, so an estimate costs a table
+ * lookup rather than a {@link Math#pow}.
+ */
+public class RollingCortisol {
+
+    public static final int WINDOW = 100;
+
+    private final MovingAverage window = new MovingAverage(WINDOW);
+    private volatile CalibrationTable table;
+
+    public RollingCortisol() {
+        this(new CalibrationTable(Calibration.DEFAULT));
+    }
+
+    public RollingCortisol(CalibrationTable table) {
+        this.table = table;
+    }
+
+    /** Switches to another sensor's curve; any thread. */
+    public void setCalibration(CalibrationTable table) {
+        this.table = table;
+    }
+
+    /** Adds one port 1 voltage to the window. */
+    public void add(double volts) {
+        window.add(volts);
+    }
+
+    /** Number of samples the current estimate is averaged over. */
+    public int count() {
+        return window.count();
+    }
+
+    public double averageVoltage() {
+        return window.mean();
+    }
+
+    public double millivolts() {
+        return window.mean() * 1000.0;
+    }
+
+    public boolean inRange() {
+        return count() > 0 && table.inRange(millivolts());
+    }
+
+    /** Current estimate in ng/mL, or 0.0 when there is no data or it is out of range. */
+    public double cortisol() {
+        if (count() == 0) {
+            return 0.0;
+        }
+        return Math.max(0.0, table.cortisolAtMillivolts(millivolts()));
+    }
+
+    public void reset() {
+        window.reset();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * One streaming operator on a sensor channel: takes a sample, returns the
+ * filtered sample.
+ *
+ * Implementations keep their history in primitive arrays sized at
+ * construction, so {@link #add} never allocates and can run per sample on
+ * the pipeline thread. Operators are single-threaded and stateful; every
+ * channel needs its own instances.
+ */
+public interface SampleFilter {
+
+    /** Feeds one sample and returns the filter output for it. */
+    double add(double value);
+
+    /**
+     * How many past inputs the output depends on (for recursive filters, how
+     * many it takes to settle); feeding this many samples primes the filter.
+     */
+    int window();
+
+    /** Forgets all history. */
+    void reset();
+}
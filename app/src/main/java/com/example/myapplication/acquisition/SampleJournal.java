@@ -0,0 +1,206 @@
+package com.example.myapplication.acquisition;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only binary journal of one session's samples.
+ *
+ * The file starts with a small header describing the session, followed by
+ * fixed-size records of {@link #RECORD_VALUES} doubles (time, port 0-2,
+ * average), one per sample in order. Records are staged in a direct buffer
+ * and written through a {@link FileChannel}; {@link #checkpoint()} makes
+ * everything appended so far durable. Writing a sample therefore costs the
+ * same however long the session is.
+ *
+ * After a crash {@link #read(File)} recovers every complete record; a torn
+ * record at the end of the file is ignored.
+ */
+public class SampleJournal implements Closeable {
+
+    public static final String SUFFIX = ".journal";
+    public static final int RECORD_VALUES = 5;
+    public static final int RECORD_BYTES = RECORD_VALUES * Double.BYTES;
+
+    private static final int MAGIC = 0x424C4A31; // "BLJ1"
+    private static final int BUFFER_RECORDS = 1024;
+
+    /** Session parameters stored in the journal header. */
+    public static class Header {
+        /** biomarker_experiments row the session is being written to, or -1 */
+        public final long experimentId;
+        public final String userEmail;
+        public final long sampleTimestamp;
+        public final int samplesPerSecond;
+        public final int movingAvg;
+        public final double duration;
+
+        public Header(long experimentId, String userEmail, long sampleTimestamp,
+                      int samplesPerSecond, int movingAvg, double duration) {
+            this.experimentId = experimentId;
+            this.userEmail = userEmail != null ? userEmail : "";
+            this.sampleTimestamp = sampleTimestamp;
+            this.samplesPerSecond = samplesPerSecond;
+            this.movingAvg = movingAvg;
+            this.duration = duration;
+        }
+    }
+
+    /** Contents of a journal read back from disk. */
+    public static class Recovered {
+        public final Header header;
+        /** Time column plus channels 0-3: port 0, port 1, port 2, average. */
+        public final SampleStore samples;
+
+        Recovered(Header header, SampleStore samples) {
+            this.header = header;
+            this.samples = samples;
+        }
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_BYTES);
+    private long records = 0;
+
+    private SampleJournal(File file, RandomAccessFile raf) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+    }
+
+    /** Creates (or truncates) {@code file} and writes the header durably. */
+    public static SampleJournal create(File file, Header header) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        SampleJournal journal = new SampleJournal(file, raf);
+        try {
+            raf.setLength(0);
+            byte[] email = header.userEmail.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer head = ByteBuffer.allocate(42 + email.length);
+            head.putInt(MAGIC)
+                    .putLong(header.experimentId)
+                    .putLong(header.sampleTimestamp)
+                    .putInt(header.samplesPerSecond)
+                    .putInt(header.movingAvg)
+                    .putDouble(header.duration)
+                    .putInt(email.length)
+                    .put(email)
+                    .putShort((short) 0); // reserved
+            head.flip();
+            while (head.hasRemaining()) {
+                journal.channel.write(head);
+            }
+            journal.channel.force(true);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /** Appends one sample. Durable after the next {@link #checkpoint()}. */
+    public void append(double time, double port0, double port1, double port2, double avg)
+            throws IOException {
+        if (buffer.remaining() < RECORD_BYTES) {
+            drain();
+        }
+        buffer.putDouble(time)
+                .putDouble(port0)
+                .putDouble(port1)
+                .putDouble(port2)
+                .putDouble(avg);
+        records++;
+    }
+
+    /** Writes out buffered records and forces them to storage. */
+    public void checkpoint() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public File file() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    //————————————————————————————
+    // Recovery
+    //————————————————————————————
+
+    public static Recovered read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel in = raf.getChannel()) {
+            ByteBuffer fixed = ByteBuffer.allocate(40);
+            readFully(in, fixed);
+            fixed.flip();
+            if (fixed.getInt() != MAGIC) {
+                throw new IOException("Not a sample journal: " + file.getName());
+            }
+            long experimentId = fixed.getLong();
+            long sampleTimestamp = fixed.getLong();
+            int sps = fixed.getInt();
+            int movingAvg = fixed.getInt();
+            double duration = fixed.getDouble();
+            int emailLength = fixed.getInt();
+            if (emailLength < 0 || emailLength > 4096) {
+                throw new IOException("Corrupt journal header: " + file.getName());
+            }
+            ByteBuffer email = ByteBuffer.allocate(emailLength + 2);
+            readFully(in, email);
+            String userEmail = new String(email.array(), 0, emailLength, StandardCharsets.UTF_8);
+            Header header = new Header(experimentId, userEmail, sampleTimestamp, sps, movingAvg, duration);
+
+            SampleStore samples = new SampleStore(4);
+            ByteBuffer block = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_BYTES);
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(block) < 0;
+                block.flip();
+                // A partial record left over at end of file was torn by the crash
+                while (block.remaining() >= RECORD_BYTES) {
+                    samples.time().add(block.getDouble());
+                    for (int c = 0; c < 4; c++) {
+                        samples.channel(c).add(block.getDouble());
+                    }
+                }
+                block.compact();
+            }
+            return new Recovered(header, samples);
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (in.read(dst) < 0) {
+                throw new EOFException("Truncated journal header");
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A transport carrying the sensor's serial byte stream: {@code #a:b:cp}
+ * frames in, device commands out.
+ *
+ * {@link #open()} blocks until the link is usable and is called from the
+ * connection thread; {@link #close()} may be called from any thread, at any
+ * time, and aborts an open in progress. While open, {@link #input()} is read
+ * by exactly one {@link StreamReader}, which turns it into frames, and
+ * {@link #output()} takes commands. A source can be opened again after it
+ * was closed.
+ */
+public interface SampleSource {
+
+    /** Name shown to the user, e.g. in the device picker. */
+    String name();
+
+    void open() throws IOException;
+
+    /** @return the byte stream from the sensor, or null if not open */
+    InputStream input();
+
+    /** @return the command stream to the sensor, or null if not open */
+    OutputStream output();
+
+    boolean isOpen();
+
+    /** Closes the link; safe to call repeatedly and when never opened. */
+    void close();
+}
@@ -0,0 +1,54 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Columnar sample storage for one session: a time column plus a fixed number
+ * of channel columns, all primitive {@code double}.
+ *
+ * Columns are appended independently (a filtered channel may lag its raw
+ * input), so {@link #size()} reports the number of rows present in every
+ * column.
+ */
+public class SampleStore {
+
+    private final DoubleColumn time = new DoubleColumn();
+    private final DoubleColumn[] channels;
+
+    public SampleStore(int channelCount) {
+        channels = new DoubleColumn[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            channels[i] = new DoubleColumn();
+        }
+    }
+
+    public DoubleColumn time() {
+        return time;
+    }
+
+    public DoubleColumn channel(int index) {
+        return channels[index];
+    }
+
+    public int channelCount() {
+        return channels.length;
+    }
+
+    /** Number of complete rows (present in the time column and every channel). */
+    public int size() {
+        int n = time.size();
+        for (DoubleColumn c : channels) {
+            n = Math.min(n, c.size());
+        }
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        time.clear();
+        for (DoubleColumn c : channels) {
+            c.clear();
+        }
+    }
+}
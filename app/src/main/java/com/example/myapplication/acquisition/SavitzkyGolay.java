@@ -0,0 +1,83 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Savitzky–Golay smoothing taps: the value at the centre of a least-squares
+ * polynomial fit over a sliding window.
+ *
+ * The fit is linear in the samples, so the whole smoother is an FIR filter
+ * whose taps are computed once here; {@link #filter} wraps them in a
+ * {@link FirFilter}. Being centred, the output lags the input by half a
+ * window, and polynomials up to {@code order} pass through unchanged.
+ */
+public final class SavitzkyGolay {
+
+    private SavitzkyGolay() {
+    }
+
+    public static FirFilter filter(int window, int order) {
+        return new FirFilter(taps(window, order));
+    }
+
+    /** Smoothing taps for an odd {@code window} and a fit of degree {@code order}. */
+    public static double[] taps(int window, int order) {
+        if (window < 3 || (window & 1) == 0) {
+            throw new IllegalArgumentException("Savitzky-Golay window must be odd and at least 3: " + window);
+        }
+        if (order < 0 || order >= window) {
+            throw new IllegalArgumentException("Savitzky-Golay order must be between 0 and "
+                    + (window - 1) + ": " + order);
+        }
+        int half = window / 2;
+        int m = order + 1;
+
+        // Normal equations (A^T A) c = e0 with A[i][j] = (i - half)^j; the taps are A c
+        double[][] ata = new double[m][m + 1];
+        for (int i = -half; i <= half; i++) {
+            for (int r = 0; r < m; r++) {
+                for (int c = 0; c < m; c++) {
+                    ata[r][c] += Math.pow(i, r + c);
+                }
+            }
+        }
+        ata[0][m] = 1;
+        double[] coef = solve(ata, m);
+
+        double[] taps = new double[window];
+        for (int i = -half; i <= half; i++) {
+            double t = 0;
+            for (int j = 0; j < m; j++) {
+                t += coef[j] * Math.pow(i, j);
+            }
+            taps[i + half] = t;
+        }
+        return taps;
+    }
+
+    // Gauss-Jordan with partial pivoting on an augmented m x (m + 1) matrix
+    private static double[] solve(double[][] a, int m) {
+        for (int col = 0; col < m; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < m; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            double[] tmp = a[col];
+            a[col] = a[pivot];
+            a[pivot] = tmp;
+            for (int r = 0; r < m; r++) {
+                if (r != col) {
+                    double f = a[r][col] / a[col][col];
+                    for (int c = col; c <= m; c++) {
+                        a[r][c] -= f * a[col][c];
+                    }
+                }
+            }
+        }
+        double[] x = new double[m];
+        for (int r = 0; r < m; r++) {
+            x[r] = a[r][m] / a[r][r];
+        }
+        return x;
+    }
+}
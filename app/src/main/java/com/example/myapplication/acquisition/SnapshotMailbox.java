@@ -0,0 +1,26 @@
+package com.example.myapplication.acquisition;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free single-slot handoff from one producer to one consumer.
+ *
+ * The producer overwrites the slot with every new value and never waits;
+ * the consumer takes whatever is newest, if anything arrived since its last
+ * take. Values the consumer was too slow to see are simply superseded, so a
+ * slow consumer can never hold up the producer.
+ */
+public class SnapshotMailbox<T> {
+
+    private final AtomicReference<T> slot = new AtomicReference<>();
+
+    /** Replaces any value the consumer has not taken yet. */
+    public void publish(T value) {
+        slot.set(value);
+    }
+
+    /** @return the newest unseen value, or null if nothing new was published */
+    public T take() {
+        return slot.getAndSet(null);
+    }
+}
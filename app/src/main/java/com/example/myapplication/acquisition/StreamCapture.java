@@ -0,0 +1,227 @@
+package com.example.myapplication.acquisition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Capture file of the raw bytes read from a sensor link, exactly as they
+ * arrived, so a session can be replayed through the real framing and filter
+ * code later (see {@link ReplaySource}).
+ *
+ * The file holds a header (magic, wall-clock start, free-text label) and then
+ * one record per read: nanoseconds since the start, length, bytes. Records
+ * are buffered, so recording costs a copy per read; {@link #close()} flushes.
+ * A torn record at the end of the file (crash, full disk) is ignored on read.
+ * A capture created with a size limit stops recording, on a record boundary,
+ * before the file would grow past it.
+ */
+public class StreamCapture implements Closeable {
+
+    public static final String SUFFIX = ".capture";
+
+    private static final int MAGIC = 0x424C4331; // "BLC1"
+    private static final int BUFFER_BYTES = 16 * 1024;
+    private static final int RECORD_HEADER_BYTES = 12; // time, length
+
+    private final File file;
+    private final DataOutputStream out;
+    private final long startNanos;
+    private final long maxFileBytes;
+    private long chunks = 0;
+    private long bytes = 0;
+    private long fileBytes;
+    private boolean full = false;
+    private volatile boolean failed = false;
+
+    private StreamCapture(File file, DataOutputStream out, long startNanos, long maxFileBytes) {
+        this.file = file;
+        this.out = out;
+        this.startNanos = startNanos;
+        this.maxFileBytes = maxFileBytes;
+        this.fileBytes = out.size();
+    }
+
+    /** Creates (or truncates) {@code file}; {@code label} is e.g. the device name. */
+    public static StreamCapture create(File file, String label) throws IOException {
+        return create(file, label, Long.MAX_VALUE);
+    }
+
+    /** As {@link #create(File, String)}, recording only while the file stays within {@code maxFileBytes}. */
+    public static StreamCapture create(File file, String label, long maxFileBytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_BYTES));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(label != null ? label : "");
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return new StreamCapture(file, out, System.nanoTime(), maxFileBytes);
+    }
+
+    /** Appends one chunk as read at this moment, unless the size limit was reached. */
+    public synchronized void record(byte[] b, int off, int len) throws IOException {
+        if (full || fileBytes + RECORD_HEADER_BYTES + len > maxFileBytes) {
+            full = true;
+            return;
+        }
+        fileBytes += RECORD_HEADER_BYTES + len;
+        out.writeLong(System.nanoTime() - startNanos);
+        out.writeInt(len);
+        out.write(b, off, len);
+        chunks++;
+        bytes += len;
+    }
+
+    /**
+     * Wraps a link's input so every successful read is also recorded. A
+     * capture write failure never reaches the reader: capturing just stops
+     * and {@link #isFailed()} turns true.
+     */
+    public InputStream tap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    recordQuietly(new byte[]{(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    recordQuietly(b, off, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    private void recordQuietly(byte[] b, int off, int len) {
+        if (failed) {
+            return;
+        }
+        try {
+            record(b, off, len);
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized long getChunks() {
+        return chunks;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /** True once recording stopped at the size limit. */
+    public synchronized boolean isFull() {
+        return full;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    //————————————————————————————
+    // Reading
+    //————————————————————————————
+
+    /** Sequential reader over a capture file's records; reuses one buffer. */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startWallMs;
+        private final String label;
+        private byte[] data = new byte[256];
+        private long atNanos;
+        private int length;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_BYTES));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a capture file: " + file.getName());
+                }
+                startWallMs = in.readLong();
+                label = in.readUTF();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /** @return false at the end of the capture, including a torn last record */
+        public boolean next() throws IOException {
+            try {
+                long at = in.readLong();
+                int len = in.readInt();
+                if (len < 0) {
+                    throw new IOException("Corrupt capture record");
+                }
+                if (len > data.length) {
+                    data = new byte[Math.max(len, data.length * 2)];
+                }
+                in.readFully(data, 0, len);
+                atNanos = at;
+                length = len;
+                return true;
+            } catch (EOFException e) {
+                length = 0;
+                return false;
+            }
+        }
+
+        public long getStartWallMs() {
+            return startWallMs;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /** Time the current chunk was read, relative to the start of the capture. */
+        public long atNanos() {
+            return atNanos;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /** The current chunk in {@code [0, length())}; valid until the next call to {@link #next()}. */
+        public byte[] data() {
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication.acquisition;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongSupplier;
+
+/**
+ * Dedicated blocking reader for one sensor connection.
+ *
+ * The thread sits in {@link InputStream#read(byte[])} and pushes every chunk
+ * straight into a {@link PacketFramer}, so the sample rate is bounded by the
+ * link rather than by a poll/sleep loop. The listener is told when a chunk
+ * carried at least one frame terminator so the consumer can drain the framer.
+ * Each chunk is stamped with the reader's clock as soon as the read returns,
+ * which is as close to the receive time as user space gets.
+ * There is exactly one reader per connection; it ends when the stream closes.
+ */
+public class StreamReader extends Thread {
+
+    public interface Listener {
+        /** Called on the reader thread for every read, with its size and receive stamp. */
+        default void onBytes(int count, long receivedNanos) {
+        }
+
+        /** Called on the reader thread after bytes containing a frame end were queued. */
+        void onFramesAvailable();
+
+        /** Called once when the stream fails or reaches end of stream. */
+        void onStreamClosed(IOException cause);
+    }
+
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private final InputStream in;
+    private final PacketFramer framer;
+    private final Listener listener;
+    private final LongSupplier clock;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private volatile boolean running = true;
+
+    public StreamReader(InputStream in, PacketFramer framer, Listener listener) {
+        this(in, framer, listener, System::nanoTime);
+    }
+
+    /** @param clock monotonic nanosecond clock used to stamp received bytes */
+    public StreamReader(InputStream in, PacketFramer framer, Listener listener, LongSupplier clock) {
+        super("StreamReader");
+        this.in = in;
+        this.framer = framer;
+        this.listener = listener;
+        this.clock = clock;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                int n = in.read(readBuffer);
+                long receivedNanos = clock.getAsLong();
+                if (n < 0) {
+                    throw new EOFException("Sensor stream closed");
+                }
+                if (!running) {
+                    break; // detached while blocked; bytes belong to nobody
+                }
+                framer.write(readBuffer, 0, n, receivedNanos);
+                listener.onBytes(n, receivedNanos);
+                if (containsTerminator(n)) {
+                    listener.onFramesAvailable();
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                running = false;
+                listener.onStreamClosed(e);
+            }
+        }
+    }
+
+    private boolean containsTerminator(int n) {
+        for (int i = 0; i < n; i++) {
+            if (readBuffer[i] == 'p') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops delivering data. The thread itself exits when the underlying
+     * stream is closed or the next read returns.
+     */
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
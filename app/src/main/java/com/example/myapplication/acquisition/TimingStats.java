@@ -0,0 +1,118 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Live timing quality of a session, from the receive timestamps of its
+ * samples.
+ *
+ * <ul>
+ * <li>jitter: standard deviation of the interval between samples;</li>
+ * <li>drift: real time covered by the intervals minus the time the nominal
+ * rate implies for the samples received and missed in them (positive =
+ * running late);</li>
+ * <li>missed: samples that never arrived, from gaps in the device sequence
+ * number when there is one, else from intervals of 1.5 periods or more.</li>
+ * </ul>
+ *
+ * The interval across a {@link #pause()} is not counted. Not thread-safe:
+ * owned by the acquisition thread.
+ */
+public class TimingStats {
+
+    private long periodNanos;
+
+    private long lastNanos = -1;
+    private boolean lastHadSequence = false;
+    private long lastSequence = 0;
+
+    private long samples = 0;
+    private long missed = 0;
+
+    // Welford running mean / variance of counted intervals, in nanoseconds
+    private long intervals = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private long totalIntervalNanos = 0;
+    private long maxIntervalNanos = 0;
+
+    public TimingStats(long periodNanos) {
+        reset(periodNanos);
+    }
+
+    /** Clears everything and sets the nominal sample period. */
+    public void reset(long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        this.periodNanos = periodNanos;
+        lastNanos = -1;
+        lastHadSequence = false;
+        lastSequence = 0;
+        samples = 0;
+        missed = 0;
+        intervals = 0;
+        mean = 0;
+        m2 = 0;
+        totalIntervalNanos = 0;
+        maxIntervalNanos = 0;
+    }
+
+    /**
+     * Records one sample.
+     *
+     * @param stampNanos  receive time, monotonic
+     * @param hasSequence whether {@code sequence} came from the device
+     */
+    public void add(long stampNanos, boolean hasSequence, long sequence) {
+        samples++;
+        if (lastNanos >= 0) {
+            long interval = stampNanos - lastNanos;
+            intervals++;
+            double delta = interval - mean;
+            mean += delta / intervals;
+            m2 += delta * (interval - mean);
+            totalIntervalNanos += interval;
+            maxIntervalNanos = Math.max(maxIntervalNanos, interval);
+
+            if (hasSequence && lastHadSequence) {
+                long step = sequence - lastSequence;
+                if (step > 1) {
+                    missed += step - 1; // a step <= 0 is a device restart or wrap
+                }
+            } else if (interval * 2 >= periodNanos * 3) {
+                missed += Math.round((double) interval / periodNanos) - 1;
+            }
+        }
+        lastNanos = stampNanos;
+        lastHadSequence = hasSequence;
+        lastSequence = sequence;
+    }
+
+    /** The next interval is a deliberate break (collection stopped), not a timing fault. */
+    public void pause() {
+        lastNanos = -1;
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    public long missed() {
+        return missed;
+    }
+
+    public double meanIntervalMs() {
+        return mean / 1e6;
+    }
+
+    public double jitterMs() {
+        return intervals > 1 ? Math.sqrt(m2 / (intervals - 1)) / 1e6 : 0;
+    }
+
+    public double maxIntervalMs() {
+        return maxIntervalNanos / 1e6;
+    }
+
+    public double driftMs() {
+        return (totalIntervalNanos - (intervals + missed) * periodNanos) / 1e6;
+    }
+}
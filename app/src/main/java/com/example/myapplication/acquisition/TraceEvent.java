@@ -0,0 +1,41 @@
+package com.example.myapplication.acquisition;
+
+/**
+ * Events recorded into a {@link TraceRing}. Each carries up to three long
+ * arguments, named here so the dump is self-describing; arguments flagged in
+ * {@code doubleArgs} hold {@link Double#doubleToRawLongBits} values.
+ */
+public enum TraceEvent {
+    /** Poll command written; a0 = samples requested. */
+    POLL("poll", 0, "samples"),
+    /** Poll tick skipped because collection stopped or the link is down. */
+    POLL_SKIPPED("poll skipped", 0, "started", "connected"),
+    /** Reply poll never answered; a0 = consecutive misses. */
+    POLL_MISSED("poll missed", 0, "misses"),
+    /** Bytes read from the link by the stream reader. */
+    READ("read", 0, "bytes"),
+    /** Span: one drain of the framer on the acquisition thread. */
+    DRAIN("drain", 0, "samples", "dropped"),
+    /** One sample converted and stored. */
+    SAMPLE("sample", 0, "n", "raw1", "stamp_ns"),
+    /** Rolling cortisol estimate for the newest window. */
+    ROLLING("rolling", 0b110, "window", "avg_v", "cortisol"),
+    /** Rolling window outside the calibrated range. */
+    ROLLING_INVALID("rolling invalid", 0b110, "window", "avg_v", "y_mv"),
+    /** Signal quality fault started; a0 = {@link QualityMonitor.Fault} ordinal, a1 = port (-1 = all). */
+    QUALITY_RAISED("quality raised", 0b100, "fault", "port", "value"),
+    /** Signal quality fault ended. */
+    QUALITY_CLEARED("quality cleared", 0b100, "fault", "port", "value"),
+    /** Span: one incremental graph update on the UI thread. */
+    DRAW("draw", 0, "rows");
+
+    public final String label;
+    final int doubleArgs;
+    final String[] args;
+
+    TraceEvent(String label, int doubleArgs, String... args) {
+        this.label = label;
+        this.doubleArgs = doubleArgs;
+        this.args = args;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.myapplication.acquisition;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size in-memory ring of binary trace events for the acquisition path,
+ * replacing per-sample logcat output.
+ *
+ * Each record is an event id, a {@link System#nanoTime()} stamp, the writing
+ * thread and up to three long arguments, stored in preallocated parallel
+ * arrays: recording never allocates and a disabled ring costs one volatile
+ * read. Any thread may record; once full the oldest events are overwritten.
+ * {@link #writeChromeJson} dumps the ring in the Chrome trace event format,
+ * which Perfetto and chrome://tracing open directly.
+ */
+public class TraceRing {
+
+    private static final TraceEvent[] EVENTS = TraceEvent.values();
+
+    private final int mask;
+    private final int[] ids;
+    private final long[] stamps;
+    private final long[] durations; // -1 for instant events
+    private final long[] threads;
+    private final long[] args;      // three per slot
+    // Claim index + 1 of the record a slot holds, set after the record is written
+    private final AtomicLongArray published;
+    private final AtomicLong cursor = new AtomicLong();
+    private volatile boolean enabled;
+
+    /** @param capacity events kept, rounded up to a power of two */
+    public TraceRing(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("capacity must be in 1..2^24");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        ids = new int[size];
+        stamps = new long[size];
+        durations = new long[size];
+        threads = new long[size];
+        args = new long[size * 3];
+        published = new AtomicLongArray(size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Events recorded since creation or {@link #clear()}, including overwritten ones. */
+    public long recorded() {
+        return cursor.get();
+    }
+
+    public void instant(TraceEvent event, long a0, long a1, long a2) {
+        if (enabled) {
+            put(event, System.nanoTime(), -1, a0, a1, a2);
+        }
+    }
+
+    public void instant(TraceEvent event, long a0) {
+        if (enabled) {
+            put(event, System.nanoTime(), -1, a0, 0, 0);
+        }
+    }
+
+    /** Records a span that started and ended at the given {@link System#nanoTime()} values. */
+    public void span(TraceEvent event, long startNanos, long endNanos, long a0, long a1) {
+        if (enabled) {
+            put(event, startNanos, Math.max(0, endNanos - startNanos), a0, a1, 0);
+        }
+    }
+
+    public static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    /** Drops all events. Not atomic against concurrent writers. */
+    public void clear() {
+        cursor.set(0);
+        for (int i = 0; i <= mask; i++) {
+            published.set(i, 0);
+        }
+    }
+
+    private void put(TraceEvent event, long stamp, long duration, long a0, long a1, long a2) {
+        long claim = cursor.getAndIncrement();
+        int slot = (int) claim & mask;
+        published.getAndSet(slot, 0); // full fence: readers skip the slot while it is rewritten
+        ids[slot] = event.ordinal();
+        stamps[slot] = stamp;
+        durations[slot] = duration;
+        threads[slot] = Thread.currentThread().getId();
+        args[slot * 3] = a0;
+        args[slot * 3 + 1] = a1;
+        args[slot * 3 + 2] = a2;
+        published.set(slot, claim + 1);
+    }
+
+    //————————————————————————————
+    // Dump
+    //————————————————————————————
+
+    /**
+     * Writes the retained events, oldest first, as a Chrome trace JSON object.
+     * Timestamps are microseconds relative to the oldest event. Slots being
+     * rewritten while the dump runs are skipped.
+     *
+     * @return number of events written
+     */
+    public int writeChromeJson(Appendable out) throws IOException {
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity());
+        long origin = Long.MIN_VALUE;
+        int written = 0;
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (long claim = start; claim < end; claim++) {
+            int slot = (int) claim & mask;
+            if (published.get(slot) != claim + 1) {
+                continue;
+            }
+            TraceEvent event = EVENTS[ids[slot]];
+            long stamp = stamps[slot];
+            long duration = durations[slot];
+            long thread = threads[slot];
+            long a0 = args[slot * 3];
+            long a1 = args[slot * 3 + 1];
+            long a2 = args[slot * 3 + 2];
+            if (!published.compareAndSet(slot, claim + 1, claim + 1)) {
+                continue; // overwritten while copying
+            }
+            if (origin == Long.MIN_VALUE) {
+                origin = stamp;
+            }
+            out.append(written == 0 ? "\n" : ",\n");
+            out.append("{\"name\":\"").append(event.label)
+                    .append("\",\"cat\":\"acquisition\",\"pid\":1,\"tid\":").append(Long.toString(thread))
+                    .append(",\"ts\":").append(micros(stamp - origin));
+            if (duration >= 0) {
+                out.append(",\"ph\":\"X\",\"dur\":").append(micros(duration));
+            } else {
+                out.append(",\"ph\":\"i\",\"s\":\"t\"");
+            }
+            out.append(",\"args\":{");
+            long[] values = {a0, a1, a2};
+            for (int i = 0; i < event.args.length; i++) {
+                out.append(i == 0 ? "" : ",").append('"').append(event.args[i]).append("\":");
+                if ((event.doubleArgs & (1 << i)) != 0) {
+                    double d = Double.longBitsToDouble(values[i]);
+                    out.append(Double.isFinite(d) ? Double.toString(d) : "null");
+                } else {
+                    out.append(Long.toString(values[i]));
+                }
+            }
+            out.append("}}");
+            written++;
+        }
+        out.append("\n]}\n");
+        return written;
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Burst frames through the framer, the poll schedule, and a benchmark of
+ * achieved against requested rate with the simulated sensor. The benchmark
+ * prints one line per rate.
+ */
+public class BurstAcquisitionTest {
+
+    private static final long RUN_MS = 1000;
+
+    private static void write(PacketFramer framer, String bytes) {
+        byte[] b = bytes.getBytes();
+        framer.write(b, 0, b.length, 7);
+    }
+
+    @Test
+    public void framer_decodesBurstFrameOneSampleAtATime() {
+        PacketFramer framer = new PacketFramer(1024);
+        write(framer, "#1:2:3;4:5:6:90;7:8:9p#10:11:12p");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(framer.next());
+            assertEquals(3, framer.burstSize());
+            assertEquals(i, framer.burstIndex());
+            assertEquals(3 * i + 1, framer.value(0));
+            assertEquals(3 * i + 3, framer.value(2));
+            assertEquals(i == 1, framer.hasSequence());
+            assertEquals(i == 1 ? 90 : 0, framer.sequence());
+            assertEquals(7, framer.timestampNanos());
+        }
+        assertTrue(framer.next());
+        assertEquals(1, framer.burstSize());
+        assertEquals(10, framer.value(0));
+        assertFalse(framer.next());
+        assertEquals(2, framer.getFramesDecoded());
+    }
+
+    @Test
+    public void framer_dropsWholeBurstOnError() {
+        PacketFramer framer = new PacketFramer(4096);
+        write(framer, "#1:2:3;4:x:6;7:8:9p"); // bad sample in the middle
+        write(framer, "#1:2:3;;4:5:6p");      // empty sample
+        StringBuilder tooLong = new StringBuilder("#");
+        for (int i = 0; i <= PacketFramer.MAX_BURST; i++) {
+            tooLong.append(i == 0 ? "" : ";").append("1:2:3");
+        }
+        write(framer, tooLong.append('p').toString());
+        assertFalse(framer.next());
+        assertEquals(3, framer.getFramesDropped());
+
+        write(framer, "#4:5:6;7:8:9p");
+        framer.discard(); // unread burst samples go too
+        assertFalse(framer.next());
+    }
+
+    @Test
+    public void framer_dropsFrameCutByOverrun() {
+        PacketFramer framer = new PacketFramer(16);
+        write(framer, "#1:2:3p#123:45");  // 14 of 16 bytes
+        write(framer, "6:7p#9:9:9p");     // only "6" fits, the rest is lost
+        write(framer, "x");               // ring full: lost as well
+        assertEquals(11, framer.getBytesOverrun());
+
+        assertTrue(framer.next());
+        assertEquals(1, framer.value(0));
+        assertFalse(framer.next());
+        // The cut frame must not continue with bytes that followed the lost ones
+        write(framer, "6:7p#4:5:6p");
+        assertTrue(framer.next());
+        assertEquals(4, framer.value(0));
+        assertFalse(framer.hasSequence());
+        assertFalse(framer.next());
+        assertEquals(2, framer.getFramesDecoded());
+        assertEquals(1, framer.getFramesDropped());
+    }
+
+    @Test
+    public void polling_keepsRequestRateBoundedAtAnySampleRate() {
+        BurstPolling slow = new BurstPolling(5);
+        assertEquals(1, slow.samplesPerRequest);
+        assertEquals(200_000, slow.intervalMicros);
+        assertEquals("0\r", slow.command());
+
+        BurstPolling fast = new BurstPolling(500);
+        assertEquals(25, fast.samplesPerRequest);
+        assertEquals(50_000, fast.intervalMicros);
+        assertEquals("B25\r", fast.command());
+
+        BurstPolling top = new BurstPolling(BurstPolling.MAX_SAMPLES_PER_SECOND);
+        assertEquals(PacketFramer.MAX_BURST, top.samplesPerRequest);
+        try {
+            new BurstPolling(BurstPolling.MAX_SAMPLES_PER_SECOND + 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // beyond what one burst per poll can carry
+        }
+    }
+
+    @Test
+    public void benchmark_achievedVersusRequestedRate() throws Exception {
+        for (int requested : new int[]{5, 100, 250, 500, BurstPolling.MAX_SAMPLES_PER_SECOND}) {
+            double achieved = pollFor(requested);
+            System.out.printf("burst poll: requested %d Hz, achieved %.1f Hz%n", requested, achieved);
+            assertEquals("at " + requested + " Hz", requested, achieved, requested * 0.1 + 5);
+        }
+        double streamed = streamFor(500);
+        System.out.printf("stream: requested 500 Hz, achieved %.1f Hz%n", streamed);
+        assertEquals(500, streamed, 50);
+    }
+
+    // Polls the simulator like the app's timer does and counts decoded samples
+    private static double pollFor(int samplesPerSecond) throws Exception {
+        BurstPolling plan = new BurstPolling(samplesPerSecond);
+        DeviceSimulator sim = new DeviceSimulator(new DeviceSimulator.Config());
+        sim.open();
+        AtomicLong samples = attach(sim);
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                sim.output().write(plan.command().getBytes());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, 0, plan.intervalMicros, TimeUnit.MICROSECONDS);
+        // Stop half a period early: the polls sent cover exactly RUN_MS of samples
+        Thread.sleep(RUN_MS - plan.intervalMicros / 2000);
+        timer.shutdownNow();
+        timer.awaitTermination(1, TimeUnit.SECONDS);
+        Thread.sleep(50); // let the last reply arrive
+        sim.close();
+        return samples.get() * 1000.0 / RUN_MS;
+    }
+
+    private static double streamFor(int samplesPerSecond) throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.sampleRateHz = samplesPerSecond;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        sim.open();
+        AtomicLong samples = attach(sim);
+        sim.output().write("S\r".getBytes());
+        Thread.sleep(RUN_MS);
+        sim.output().write("X\r".getBytes());
+        long count = samples.get();
+        sim.close();
+        return count * 1000.0 / RUN_MS;
+    }
+
+    private static AtomicLong attach(DeviceSimulator sim) {
+        PacketFramer framer = new PacketFramer(1 << 16);
+        AtomicLong samples = new AtomicLong();
+        new StreamReader(sim.input(), framer, new StreamReader.Listener() {
+            @Override
+            public void onFramesAvailable() {
+                while (framer.next()) {
+                    samples.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onStreamClosed(IOException cause) {
+            }
+        }).start();
+        return samples;
+    }
+}
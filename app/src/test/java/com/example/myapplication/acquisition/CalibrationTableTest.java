@@ -0,0 +1,41 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CalibrationTableTest {
+
+    private final Calibration curve = Calibration.DEFAULT;
+    private final CalibrationTable table = new CalibrationTable(curve);
+
+    @Test
+    public void matchesExactCurve() {
+        double worst = 0;
+        for (double mv = curve.minMv; mv <= curve.maxMv; mv += 0.0037) {
+            double exact = curve.evaluate(mv);
+            worst = Math.max(worst, Math.abs(table.cortisolAtMillivolts(mv) - exact) / exact);
+        }
+        assertTrue("relative error " + worst, worst < 1e-5);
+        assertEquals(curve.evaluate(curve.minMv), table.cortisolAtMillivolts(curve.minMv), 0.0);
+        assertEquals(curve.evaluate(curve.maxMv), table.cortisolAtMillivolts(curve.maxMv), 0.0);
+    }
+
+    @Test
+    public void outOfRange_isInvalid() {
+        assertEquals(CalibrationTable.INVALID, table.cortisol(0.4279), 0.0);
+        assertEquals(CalibrationTable.INVALID, table.cortisol(0.4787), 0.0);
+        assertEquals(CalibrationTable.INVALID, table.cortisol(Double.NaN), 0.0);
+        assertTrue(table.cortisol(0.45) > 0);
+    }
+
+    @Test
+    public void batchMatchesScalar() {
+        double[] volts = {0.0, 0.428, 0.44, 0.45123, 0.46, 0.4786686, 0.5};
+        double[] out = new double[volts.length];
+        table.convert(volts, out);
+        for (int i = 0; i < volts.length; i++) {
+            assertEquals(table.cortisol(volts[i]), out[i], 0.0);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CommandWriterTest {
+
+    @Test
+    public void writesCommandsInOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CountDownLatch written = new CountDownLatch(3);
+        CommandWriter writer = new CommandWriter(out, 4, new CommandWriter.Listener() {
+            @Override
+            public void onWritten(byte[] command, long startedNanos, long finishedNanos) {
+                assertTrue(finishedNanos >= startedNanos);
+                written.countDown();
+            }
+
+            @Override
+            public void onWriteFailed(IOException cause) {
+                fail(cause.toString());
+            }
+        });
+        writer.start();
+        assertTrue(writer.offer("R\r".getBytes()));
+        assertTrue(writer.offer("0\r".getBytes()));
+        assertTrue(writer.offer("B5\r".getBytes()));
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertEquals("R\r0\rB5\r", out.toString());
+
+        writer.shutdown();
+        writer.join(1000);
+        assertFalse(writer.isAlive());
+        assertFalse(writer.offer("0\r".getBytes()));
+    }
+
+    @Test
+    public void stuckWrite_neverBlocksCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream stuck = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        CommandWriter writer = new CommandWriter(stuck, 2, cause -> { });
+        writer.start();
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (writer.offer(new byte[]{'0'})) {
+                accepted++;
+            }
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertTrue(accepted <= 3); // one being written plus a full queue
+        writer.shutdown();
+        release.countDown();
+        writer.join(1000);
+        assertFalse(writer.isAlive());
+    }
+
+    @Test
+    public void writeFailure_isReportedOnce() throws Exception {
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        CommandWriter writer = new CommandWriter(broken, 4, cause -> {
+            assertTrue(failure.compareAndSet(null, cause));
+            failed.countDown();
+        });
+        writer.start();
+        writer.offer("0\r".getBytes());
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+        writer.join(1000);
+        assertFalse(writer.isRunning());
+        assertFalse(writer.offer("0\r".getBytes()));
+        assertEquals("broken pipe", failure.get().getMessage());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the connection state machine with a scripted link and checks the
+ * backoff schedule and gap bookkeeping it relies on.
+ */
+public class ConnectionManagerTest {
+
+    private static final long WAIT_S = 5;
+
+    // Fails the first n opens, then succeeds
+    private static class ScriptedLink implements ConnectionManager.Link {
+        final AtomicInteger failuresLeft;
+        final AtomicInteger opens = new AtomicInteger();
+        final AtomicInteger closes = new AtomicInteger();
+
+        ScriptedLink(int failures) {
+            failuresLeft = new AtomicInteger(failures);
+        }
+
+        @Override
+        public void open() throws IOException {
+            opens.incrementAndGet();
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IOException("refused");
+            }
+        }
+
+        @Override
+        public void close() {
+            closes.incrementAndGet();
+        }
+    }
+
+    private static class Events implements ConnectionManager.Listener {
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        final List<Long> delays = new ArrayList<>();
+
+        @Override
+        public synchronized void onStateChanged(ConnectionManager.State state, int attempt, long delayMs) {
+            if (state == ConnectionManager.State.BACKOFF) {
+                delays.add(delayMs);
+            }
+        }
+
+        @Override
+        public void onConnected(boolean reconnected, long downMs) {
+            queue.add(reconnected ? "reconnected " + downMs : "connected");
+        }
+
+        @Override
+        public void onFailed(int attempts, IOException cause) {
+            queue.add("failed " + attempts);
+        }
+
+        String next() throws InterruptedException {
+            String event = queue.poll(WAIT_S, TimeUnit.SECONDS);
+            assertNotNull("no connection event", event);
+            return event;
+        }
+    }
+
+    private static Backoff fastBackoff() {
+        return new Backoff(2, 16, new Random(1));
+    }
+
+    @Test
+    public void backoff_growsExponentiallyWithinCap() {
+        Backoff backoff = new Backoff(100, 1000, new Random(7));
+        for (int trial = 0; trial < 1000; trial++) {
+            for (int attempt = 1; attempt <= 10; attempt++) {
+                long ceiling = Math.min(1000, 100L << (attempt - 1));
+                long delay = backoff.delayMs(attempt);
+                assertTrue(delay >= ceiling / 2);
+                assertTrue(delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void connect_retriesUntilOpen() throws Exception {
+        ScriptedLink link = new ScriptedLink(2);
+        Events events = new Events();
+        ConnectionManager manager = new ConnectionManager(link, fastBackoff(), 3, 3, events);
+
+        manager.connect();
+        assertEquals("connected", events.next());
+        assertEquals(3, link.opens.get());
+        assertEquals(2, events.delays.size());
+        assertTrue(manager.isConnected());
+        manager.shutdown();
+    }
+
+    @Test
+    public void connect_givesUpAfterAttemptLimit() throws Exception {
+        ScriptedLink link = new ScriptedLink(Integer.MAX_VALUE);
+        Events events = new Events();
+        ConnectionManager manager = new ConnectionManager(link, fastBackoff(), 3, 8, events);
+
+        manager.connect();
+        assertEquals("failed 3", events.next());
+        assertEquals(ConnectionManager.State.IDLE, manager.state());
+        manager.shutdown();
+    }
+
+    @Test
+    public void linkLost_reconnectsAndReportsDowntime() throws Exception {
+        ScriptedLink link = new ScriptedLink(0);
+        Events events = new Events();
+        ConnectionManager manager = new ConnectionManager(link, fastBackoff(), 1, 5, events);
+
+        manager.connect();
+        assertEquals("connected", events.next());
+
+        link.failuresLeft.set(3);
+        manager.linkLost();
+        manager.linkLost(); // duplicate report while reconnecting is ignored
+        String event = events.next();
+        assertTrue(event, event.startsWith("reconnected "));
+        assertTrue(Long.parseLong(event.substring("reconnected ".length())) >= 0);
+        assertEquals(5, link.opens.get());
+        assertNull(events.queue.poll(50, TimeUnit.MILLISECONDS));
+        manager.shutdown();
+    }
+
+    @Test
+    public void gapLog_recordsOneGapPerDropout() {
+        GapLog gaps = new GapLog();
+        assertNull(gaps.close(10));
+
+        gaps.open(120, 1000);
+        gaps.open(125, 1500); // already open
+        GapLog.Gap gap = gaps.close(4000);
+        assertEquals(120, gap.afterSample);
+        assertEquals(3000, gap.durationMs());
+
+        gaps.open(300, 9000);
+        gaps.close(9500);
+        assertEquals(2, gaps.gaps().size());
+        assertEquals(3500, gaps.totalMs());
+        assertFalse(gaps.isOpen());
+    }
+}
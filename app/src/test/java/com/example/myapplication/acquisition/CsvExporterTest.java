@@ -0,0 +1,118 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+public class CsvExporterTest {
+
+    private static DoubleColumn column(double... values) {
+        DoubleColumn c = new DoubleColumn();
+        for (double v : values) {
+            c.add(v);
+        }
+        return c;
+    }
+
+    // Counts bytes and drops them
+    private static class NullChannel implements WritableByteChannel {
+        long bytes = 0;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void writesRows() throws Exception {
+        DoubleColumn time = column(0.0, 0.01, 0.02, 1234.5);
+        DoubleColumn port = column(0.45, -1.0000019, Double.NaN, 3.0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        long written = new CsvExporter(null).export(Channels.newChannel(bytes), "Head\nt,v", 4, time, port);
+
+        String csv = bytes.toString(StandardCharsets.UTF_8.name());
+        assertEquals("Head\nt,v"
+                + "\n1,0.0,0.45"
+                + "\n2,0.01,-1.000002"
+                + "\n3,0.02,NaN"
+                + "\n4,1234.5,3.0", csv);
+        assertEquals(csv.length(), written);
+    }
+
+    @Test
+    public void reportsProgressAndCancels() throws Exception {
+        int rows = 100_000;
+        DoubleColumn c = new DoubleColumn();
+        for (int i = 0; i < rows; i++) {
+            c.add(i * 0.001);
+        }
+
+        int[] last = {-1};
+        new CsvExporter((done, total) -> last[0] = done).export(new NullChannel(), "", rows, c, c);
+        assertEquals(rows, last[0]);
+
+        CsvExporter exporter = new CsvExporter((done, total) -> {
+            if (done > 0) {
+                throw new AssertionError("flushed after cancel");
+            }
+        });
+        exporter.cancel();
+        try {
+            exporter.export(new NullChannel(), "", rows, c, c);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            assertTrue(exporter.isCancelled());
+        }
+    }
+
+    @Test
+    public void benchmarkMillionRows() throws Exception {
+        int rows = 1_000_000;
+        DoubleColumn t = new DoubleColumn(), p0 = new DoubleColumn(), p1 = new DoubleColumn(), p2 = new DoubleColumn();
+        for (int i = 0; i < rows; i++) {
+            t.add(i / 100.0);
+            p0.add(0.44 + Math.sin(i * 1e-3) * 0.01);
+            p1.add(0.45 + Math.cos(i * 1e-3) * 0.01);
+            p2.add(0.46 + Math.sin(i * 2e-3) * 0.01);
+        }
+
+        NullChannel out = new NullChannel();
+        long start = System.nanoTime();
+        new CsvExporter(null).export(out, "", rows, t, p0, p1, p2);
+        long exporterMs = (System.nanoTime() - start) / 1_000_000;
+
+        // The previous approach: one String per row
+        ByteArrayOutputStream old = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            old.write(("\n" + (i + 1) + "," + t.get(i) + "," + p0.get(i) + ","
+                    + p1.get(i) + "," + p2.get(i)).getBytes());
+        }
+        long stringMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("CSV " + rows + " rows: exporter " + exporterMs + " ms ("
+                + out.bytes / 1024 + " KB), per-row strings " + stringMs + " ms");
+        assertTrue(out.bytes > rows * 30L);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the streaming despiker against the batch cleanGraph it replaced,
+ * which OutputBluetooth ran over the whole average column after every sample.
+ */
+public class DespikerTest {
+
+    // Original OutputBluetooth.cleanGraph
+    private static void cleanGraph(ArrayList<Double> arl) {
+        if (arl == null || arl.size() < 3) return;
+        int size = arl.size();
+        for (int a = 1; a < size - 1; a++) {
+            // Single outlier
+            if ((arl.get(a) - arl.get(a - 1) > 0.01 && arl.get(a) - arl.get(a + 1) > 0.01) ||
+                    (arl.get(a - 1) - arl.get(a) > 0.01 && arl.get(a + 1) - arl.get(a) > 0.01)) {
+                arl.set(a, (arl.get(a - 1) + arl.get(a + 1)) / 2);
+            }
+            // Two-point outlier
+            if (a < size - 2) {
+                double avg2 = (arl.get(a) + arl.get(a + 1)) / 2;
+                if ((avg2 - arl.get(a - 1) > 0.01 && avg2 - arl.get(a + 2) > 0.01) ||
+                        (arl.get(a - 1) - avg2 > 0.01 && arl.get(a + 2) - avg2 > 0.01)) {
+                    arl.set(a, (arl.get(a - 1) + arl.get(a + 2)) / 2);
+                    arl.set(a + 1, (arl.get(a - 1) + arl.get(a + 2)) / 2);
+                }
+            }
+            // Three-point outlier
+            if (a < size - 3) {
+                double avg3 = (arl.get(a) + arl.get(a + 1) + arl.get(a + 2)) / 3;
+                if ((avg3 - arl.get(a - 1) > 0.01 && avg3 - arl.get(a + 3) > 0.01) ||
+                        (arl.get(a - 1) - avg3 > 0.01 && arl.get(a + 3) - avg3 > 0.01)) {
+                    arl.set(a, (arl.get(a - 1) + arl.get(a + 3)) / 2);
+                    arl.set(a + 1, (arl.get(a - 1) + arl.get(a + 3)) / 2);
+                    arl.set(a + 2, (arl.get(a - 1) + arl.get(a + 3)) / 2);
+                }
+            }
+        }
+    }
+
+    // Appends the signal one value at a time to both and compares every final value
+    // after each append, then the whole column, tail included, at the end; returns how
+    // many values were despiked
+    private static int assertMatchesBatch(String name, double[] signal) {
+        ArrayList<Double> batch = new ArrayList<>();
+        DoubleColumn column = new DoubleColumn();
+        Despiker despiker = new Despiker(column);
+        for (int n = 1; n <= signal.length; n++) {
+            batch.add(signal[n - 1]);
+            cleanGraph(batch);
+            column.add(signal[n - 1]);
+            int settled = despiker.update();
+            assertEquals(Math.max(0, n - Despiker.LOOKAHEAD), settled);
+            for (int i = 0; i < settled; i++) {
+                assertEquals(name + " value " + i + " after " + n + " samples",
+                        Double.doubleToRawLongBits(batch.get(i)), Double.doubleToRawLongBits(column.get(i)));
+            }
+        }
+        int changed = 0;
+        for (int i = 0; i < signal.length; i++) {
+            assertEquals(name + " value " + i + " at the end",
+                    Double.doubleToRawLongBits(batch.get(i)), Double.doubleToRawLongBits(column.get(i)));
+            if (column.get(i) != signal[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Test
+    public void matchesBatch_noisySignalWithSpikes() {
+        Random random = new Random(11);
+        double[] signal = new double[1500];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = 0.45 + 0.03 * Math.sin(i / 200.0) + 0.003 * random.nextGaussian();
+        }
+        // Runs of one, two and three samples up and down, at the edges too
+        for (int start = 0; start < signal.length; start += 37) {
+            int width = 1 + (start / 37) % 3;
+            double jump = (start / 37) % 2 == 0 ? 0.05 : -0.05;
+            for (int i = start; i < Math.min(signal.length, start + width); i++) {
+                signal[i] += jump;
+            }
+        }
+        signal[signal.length - 1] += 0.08;
+        assertTrue(assertMatchesBatch("spiky", signal) > 50);
+    }
+
+    @Test
+    public void matchesBatch_shortAndEdgeSignals() {
+        assertMatchesBatch("single", new double[]{0.45});
+        assertMatchesBatch("pair", new double[]{0.45, 0.6});
+        assertMatchesBatch("first spike", new double[]{0.6, 0.45, 0.45, 0.45, 0.45, 0.45});
+        assertMatchesBatch("last spike", new double[]{0.45, 0.45, 0.45, 0.45, 0.45, 0.6});
+        assertEquals(3, assertMatchesBatch("three up", new double[]{0.45, 0.45, 0.5, 0.5, 0.5, 0.45, 0.45, 0.45}));
+        assertMatchesBatch("steps", new double[]{0.4, 0.42, 0.44, 0.46, 0.48, 0.5, 0.48, 0.46});
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the real reader and framer against the simulated sensor, including
+ * link faults and load well above the device's own rate.
+ */
+public class DeviceSimulatorTest {
+
+    private static final long WAIT_S = 5;
+
+    // Decodes everything the simulator sends, like the acquisition pipeline
+    private static class Host implements StreamReader.Listener {
+        final PacketFramer framer = new PacketFramer(1 << 16);
+        final BlockingQueue<int[]> samples = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> closed = new LinkedBlockingQueue<>();
+
+        @Override
+        public synchronized void onFramesAvailable() {
+            while (framer.next()) {
+                samples.add(new int[]{framer.value(0), framer.value(1), framer.value(2)});
+            }
+        }
+
+        @Override
+        public void onStreamClosed(IOException cause) {
+            closed.add(String.valueOf(cause.getMessage()));
+        }
+
+        int[] next() throws InterruptedException {
+            int[] sample = samples.poll(WAIT_S, TimeUnit.SECONDS);
+            assertNotNull("no frame", sample);
+            return sample;
+        }
+    }
+
+    private static void send(DeviceSimulator sim, String command) throws IOException {
+        OutputStream out = sim.output();
+        out.write((command + "\r").getBytes());
+        out.flush();
+    }
+
+    private static Host attach(DeviceSimulator sim) {
+        Host host = new Host();
+        new StreamReader(sim.input(), host.framer, host).start();
+        return host;
+    }
+
+    @Test
+    public void pollProtocol_returnsOneFramePerRequest() throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.waveform = (n, channel) -> (int) n * 10 + channel;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        sim.open();
+        Host host = attach(sim);
+
+        send(sim, "R"); // banner is not a frame
+        for (int i = 0; i < 3; i++) {
+            send(sim, "0");
+            assertArrayEquals(new int[]{i * 10, i * 10 + 1, i * 10 + 2}, host.next());
+        }
+        assertNull(host.samples.poll(50, TimeUnit.MILLISECONDS));
+        sim.close();
+        assertFalse(sim.isOpen());
+    }
+
+    @Test
+    public void streaming_survivesSplitFramesAndJitterAtHighRate() throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.sampleRateHz = 500; // 100x the sensor
+        config.jitterMicros = 500;
+        config.splitRate = 0.5;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        sim.open();
+        Host host = attach(sim);
+
+        send(sim, "S");
+        for (int i = 0; i < 500; i++) {
+            int[] sample = host.next();
+            for (int c = 0; c < PacketFramer.CHANNELS; c++) {
+                assertEquals(DeviceSimulator.DEFAULT_WAVEFORM.sample(i, c), sample[c]);
+            }
+        }
+        send(sim, "X");
+        assertEquals(0, host.framer.getFramesDropped());
+        sim.close();
+    }
+
+    @Test
+    public void byteDrops_loseFramesWithoutCorruptingOthers() throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.byteDropRate = 0.01;
+        config.seed = 42;
+        config.waveform = (n, channel) -> 1000 + channel;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        sim.open();
+        Host host = attach(sim);
+
+        for (int i = 0; i < 2000; i++) {
+            send(sim, "0");
+        }
+        send(sim, "R"); // round trip: everything before it has been sent
+        while (sim.getFramesSent() < 2000) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(100);
+
+        assertTrue(sim.getBytesDropped() > 0);
+        int good = 0;
+        int[] sample;
+        while ((sample = host.samples.poll()) != null) {
+            // A lost ':' or digit can merge fields; a lost '#' or 'p' must not
+            // leak a value from another frame into this one
+            if (sample[0] == 1000 && sample[1] == 1001 && sample[2] == 1002) {
+                good++;
+            }
+        }
+        assertTrue("good " + good, good > 2000 * 0.7);
+        sim.close();
+    }
+
+    @Test
+    public void disconnect_isRecoveredByConnectionManager() throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.sampleRateHz = 1000;
+        config.disconnectAfterFrames = 50;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        AtomicInteger received = new AtomicInteger();
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        ConnectionManager[] manager = new ConnectionManager[1];
+
+        ConnectionManager.Link link = new ConnectionManager.Link() {
+            @Override
+            public void open() throws IOException {
+                sim.open();
+                Host host = new Host() {
+                    @Override
+                    public synchronized void onFramesAvailable() {
+                        while (framer.next()) {
+                            received.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public void onStreamClosed(IOException cause) {
+                        manager[0].linkLost();
+                    }
+                };
+                new StreamReader(sim.input(), host.framer, host).start();
+                send(sim, "S");
+            }
+
+            @Override
+            public void close() {
+                sim.close();
+            }
+        };
+        manager[0] = new ConnectionManager(link, new Backoff(1, 4), 1, 5,
+                new ConnectionManager.Listener() {
+                    @Override
+                    public void onStateChanged(ConnectionManager.State state, int attempt, long delayMs) {
+                    }
+
+                    @Override
+                    public void onConnected(boolean reconnected, long downMs) {
+                        events.add(reconnected ? "reconnected" : "connected");
+                    }
+
+                    @Override
+                    public void onFailed(int attempts, IOException cause) {
+                        events.add("failed");
+                    }
+                });
+
+        manager[0].connect();
+        assertEquals("connected", events.poll(WAIT_S, TimeUnit.SECONDS));
+        assertEquals("reconnected", events.poll(WAIT_S, TimeUnit.SECONDS));
+        assertEquals("reconnected", events.poll(WAIT_S, TimeUnit.SECONDS));
+        assertTrue(sim.getDisconnects() >= 2);
+        assertTrue(received.get() >= 50);
+        manager[0].shutdown();
+        sim.close();
+    }
+}
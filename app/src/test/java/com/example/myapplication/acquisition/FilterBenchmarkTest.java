@@ -0,0 +1,72 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Micro-benchmark of the streaming operators on the JVM: feeds each one a
+ * long noisy signal after a warm-up and prints nanoseconds and allocated
+ * bytes per sample. Timings are informational; only allocation-free
+ * operation is asserted.
+ */
+public class FilterBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int SAMPLES = 2_000_000;
+
+    private interface Factory {
+        SampleFilter create();
+    }
+
+    @Test
+    public void operators_nanosPerSample() {
+        double[] signal = new double[4096];
+        Random random = new Random(3);
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = 0.45 + 0.01 * random.nextGaussian();
+        }
+
+        run("ma:4", () -> new MovingAverage(4), signal);
+        run("ma:100", () -> new MovingAverage(100), signal);
+        run("median:5", () -> new MedianFilter(5), signal);
+        run("median:31", () -> new MedianFilter(31), signal);
+        run("lowpass:2 @ 50 Hz", () -> Biquad.lowPass(50, 2), signal);
+        run("fir:31:2 @ 50 Hz", () -> FirFilter.lowPass(50, 2, 31), signal);
+        run("sg:11:3", () -> SavitzkyGolay.filter(11, 3), signal);
+        run("ema:0.2", () -> new ExponentialSmoother(0.2), signal);
+        run("median:5, lowpass:2, ma:4", () -> new FilterChain(FilterChain.parse("median:5, lowpass:2, ma:4", 50)), signal);
+    }
+
+    private static void run(String name, Factory factory, double[] signal) {
+        SampleFilter filter = factory.create();
+        int mask = signal.length - 1;
+        double sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += filter.add(signal[i & mask]);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean allocations = threads instanceof com.sun.management.ThreadMXBean;
+        long allocatedBefore = allocations
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            sink += filter.add(signal[i & mask]);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocations
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId())
+                - allocatedBefore : 0;
+
+        System.out.printf("filter %-28s %6.1f ns/sample, %.3f bytes allocated/sample%n",
+                name, (double) elapsed / SAMPLES, (double) allocated / SAMPLES);
+        assertFalse(Double.isNaN(sink));
+        // A stray boxed value per sample would show up as 16+ bytes/sample
+        assertTrue(name + " allocates per sample", allocated < SAMPLES);
+    }
+}
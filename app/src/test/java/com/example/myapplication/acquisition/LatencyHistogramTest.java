@@ -0,0 +1,66 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinThreePercent() {
+        int last = -1;
+        for (long v = 0; v < 1L << 31; v = v < 4096 ? v + 1 : v + v / 97) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(i >= last);
+            last = i;
+            assertTrue(v + " low", LatencyHistogram.lowerBound(i) <= v);
+            assertTrue(v + " high", LatencyHistogram.upperBound(i) >= v);
+            assertTrue(v + " width", LatencyHistogram.upperBound(i) - LatencyHistogram.lowerBound(i)
+                    <= Math.max(0, v / LatencyHistogram.HALF));
+        }
+        // Neighbouring buckets are contiguous
+        for (int i = 1; i <= last; i++) {
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+        }
+    }
+
+    @Test
+    public void percentiles_matchRecordedDistribution() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.recordNanos(i * 1000L); // 1..1000 us
+        }
+        assertEquals(1000, h.count());
+        assertEquals(500.5, h.meanMicros(), 1e-9);
+        assertEquals(1000, h.maxMicros());
+        assertEquals(500, h.percentileMicros(50), 500 / 32.0);
+        assertEquals(990, h.percentileMicros(99), 990 / 32.0);
+        assertEquals(1000, h.percentileMicros(100));
+
+        h.record(-5);                // clamped, not thrown
+        h.record(Long.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, h.maxMicros());
+
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileMicros(99));
+    }
+
+    @Test
+    public void profiler_writesNonEmptyBucketsAsCsv() throws IOException {
+        AcquisitionProfiler profiler = new AcquisitionProfiler();
+        profiler.record(AcquisitionProfiler.Stage.PARSE, 10_000);
+        profiler.record(AcquisitionProfiler.Stage.PARSE, 10_000);
+        profiler.record(AcquisitionProfiler.Stage.DRAW, 2_000_000);
+
+        StringBuilder csv = new StringBuilder();
+        profiler.writeCsv(csv);
+        assertEquals("stage,low_us,high_us,count\n"
+                + "parse,10,10,2\n"
+                + "draw,1984,2015,1\n", csv.toString());
+        assertTrue(profiler.summary().contains("parse"));
+        assertFalse(profiler.summary().contains("filter"));
+    }
+}
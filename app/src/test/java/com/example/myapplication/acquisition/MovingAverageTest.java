@@ -0,0 +1,145 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the streaming operators against the re-summing code they replaced
+ * in OutputBluetooth (MVFilter and calculateRollingAverageCortisol).
+ */
+public class MovingAverageTest {
+
+    private static final double TOLERANCE = 1e-12;
+
+    // Original OutputBluetooth.MVFilter
+    private static double mvFilter(int arrSize, int x, ArrayList<Double> arr) {
+        if (arr == null || arr.isEmpty() || x <= 0) return 0.0;
+        double sum = 0.0;
+        int start = Math.max(0, arrSize - x), end = arrSize;
+        for (int i = start; i < end; i++) sum += arr.get(i);
+        int count = end - start;
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    // Original OutputBluetooth.calculateRollingAverageCortisol, without logging
+    private static double rollingCortisol(ArrayList<Double> dataPoints1) {
+        if (dataPoints1.isEmpty()) {
+            return 0.0;
+        }
+        int totalSamples = dataPoints1.size();
+        int samplesToAverage = Math.min(100, totalSamples);
+        int startIndex = totalSamples - samplesToAverage;
+
+        double sum = 0.0;
+        for (int i = startIndex; i < totalSamples; i++) {
+            sum += dataPoints1.get(i);
+        }
+        double avgVoltage = sum / samplesToAverage;
+        double yValue = avgVoltage * 1000.0;
+        if (yValue < 428.0 || yValue > 478.6686) {
+            return 0.0;
+        }
+        return Math.pow((yValue - 482.9265) / (-4.2579), 1.0 / 0.5553);
+    }
+
+    // 15-bit ADC readings around the sensor's working point, as volts
+    private static double[] adcSignal(long seed, int n) {
+        Random random = new Random(seed);
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            int raw = 2900 + (int) (Math.sin(i / 250.0) * 200) + random.nextInt(40);
+            out[i] = raw * 5.0 / (Math.pow(2, 15) - 1);
+        }
+        return out;
+    }
+
+    @Test
+    public void movingAverage_matchesMvFilter() {
+        double[] signal = adcSignal(1, 50_000);
+        for (int window : new int[]{1, 2, 4, 10, 100, 1000}) {
+            MovingAverage filter = new MovingAverage(window);
+            ArrayList<Double> raw = new ArrayList<>();
+            for (double v : signal) {
+                raw.add(v);
+                double expected = mvFilter(raw.size(), window, raw);
+                assertEquals("window " + window + " sample " + raw.size(),
+                        expected, filter.add(v), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void movingAverage_partialWindowAveragesWhatItHas() {
+        MovingAverage filter = new MovingAverage(4);
+        assertEquals(0.0, filter.mean(), 0.0);
+        assertEquals(2.0, filter.add(2.0), 0.0);
+        assertEquals(3.0, filter.add(4.0), 0.0);
+        assertEquals(2, filter.count());
+        filter.add(6.0);
+        filter.add(8.0);
+        assertEquals(7.0, filter.add(10.0), 0.0); // 4, 6, 8, 10
+        assertEquals(4, filter.count());
+    }
+
+    @Test
+    public void movingAverage_doesNotDriftOverLongRuns() {
+        // About a day at 20 samples/s
+        double[] signal = adcSignal(3, 2_000_000);
+        MovingAverage filter = new MovingAverage(7);
+        for (double v : signal) {
+            filter.add(v);
+        }
+        double sum = 0.0;
+        for (int i = signal.length - 7; i < signal.length; i++) {
+            sum += signal[i];
+        }
+        assertEquals(sum / 7, filter.mean(), TOLERANCE);
+    }
+
+    @Test
+    public void movingAverage_resetStartsOver() {
+        MovingAverage filter = new MovingAverage(3);
+        filter.add(9.0);
+        filter.add(9.0);
+        filter.reset();
+        assertEquals(0, filter.count());
+        assertEquals(1.0, filter.add(1.0), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void movingAverage_rejectsEmptyWindow() {
+        new MovingAverage(0);
+    }
+
+    @Test
+    public void rollingCortisol_matchesOriginalCalculation() {
+        double[] signal = adcSignal(2, 20_000);
+        RollingCortisol cortisol = new RollingCortisol();
+        ArrayList<Double> dataPoints1 = new ArrayList<>();
+        int inRange = 0;
+        for (double v : signal) {
+            // The estimate is read before the new sample is stored, as in processSample
+            double expected = rollingCortisol(dataPoints1);
+            // Within the calibration table's interpolation error of the exact curve
+            assertEquals("sample " + dataPoints1.size(), expected, cortisol.cortisol(), 1e-5 * expected + 1e-9);
+            if (expected > 0) {
+                inRange++;
+            }
+            dataPoints1.add(v);
+            cortisol.add(v);
+        }
+        assertTrue("signal should exercise the valid range", inRange > 1000);
+        assertTrue("signal should exercise the invalid range", inRange < signal.length - 1000);
+    }
+
+    @Test
+    public void rollingCortisol_emptyWindowIsZero() {
+        RollingCortisol cortisol = new RollingCortisol();
+        assertEquals(0.0, cortisol.cortisol(), 0.0);
+        assertFalse(cortisol.inRange());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the streaming peak plateau against the batch scan it replaced in
+ * AcquisitionEngine.findMaxbyAvg, bit for bit, after every sample.
+ */
+public class PeakTrackerTest {
+
+    // Original AcquisitionEngine.findMaxbyAvg over the first n values
+    private static double findMaxbyAvg(double[] arl, int n) {
+        if (arl == null || n == 0) return 0.0;
+        double maxVal = 0;
+        int idx = 0;
+        for (int i = 0; i < n; i++) {
+            double v = arl[i];
+            if (v > maxVal) {
+                maxVal = v;
+                idx = i;
+            }
+        }
+        int start = Math.max(0, idx - 19), end = Math.min(n - 1, idx + 20);
+        double sum = 0.0;
+        for (int i = start; i <= end; i++) sum += arl[i];
+        return (end - start + 1) > 0 ? sum / (end - start + 1) : maxVal;
+    }
+
+    private static void assertBitIdentical(String name, double[] signal) {
+        PeakTracker tracker = new PeakTracker();
+        assertEquals(0.0, tracker.plateauMean(), 0.0);
+        for (int n = 1; n <= signal.length; n++) {
+            tracker.add(signal[n - 1]);
+            double expected = findMaxbyAvg(signal, n);
+            assertEquals(name + " after " + n + " samples",
+                    Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(tracker.plateauMean()));
+        }
+    }
+
+    @Test
+    public void matchesBatchScan_noisyRisingSignal() {
+        Random random = new Random(7);
+        double[] signal = new double[3000];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = 0.43 + 0.04 * Math.sin(i / 300.0) + 0.002 * random.nextGaussian();
+        }
+        assertBitIdentical("noisy", signal);
+    }
+
+    @Test
+    public void matchesBatchScan_edgeCases() {
+        assertBitIdentical("single", new double[]{0.45});
+        assertBitIdentical("non-positive", new double[]{-0.1, 0.0, -0.3, -0.2});
+        assertBitIdentical("peak at start", ramp(100, 1.0, -0.01));
+        assertBitIdentical("peak at end", ramp(100, 0.0, 0.01));
+
+        // Ties keep the first peak; a later plateau of the same height does not move it
+        double[] ties = new double[120];
+        ties[10] = 0.5;
+        ties[80] = 0.5;
+        assertBitIdentical("ties", ties);
+
+        double[] nan = ramp(60, 0.1, 0.001);
+        nan[30] = Double.NaN;
+        assertBitIdentical("nan", nan);
+    }
+
+    private static double[] ramp(int n, double start, double step) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = start + i * step;
+        }
+        return x;
+    }
+
+    @Test
+    public void plateauStatistics() {
+        PeakTracker tracker = new PeakTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.add(i == 50 ? 2.0 : 1.0);
+        }
+        assertEquals(2.0, tracker.max(), 0.0);
+        assertEquals(50, tracker.peakIndex());
+        assertEquals(PeakTracker.BEFORE + PeakTracker.AFTER + 1, tracker.plateauCount());
+        assertTrue(tracker.isPlateauComplete());
+
+        PeakTracker ahead = tracker.copy();
+        ahead.add(3.0);
+        assertEquals(100, ahead.peakIndex());
+        assertFalse(ahead.isPlateauComplete());
+        assertEquals(50, tracker.peakIndex());
+
+        tracker.reset();
+        assertEquals(0, tracker.size());
+        assertEquals(0.0, tracker.plateauMean(), 0.0);
+    }
+}
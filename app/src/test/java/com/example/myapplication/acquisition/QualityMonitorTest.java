@@ -0,0 +1,125 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QualityMonitorTest {
+
+    private static final int BLOCK = 10;
+    private static final int FULL_SCALE = (1 << 15) - 1;
+
+    private final List<String> events = new ArrayList<>();
+    private final QualityMonitor monitor = new QualityMonitor(BLOCK, 15, 5.0,
+            new CalibrationTable(Calibration.DEFAULT),
+            (fault, channel, active, value) -> events.add(fault + " " + channel + (active ? " on" : " off")));
+    private final Random random = new Random(11);
+
+    private static int raw(double volts) {
+        return (int) Math.round(volts / 5.0 * FULL_SCALE);
+    }
+
+    // volts plus 1 mV of noise
+    private int noisy(double volts) {
+        return raw(volts + 0.001 * random.nextGaussian());
+    }
+
+    // Three ports near the middle of the calibrated range with 1 mV of noise
+    private void feedClean(int samples) {
+        for (int i = 0; i < samples; i++) {
+            monitor.add(noisy(0.45), noisy(0.45), noisy(0.45));
+        }
+    }
+
+    @Test
+    public void cleanSignal_raisesNothing() {
+        feedClean(BLOCK * 120);
+        assertEquals(new ArrayList<String>(), events);
+        assertFalse(monitor.hasFault());
+    }
+
+    @Test
+    public void saturation_raisedAfterRunAndCleared() {
+        feedClean(BLOCK);
+        for (int i = 0; i < QualityMonitor.SATURATION_RUN - 1; i++) {
+            monitor.add(noisy(0.45), FULL_SCALE, noisy(0.45));
+        }
+        assertFalse(monitor.isActive(QualityMonitor.Fault.SATURATED, 1));
+        monitor.add(noisy(0.45), FULL_SCALE, noisy(0.45));
+        assertTrue(monitor.isActive(QualityMonitor.Fault.SATURATED, 1));
+        assertEquals("SATURATED 1 on", events.get(0));
+        feedClean(1);
+        assertFalse(monitor.isActive(QualityMonitor.Fault.SATURATED, 1));
+        assertEquals("SATURATED 1 off", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void flatLine_raisedPerChannel() {
+        for (int i = 0; i < BLOCK; i++) {
+            monitor.add(noisy(0.45), raw(0.45), noisy(0.45));
+        }
+        assertEquals(List.of("FLAT 1 on"), events);
+        feedClean(BLOCK);
+        assertEquals(List.of("FLAT 1 on", "FLAT 1 off"), events);
+    }
+
+    @Test
+    public void noise_raisedButTrendIgnored() {
+        // A fast but smooth rise is not noise
+        for (int i = 0; i < BLOCK * 5; i++) {
+            double v = 0.40 + 0.002 * i;
+            monitor.add(raw(v), raw(v), raw(v));
+        }
+        assertEquals(new ArrayList<String>(), events);
+
+        for (int i = 0; i < BLOCK; i++) {
+            monitor.add(noisy(0.45), raw(0.45 + 0.02 * random.nextGaussian()), noisy(0.45 + 0.0005 * i));
+        }
+        assertEquals(List.of("NOISY 1 on"), events);
+    }
+
+    @Test
+    public void disagreement_reportedForAllPorts() {
+        for (int i = 0; i < BLOCK; i++) {
+            monitor.add(noisy(1.2), noisy(0.45), noisy(0.45));
+        }
+        assertEquals(List.of("DISAGREE -1 on"), events);
+        assertTrue(monitor.isActive(QualityMonitor.Fault.DISAGREE, QualityMonitor.ALL_CHANNELS));
+    }
+
+    @Test
+    public void drift_detectedByCusumAfterSettling() {
+        feedClean(BLOCK * QualityMonitor.SETTLE_BLOCKS);
+        // Port 2 creeps up 5 mV per block; 2 mV per block of slack
+        int blocksToAlarm = -1;
+        for (int b = 1; b <= 60 && blocksToAlarm < 0; b++) {
+            for (int i = 0; i < BLOCK; i++) {
+                monitor.add(noisy(0.45), noisy(0.45), noisy(0.45 + 0.005 * b));
+            }
+            if (monitor.isActive(QualityMonitor.Fault.DRIFT, 2)) {
+                blocksToAlarm = b;
+            }
+        }
+        assertTrue("drift not detected", blocksToAlarm > 0);
+        assertTrue("drift detected late: " + blocksToAlarm, blocksToAlarm < 10);
+        assertEquals("DRIFT 2 on", events.get(0));
+    }
+
+    @Test
+    public void outOfRange_onlyAfterSettling() {
+        // 400 mV reads "Invalid", but a strip is not judged before it settles
+        for (int i = 0; i < BLOCK * QualityMonitor.SETTLE_BLOCKS - 1; i++) {
+            monitor.add(noisy(0.40), noisy(0.40), noisy(0.40));
+        }
+        assertEquals(new ArrayList<String>(), events);
+        monitor.add(noisy(0.40), noisy(0.40), noisy(0.40));
+        assertEquals(List.of("OUT_OF_RANGE 1 on"), events);
+
+        monitor.reset();
+        assertFalse(monitor.hasFault());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks each streaming operator against a direct computation over the same
+ * window, and the settings-screen chain syntax.
+ */
+public class SampleFilterTest {
+
+    private static double[] noise(int n, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 0.45 + 0.01 * random.nextGaussian();
+        }
+        return x;
+    }
+
+    @Test
+    public void median_matchesSortedWindow() {
+        double[] x = noise(5_000, 1);
+        for (int window : new int[]{1, 2, 5, 8}) {
+            MedianFilter filter = new MedianFilter(window);
+            for (int i = 0; i < x.length; i++) {
+                int from = Math.max(0, i - window + 1);
+                double[] w = Arrays.copyOfRange(x, from, i + 1);
+                Arrays.sort(w);
+                int mid = w.length / 2;
+                double expected = w.length % 2 == 1 ? w[mid] : (w[mid - 1] + w[mid]) / 2;
+                assertEquals("window " + window + " sample " + i, expected, filter.add(x[i]), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void median_removesSpike() {
+        MedianFilter filter = new MedianFilter(3);
+        filter.add(1.0);
+        filter.add(1.0);
+        assertEquals(1.0, filter.add(9.0), 0.0);
+        assertEquals(1.0, filter.add(1.0), 0.0);
+    }
+
+    @Test
+    public void biquad_passesDcAndAttenuatesNyquist() {
+        Biquad lp = Biquad.lowPass(100, 5);
+        // Starts settled on the first sample
+        assertEquals(0.45, lp.add(0.45), 1e-12);
+        for (int i = 0; i < 1000; i++) {
+            lp.add(0.45 + (i % 2 == 0 ? 0.1 : -0.1));
+        }
+        assertEquals(0.45, lp.add(0.55), 0.001);
+    }
+
+    @Test
+    public void biquad_butterworthIsThreeDbDownAtCutoff() {
+        double fs = 100, fc = 10;
+        Biquad lp = Biquad.lowPass(fs, fc);
+        double peak = 0;
+        for (int i = 0; i < 5000; i++) {
+            double y = lp.add(Math.sin(2 * Math.PI * fc * i / fs));
+            if (i > 1000) {
+                peak = Math.max(peak, Math.abs(y));
+            }
+        }
+        assertEquals(Math.sqrt(0.5), peak, 0.01);
+    }
+
+    @Test
+    public void fir_matchesDirectConvolution() {
+        double[] taps = {0.5, 0.3, 0.2};
+        FirFilter fir = new FirFilter(taps);
+        double[] x = noise(100, 2);
+        for (int i = 0; i < x.length; i++) {
+            double expected = 0;
+            for (int k = 0; k < taps.length; k++) {
+                expected += taps[k] * x[Math.max(0, i - k)]; // history starts at the first sample
+            }
+            assertEquals(expected, fir.add(x[i]), 1e-15);
+        }
+    }
+
+    @Test
+    public void firLowPass_hasUnityDcGain() {
+        FirFilter fir = FirFilter.lowPass(100, 5, 31);
+        double y = 0;
+        for (int i = 0; i < 100; i++) {
+            y = fir.add(0.45);
+        }
+        assertEquals(0.45, y, 1e-12);
+    }
+
+    @Test
+    public void savitzkyGolay_knownTapsAndPolynomialPassThrough() {
+        // Classic 5-point quadratic smoother: (-3, 12, 17, 12, -3) / 35
+        double[] taps = SavitzkyGolay.taps(5, 2);
+        double[] expected = {-3 / 35.0, 12 / 35.0, 17 / 35.0, 12 / 35.0, -3 / 35.0};
+        assertArrayEquals(expected, taps, 1e-12);
+
+        FirFilter sg = SavitzkyGolay.filter(7, 2);
+        for (int i = 0; i < 6; i++) {
+            sg.add(quadratic(i));
+        }
+        for (int i = 6; i < 50; i++) {
+            // Centred: the output is the fit at the sample three steps back
+            assertEquals(quadratic(i - 3), sg.add(quadratic(i)), 1e-9);
+        }
+    }
+
+    private static double quadratic(int i) {
+        return 0.4 + 0.002 * i - 0.0001 * i * i;
+    }
+
+    @Test
+    public void ema_followsRecurrence() {
+        ExponentialSmoother ema = new ExponentialSmoother(0.25);
+        assertEquals(1.0, ema.add(1.0), 0.0);
+        assertEquals(1.5, ema.add(3.0), 0.0);
+        assertEquals(1.125, ema.add(0.0), 0.0);
+    }
+
+    @Test
+    public void chain_parsesAndRunsStagesInOrder() {
+        List<SampleFilter> stages = FilterChain.parse(" median:3, ma:2 ", 10);
+        assertEquals(2, stages.size());
+        assertTrue(stages.get(0) instanceof MedianFilter);
+        FilterChain chain = new FilterChain(stages);
+        assertEquals(4, chain.window());
+        assertEquals(1.0, chain.add(1.0), 0.0);
+        assertEquals(1.0, chain.add(1.0), 0.0);
+        assertEquals(1.0, chain.add(9.0), 0.0); // median removes the spike before averaging
+
+        assertTrue(FilterChain.parse("", 10).isEmpty());
+        assertEquals(6, FilterChain.parse("ma:4,median:5,lowpass:2,fir:15:2,sg:5:2,ema:0.5", 10).size());
+    }
+
+    @Test
+    public void chain_rejectsInvalidStages() {
+        for (String spec : new String[]{"foo:1", "median", "median:x", "ma:0", "lowpass:6", "sg:4:2", "ema:2", "-"}) {
+            try {
+                FilterChain.parse(spec, 10);
+                fail("accepted " + spec);
+            } catch (IllegalArgumentException expected) {
+                assertNotNull(expected.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Capture files round-trip, and replaying one drives the framing and filter
+ * path exactly like the live link. The throughput test replays a capture as
+ * fast as possible and prints samples/s and allocated bytes/sample; point
+ * {@code -Dcapture.file=...} at a recorded session to measure real data.
+ */
+public class StreamCaptureTest {
+
+    private static File tempCapture() throws IOException {
+        File file = File.createTempFile("test", StreamCapture.SUFFIX);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            all.write(buffer, 0, n);
+        }
+        return all.toByteArray();
+    }
+
+    @Test
+    public void tap_recordsEveryReadAndIgnoresTornTail() throws Exception {
+        byte[] stream = "noise#1:2:3p#4:5:6p#7:8".getBytes();
+        File file = tempCapture();
+        StreamCapture capture = StreamCapture.create(file, "test link");
+        assertArrayEquals(stream, readAll(capture.tap(new ByteArrayInputStream(stream))));
+        capture.close();
+        assertEquals(stream.length, capture.getBytes());
+        assertEquals(4, capture.getChunks()); // 7-byte reads
+
+        // A crash mid-record leaves a partial last record (":8") behind
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+        try (StreamCapture.Reader reader = new StreamCapture.Reader(file)) {
+            assertEquals("test link", reader.getLabel());
+            long last = -1;
+            while (reader.next()) {
+                assertTrue(reader.atNanos() >= last);
+                last = reader.atNanos();
+                replayed.write(reader.data(), 0, reader.length());
+            }
+        }
+        assertArrayEquals("noise#1:2:3p#4:5:6p#7".getBytes(), replayed.toByteArray());
+    }
+
+    @Test
+    public void sizeLimit_stopsOnARecordBoundary() throws Exception {
+        byte[] stream = "#1:2:3p#4:5:6p#7:8:9p".getBytes();
+        File file = tempCapture();
+        long limit = 64; // header 21 bytes, then room for two 7-byte reads of 19 bytes each
+        StreamCapture capture = StreamCapture.create(file, "limited", limit);
+        assertArrayEquals(stream, readAll(capture.tap(new ByteArrayInputStream(stream))));
+        capture.close();
+        assertTrue(capture.isFull());
+        assertFalse(capture.isFailed());
+        assertEquals(2, capture.getChunks());
+        assertTrue(file.length() <= limit);
+
+        ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+        try (StreamCapture.Reader reader = new StreamCapture.Reader(file)) {
+            while (reader.next()) {
+                replayed.write(reader.data(), 0, reader.length());
+            }
+        }
+        assertArrayEquals("#1:2:3p#4:5:6p".getBytes(), replayed.toByteArray());
+    }
+
+    @Test
+    public void replay_keepsChunkingAndRecordedPace() throws Exception {
+        File file = tempCapture();
+        StreamCapture capture = StreamCapture.create(file, "paced");
+        capture.record("#1:2:".getBytes(), 0, 5);
+        Thread.sleep(200);
+        capture.record("3p".getBytes(), 0, 2);
+        capture.close();
+
+        ReplaySource replay = new ReplaySource(file, 2.0, true);
+        replay.open();
+        replay.output().write("R\r".getBytes()); // ignored
+        InputStream in = replay.input();
+        byte[] buffer = new byte[64];
+        long start = System.nanoTime();
+        assertEquals(5, in.read(buffer));
+        assertEquals(2, in.read(buffer));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 90 && elapsedMs < 1000);
+        assertEquals(-1, in.read(buffer));
+        replay.close();
+        assertFalse(replay.isOpen());
+        assertNull(replay.input());
+    }
+
+    @Test
+    public void replay_quietAtEndUntilClosed() throws Exception {
+        File file = tempCapture();
+        StreamCapture.create(file, "empty").close();
+        ReplaySource replay = new ReplaySource(file, 1.0, false);
+        replay.open();
+        InputStream in = replay.input();
+        int[] result = {0};
+        Thread reader = new Thread(() -> {
+            try {
+                result[0] = in.read(new byte[8]);
+            } catch (IOException e) {
+                result[0] = -2;
+            }
+        });
+        reader.start();
+        reader.join(100);
+        assertTrue(reader.isAlive());
+        replay.close();
+        reader.join(1000);
+        assertEquals(-1, result[0]);
+    }
+
+    @Test
+    public void replay_throughputOfFramingAndFilters() throws Exception {
+        String recorded = System.getProperty("capture.file");
+        File file;
+        if (recorded != null) {
+            file = new File(recorded);
+        } else {
+            // Synthetic stand-in for a session: 200k frames read in link-sized chunks
+            file = tempCapture();
+            StreamCapture capture = StreamCapture.create(file, "synthetic");
+            StringBuilder chunk = new StringBuilder();
+            for (int n = 0; n < 200_000; n++) {
+                chunk.append('#').append(DeviceSimulator.DEFAULT_WAVEFORM.sample(n, 0))
+                        .append(':').append(DeviceSimulator.DEFAULT_WAVEFORM.sample(n, 1))
+                        .append(':').append(DeviceSimulator.DEFAULT_WAVEFORM.sample(n, 2)).append('p');
+                if (n % 8 == 7) {
+                    byte[] bytes = chunk.toString().getBytes();
+                    capture.record(bytes, 0, bytes.length);
+                    chunk.setLength(0);
+                }
+            }
+            capture.close();
+        }
+
+        // Warm up, then measure
+        replayThroughPipeline(file);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean allocations = threads instanceof com.sun.management.ThreadMXBean;
+        long allocatedBefore = allocations
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+        long start = System.nanoTime();
+        int samples = replayThroughPipeline(file);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocations
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId())
+                - allocatedBefore : -1;
+
+        if (recorded == null) {
+            assertEquals(200_000, samples);
+        }
+        System.out.printf("replay %s: %d samples, %.0f samples/s, %.1f bytes allocated/sample%n",
+                file.getName(), samples, samples * 1e9 / elapsed,
+                allocations ? (double) allocated / samples : Double.NaN);
+    }
+
+    // Framing, ADC conversion and the same filters the acquisition thread runs
+    private static int replayThroughPipeline(File file) throws IOException {
+        final double volts = 5.0 / ((1 << 15) - 1);
+        PacketFramer framer = new PacketFramer(1 << 16);
+        MovingAverage[] filters = new MovingAverage[4];
+        DoubleColumn[] columns = new DoubleColumn[4];
+        for (int c = 0; c < 4; c++) {
+            filters[c] = new MovingAverage(4);
+            columns[c] = new DoubleColumn();
+        }
+        Despiker despiker = new Despiker(columns[3]);
+        RollingCortisol cortisol = new RollingCortisol();
+
+        ReplaySource replay = new ReplaySource(file, 0, true);
+        replay.open();
+        InputStream in = replay.input();
+        byte[] buffer = new byte[1024];
+        int samples = 0;
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            framer.write(buffer, 0, n);
+            while (framer.next()) {
+                double sum = 0;
+                for (int c = 0; c < PacketFramer.CHANNELS; c++) {
+                    double v = framer.value(c) * volts;
+                    columns[c].add(filters[c].add(v));
+                    sum += v;
+                }
+                cortisol.add(columns[1].last());
+                columns[3].add(filters[3].add(sum / 3.0));
+                despiker.update();
+                samples++;
+            }
+        }
+        replay.close();
+        assertTrue(cortisol.count() > 0 || samples == 0);
+        return samples;
+    }
+}
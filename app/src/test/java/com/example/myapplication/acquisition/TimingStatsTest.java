@@ -0,0 +1,115 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Receive timestamps and sequence numbers through the framer, and the
+ * session timing statistics built from them.
+ */
+public class TimingStatsTest {
+
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static void write(PacketFramer framer, String bytes, long nanos) {
+        byte[] b = bytes.getBytes();
+        framer.write(b, 0, b.length, nanos);
+    }
+
+    @Test
+    public void framer_stampsFrameWithChunkHoldingTerminator() {
+        PacketFramer framer = new PacketFramer(256);
+        write(framer, "#1:2:3p#4:5", 100);
+        write(framer, ":6p", 200);
+        write(framer, "#7:8:9:41p", 300);
+
+        assertTrue(framer.next());
+        assertEquals(100, framer.timestampNanos());
+        assertFalse(framer.hasSequence());
+        assertTrue(framer.next());
+        assertEquals(200, framer.timestampNanos());
+        assertTrue(framer.next());
+        assertEquals(300, framer.timestampNanos());
+        assertTrue(framer.hasSequence());
+        assertEquals(41, framer.sequence());
+        assertEquals(9, framer.value(2));
+        assertFalse(framer.next());
+
+        write(framer, "#1:2:3:4:5p", 400); // too many fields
+        assertFalse(framer.next());
+        assertEquals(1, framer.getFramesDropped());
+    }
+
+    @Test
+    public void framer_keepsStampsAcrossManyUnreadChunks() {
+        PacketFramer framer = new PacketFramer(1 << 16);
+        for (int i = 0; i < 1000; i++) {
+            write(framer, "#1:2:3p", i);
+        }
+        // Marks for the first 256 chunks are exact; later ones share a newer time
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(framer.next());
+            if (i < 256) {
+                assertEquals(i, framer.timestampNanos());
+            } else {
+                assertTrue(framer.timestampNanos() >= 255);
+            }
+        }
+    }
+
+    @Test
+    public void stats_jitterDriftAndMissedFromTiming() {
+        TimingStats stats = new TimingStats(PERIOD);
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            stats.add(t, false, 0);
+            t += PERIOD + TimeUnit.MILLISECONDS.toNanos(i % 2 == 0 ? 10 : 30); // late, unevenly
+        }
+        assertEquals(0, stats.missed());
+        assertEquals(170.0, stats.driftMs(), 1e-6); // 9 intervals, 10 or 30 ms late each
+        assertEquals(10.5, stats.jitterMs(), 0.1);
+
+        stats.add(t + 2 * PERIOD, false, 0); // two samples never came
+        assertEquals(2, stats.missed());
+
+        stats.pause();
+        stats.add(t + 1000 * PERIOD, false, 0); // collection stopped, not missed
+        assertEquals(2, stats.missed());
+        assertEquals(12, stats.samples());
+    }
+
+    @Test
+    public void stats_usesSequenceNumbersWhenPresent() {
+        TimingStats stats = new TimingStats(PERIOD);
+        stats.add(0, true, 10);
+        stats.add(PERIOD, true, 11);
+        stats.add(2 * PERIOD, true, 15); // on time, but three samples were lost upstream
+        stats.add(3 * PERIOD, true, 0);  // device restart
+        assertEquals(3, stats.missed());
+        assertEquals(-3 * PERIOD / 1e6, stats.driftMs(), 1e-6);
+    }
+
+    @Test
+    public void simulator_sequenceNumbersReachTheFramer() throws Exception {
+        DeviceSimulator.Config config = new DeviceSimulator.Config();
+        config.sequenceNumbers = true;
+        DeviceSimulator sim = new DeviceSimulator(config);
+        sim.open();
+        PacketFramer framer = new PacketFramer(1024);
+        sim.output().write("0\r0\r".getBytes());
+        byte[] buffer = new byte[64];
+        int frames = 0;
+        while (frames < 2) {
+            int n = sim.input().read(buffer);
+            framer.write(buffer, 0, n, 0);
+            while (framer.next()) {
+                assertTrue(framer.hasSequence());
+                assertEquals(frames++, framer.sequence());
+            }
+        }
+        sim.close();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myapplication.acquisition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TraceRingTest {
+
+    @Test
+    public void disabledRing_recordsNothing() throws IOException {
+        TraceRing ring = new TraceRing(8);
+        ring.instant(TraceEvent.READ, 10);
+        assertEquals(0, ring.recorded());
+        StringBuilder json = new StringBuilder();
+        assertEquals(0, ring.writeChromeJson(json));
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n]}\n", json.toString());
+    }
+
+    @Test
+    public void fullRing_keepsNewestEventsInOrder() throws IOException {
+        TraceRing ring = new TraceRing(5);
+        assertEquals(8, ring.capacity());
+        ring.setEnabled(true);
+        for (int i = 0; i < 20; i++) {
+            ring.instant(TraceEvent.SAMPLE, i, 0, 0);
+        }
+        StringBuilder json = new StringBuilder();
+        assertEquals(8, ring.writeChromeJson(json));
+        assertEquals(20, ring.recorded());
+        String s = json.toString();
+        assertFalse(s.contains("\"n\":11,"));
+        for (int i = 12; i < 20; i++) {
+            assertTrue(s.contains("\"n\":" + i + ","));
+        }
+        assertTrue(s.indexOf("\"n\":12,") < s.indexOf("\"n\":19,"));
+    }
+
+    @Test
+    public void dump_writesSpansAndTypedArguments() throws IOException {
+        TraceRing ring = new TraceRing(16);
+        ring.setEnabled(true);
+        long t = System.nanoTime();
+        ring.span(TraceEvent.DRAIN, t, t + 2_500_000, 4, 1);
+        ring.instant(TraceEvent.ROLLING, 100, TraceRing.bits(0.25), TraceRing.bits(Double.NaN));
+
+        StringBuilder json = new StringBuilder();
+        ring.writeChromeJson(json);
+        String s = json.toString();
+        assertTrue(s, s.contains("\"name\":\"drain\""));
+        assertTrue(s, s.contains("\"ph\":\"X\",\"dur\":2500.000,\"args\":{\"samples\":4,\"dropped\":1}"));
+        assertTrue(s, s.contains("\"ph\":\"i\",\"s\":\"t\",\"args\":{\"window\":100,\"avg_v\":0.25,\"cortisol\":null}"));
+    }
+
+    @Test
+    public void concurrentWriters_neverTearTheDump() throws Exception {
+        TraceRing ring = new TraceRing(1024);
+        ring.setEnabled(true);
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    ring.instant(TraceEvent.READ, i);
+                }
+            });
+            writers[w].start();
+        }
+        for (int d = 0; d < 20; d++) {
+            StringBuilder json = new StringBuilder();
+            assertTrue(ring.writeChromeJson(json) <= ring.capacity());
+            assertTrue(json.toString().endsWith("]}\n"));
+        }
+        for (Thread w : writers) {
+            w.join();
+        }
+        assertEquals(400_000, ring.recorded());
+    }
+}